@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.jgap.InvalidConfigurationException;
+
+/**
+ * Problems shared by the benchmarks: choose k of the elements 1..N that maximize their sum.
+ */
+final class BenchmarkProblem {
+    private BenchmarkProblem() {
+        super();
+    }
+
+    /**
+     * Sum of the elements, scored with primitive arrays and incrementally from a parent.
+     */
+    static final class SumCriterion extends AbstractArraySubSetFitnessFunction
+            implements DeltaSubSetFitnessFunction {
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum;
+        }
+
+        public double evaluate(final int[] subset, final double[] paramValues, final double parentFitness,
+                               final int[] removed, final int[] added) {
+            double fitness = parentFitness;
+            for (int i = 0; i < removed.length; i++) {
+                fitness += added[i] - removed[i];
+            }
+            return fitness;
+        }
+    }
+
+    /**
+     * Sum of the elements, scored through the {@link IntSet} interface only.
+     */
+    static final class IntSetSumCriterion extends AbstractSubSetFitnessFunction {
+        @Override
+        public double evaluate(final IntSet subset) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum;
+        }
+    }
+
+    static IntSet range(final int n) {
+        final IntSet set = new IntArraySet();
+        for (int element = 1; element <= n; element++) {
+            set.add(element);
+        }
+        return set;
+    }
+
+    /**
+     * Create an optimizer with a random initial population.
+     */
+    static OptimizeSubSet createOptimizer(final int n, final int k, final int populationSize,
+                                          final SubSetFitnessFunction criterion)
+            throws InvalidConfigurationException {
+        final OptimizeSubSet optimizer = new OptimizeSubSet(range(n), k, criterion, populationSize);
+        optimizer.setRandomSeed(1);
+        optimizer.initializePopulation();
+        return optimizer;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.jgap.InvalidConfigurationException;
+
+import java.util.Arrays;
+
+/**
+ * Compares the number of fitness evaluations the genetic algorithm and simulated annealing
+ * need to reach the optimum of the problems of TestOptimizeSubSet. Each engine runs with its
+ * default settings, for several seeds, until the optimum is evaluated or a budget of
+ * evaluations is exhausted. Run with the benchmark build:
+ * <pre>
+ * ant -f benchmark.xml -Djmh.lib=/opt/jmh evaluations-to-target
+ * </pre>
+ */
+public final class EvaluationsToTarget {
+    private static final int NUMBER_OF_SEEDS = 10;
+    private static final int EVALUATION_BUDGET = 2000000;
+    private static final int GENERATIONS = 20000;
+
+    private EvaluationsToTarget() {
+        super();
+    }
+
+    /**
+     * Thrown by {@link CountingCriterion} to stop an engine once the target is reached or the
+     * budget is exhausted.
+     */
+    private static final class StopException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Weighted sum of the elements, offset so that fitness stays positive, as in the tests.
+     * With one parameter alpha, each element is weighted by exp(-log(alpha / 0.37)^2), which
+     * peaks between the values of a grid of alpha.
+     */
+    private static class CountingCriterion extends AbstractArraySubSetFitnessFunction {
+        private final double target;
+        private final double offset;
+        private final double sign;
+        private long evaluations;
+        private boolean reached;
+
+        CountingCriterion(final double target, final double offset, final double sign) {
+            this.target = target;
+            this.offset = offset;
+            this.sign = sign;
+        }
+
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            evaluations++;
+            double sum = offset;
+            for (final int element : subset) {
+                sum += sign * weight(element, paramValues);
+            }
+            if (sum >= target) {
+                reached = true;
+                throw new StopException();
+            }
+            if (evaluations >= EVALUATION_BUDGET) {
+                throw new StopException();
+            }
+            return sum;
+        }
+
+        private static double weight(final int element, final double[] paramValues) {
+            switch (paramValues.length) {
+                case 0:
+                    return element;
+                case 1:
+                    final double distance = Math.log(paramValues[0] / 0.37);
+                    return element * Math.exp(-distance * distance);
+                default:
+                    return element * paramValues[0] - paramValues[1];
+            }
+        }
+    }
+
+    private abstract static class Problem {
+        final String name;
+        final IntSet set;
+        final int k;
+        final double target;
+        final double offset;
+        final double sign;
+        final String[] params;
+
+        Problem(final String name, final int[] elements, final int k, final double target, final double offset,
+                final double sign, final String... params) {
+            this.name = name;
+            this.set = new IntArraySet(elements);
+            this.k = k;
+            this.target = target;
+            this.offset = offset;
+            this.sign = sign;
+            this.params = params;
+        }
+
+        abstract SubSetOptimizer create(CountingCriterion criterion) throws InvalidConfigurationException;
+
+        abstract String engine();
+    }
+
+    private static int[] range(final int n) {
+        final int[] elements = new int[n];
+        for (int i = 0; i < n; i++) {
+            elements[i] = i + 1;
+        }
+        return elements;
+    }
+
+    /**
+     * @return Definition of a parameter with valuesPerDecade log-spaced values from 0.01 to 10.
+     */
+    private static String logGrid(final String name, final int valuesPerDecade) {
+        final StringBuilder definition = new StringBuilder(name).append('=');
+        for (int i = 0; i <= 3 * valuesPerDecade; i++) {
+            definition.append(i == 0 ? "" : ",").append((float) Math.pow(10, -2 + (double) i / valuesPerDecade));
+        }
+        return definition.toString();
+    }
+
+    public static void main(final String[] args) throws InvalidConfigurationException {
+        final int[] gaps = {1, 74, 87, 900, 2, 61};
+        final Object[][] problems = {
+                {"largest 3 of 9", range(9), 3, 24d, 0d, 1d, new String[0]},
+                {"largest 3 of gaps", gaps, 3, 1061d, 0d, 1d, new String[0]},
+                {"smallest 3 of 9", range(9), 3, 994d, 1000d, -1d, new String[0]},
+                {"alpha beta 3 of gaps", gaps, 3, 100d + 4 * 1061, 100d, 1d,
+                        new String[]{"alpha=1,2,3,4,0.5,0.1", "beta=1,2,0,3,4,0.5"}},
+                {"largest 3 of 100", range(100), 3, 297d, 0d, 1d, new String[0]},
+                {"largest 3 of 2000", range(2000), 3, 5997d, 0d, 1d, new String[0]},
+                // within 0.1% of the optimum: alpha must be within 3% of 0.37
+                {"peaked alpha 3 of 100, grid of 31", range(100), 3, 297 * 0.999, 0d, 1d,
+                        new String[]{logGrid("alpha", 10)}},
+                {"peaked alpha 3 of 100, grid of 121", range(100), 3, 297 * 0.999, 0d, 1d,
+                        new String[]{logGrid("alpha", 40)}},
+                {"peaked alpha 3 of 100, continuous", range(100), 3, 297 * 0.999, 0d, 1d,
+                        new String[]{"alpha=0.01:10:log"}},
+        };
+        System.out.println("problem\tengine\treached\tmedian evaluations\tmax evaluations");
+        for (final Object[] definition : problems) {
+            for (final String engine : new String[]{"genetic", "annealing", "local search"}) {
+                final Problem problem = new Problem((String) definition[0], (int[]) definition[1],
+                        (Integer) definition[2], (Double) definition[3], (Double) definition[4],
+                        (Double) definition[5], (String[]) definition[6]) {
+                    @Override
+                    SubSetOptimizer create(final CountingCriterion criterion) throws InvalidConfigurationException {
+                        if ("genetic".equals(engine)) {
+                            return new OptimizeSubSet(set, k, criterion, params);
+                        }
+                        final AnnealingOptimizer annealing = new AnnealingOptimizer(set, k, criterion, params);
+                        if ("local search".equals(engine)) {
+                            annealing.setTemperature(0, 1);
+                        }
+                        return annealing;
+                    }
+
+                    @Override
+                    String engine() {
+                        return engine;
+                    }
+                };
+                run(problem);
+            }
+        }
+    }
+
+    private static void run(final Problem problem) throws InvalidConfigurationException {
+        final long[] evaluations = new long[NUMBER_OF_SEEDS];
+        int reached = 0;
+        for (int seed = 1; seed <= NUMBER_OF_SEEDS; seed++) {
+            final CountingCriterion criterion = new CountingCriterion(problem.target, problem.offset, problem.sign);
+            final SubSetOptimizer optimizer = problem.create(criterion);
+            optimizer.setRandomSeed(seed);
+            try {
+                // annealing cools over the whole evaluation budget; a zero delta disables convergence
+                optimizer.optimize(optimizer instanceof OptimizeSubSet ? GENERATIONS : EVALUATION_BUDGET, 0);
+            } catch (StopException e) {
+                // target reached or budget exhausted
+            } catch (IllegalStateException e) {
+                if (!(e.getCause() instanceof StopException)) {
+                    throw e;
+                }
+            }
+            evaluations[seed - 1] = criterion.evaluations;
+            if (criterion.reached) {
+                reached++;
+            }
+        }
+        Arrays.sort(evaluations);
+        System.out.println(problem.name + "\t" + problem.engine() + "\t" + reached + "/" + NUMBER_OF_SEEDS + "\t"
+                + evaluations[NUMBER_OF_SEEDS / 2] + "\t" + evaluations[NUMBER_OF_SEEDS - 1]);
+    }
+}
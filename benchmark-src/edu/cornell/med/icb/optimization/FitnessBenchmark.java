@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptation of the convergence criterion to JGAP, for one chromosome and for a population.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FitnessBenchmark {
+    private static final int POPULATION_SIZE = 1000;
+
+    @Param({"100", "2000", "20000"})
+    int numberOfElements;
+
+    @Param({"3", "10", "50"})
+    int k;
+
+    /**
+     * array: {@link ArraySubSetFitnessFunction}, intset: IntSet criterion, cached: array
+     * criterion behind a fitness cache that holds the whole population.
+     */
+    @Param({"array", "intset", "cached"})
+    String criterion;
+
+    private FitnessFunctionAdapter adapter;
+    private BulkFitnessNoOffset bulkFitness;
+    private Population population;
+    private int next;
+
+    @Setup
+    public void setup() throws InvalidConfigurationException {
+        final SubSetFitnessFunction function = "intset".equals(criterion)
+                ? new BenchmarkProblem.IntSetSumCriterion() : new BenchmarkProblem.SumCriterion();
+        final OptimizeSubSet optimizer = BenchmarkProblem.createOptimizer(numberOfElements, k, POPULATION_SIZE,
+                function);
+        population = optimizer.getGenotype().getPopulation();
+        adapter = new FitnessFunctionAdapter(BenchmarkProblem.range(numberOfElements), k, function,
+                new double[0][]);
+        if ("cached".equals(criterion)) {
+            adapter.setFitnessCache(new FitnessCache(2 * POPULATION_SIZE));
+        }
+        bulkFitness = new BulkFitnessNoOffset(adapter);
+    }
+
+    @Benchmark
+    public double evaluateChromosome() {
+        final IChromosome chromosome = population.getChromosome(next);
+        next = (next + 1) % POPULATION_SIZE;
+        return adapter.getFitnessValue(chromosome);
+    }
+
+    /**
+     * Evaluate a population of {@value #POPULATION_SIZE} chromosomes whose fitness is unknown.
+     */
+    @Benchmark
+    public Population evaluatePopulation() {
+        for (int i = 0; i < POPULATION_SIZE; i++) {
+            population.getChromosome(i).setFitnessValueDirectly(-1);
+        }
+        bulkFitness.evaluate(population);
+        return population;
+    }
+}
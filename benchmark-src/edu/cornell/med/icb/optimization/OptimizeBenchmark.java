@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.InvalidConfigurationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end optimization, from configuration to solution, for a fixed number of generations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OptimizeBenchmark {
+    @Param({"100", "2000", "20000"})
+    int numberOfElements;
+
+    @Param({"3", "10", "50"})
+    int k;
+
+    @Param({"1000"})
+    int populationSize;
+
+    @Param({"100"})
+    int numSteps;
+
+    @Benchmark
+    public double optimize() throws InvalidConfigurationException {
+        final OptimizeSubSet optimizer = new OptimizeSubSet(BenchmarkProblem.range(numberOfElements), k,
+                new BenchmarkProblem.SumCriterion(), populationSize);
+        optimizer.setRandomSeed(1);
+        // a delta of zero never converges, so that every run evolves numSteps generations
+        optimizer.optimize(numSteps, 0);
+        return optimizer.getFitestFunctionValue();
+    }
+}
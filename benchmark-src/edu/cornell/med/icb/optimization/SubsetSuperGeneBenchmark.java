@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations of {@link SubsetSuperGene} done for every chromosome of every generation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubsetSuperGeneBenchmark {
+    @Param({"100", "2000", "20000"})
+    int numberOfElements;
+
+    @Param({"3", "10", "50"})
+    int k;
+
+    private SubsetSuperGene gene;
+    private RandomGenerator random;
+    private int[] elements;
+
+    @Setup
+    public void setup() throws InvalidConfigurationException {
+        final OptimizeSubSet optimizer = BenchmarkProblem.createOptimizer(numberOfElements, k, 10,
+                new BenchmarkProblem.SumCriterion());
+        final IChromosome chromosome = optimizer.getGenotype().getPopulation().getChromosome(0);
+        gene = (SubsetSuperGene) chromosome.getGene(0);
+        random = new TwisterGenerator(1);
+        elements = new int[k];
+    }
+
+    @Benchmark
+    public SubsetSuperGene setToRandomValue() {
+        gene.setToRandomValue(random);
+        return gene;
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return gene.isValid();
+    }
+
+    @Benchmark
+    public IntSet getSubSet() {
+        return gene.getSubSet();
+    }
+
+    @Benchmark
+    public int[] getSubSetIntoArray() {
+        gene.getSubSet(elements);
+        return elements;
+    }
+}
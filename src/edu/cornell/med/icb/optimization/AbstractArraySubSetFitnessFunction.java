@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.apache.commons.lang.ArrayUtils;
+
+import java.util.Arrays;
+
+/**
+ * Base class for fitness functions that only implement {@link #evaluate(int[], double[])}.
+ * The {@link IntSet} variants convert their argument and delegate to the array variant.
+ */
+public abstract class AbstractArraySubSetFitnessFunction implements ArraySubSetFitnessFunction {
+
+    public double evaluate(final IntSet subset, final double... paramValues) {
+        final int[] elements = subset.toIntArray();
+        Arrays.sort(elements);
+        return evaluate(elements, paramValues);
+    }
+
+    public double evaluate(final IntSet subset) {
+        return evaluate(subset, ArrayUtils.EMPTY_DOUBLE_ARRAY);
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+
+/**
+ * Simulated annealing over subsets of k elements and the discrete parameter values of
+ * {@link OptimizeSubSet}. Each step draws a neighbour of the current solution, either by
+ * swapping one element of the subset for an element outside of it, or by changing the value
+ * of one parameter, each position being equally likely. A parameter defined by a list of
+ * values changes to another value of the list; a continuous parameter moves by a Gaussian
+ * step, as when {@link OptimizeSubSet} mutates it (see
+ * {@link #setParameterMutationScale(double)}). Neighbours that are not less fit are always
+ * accepted; less fit neighbours are accepted with probability exp(delta/T), where the
+ * temperature T decreases geometrically from the initial to the final temperature over
+ * numSteps steps. Convergence is only tested once the temperature is low enough that the
+ * search behaves as a local search. With an initial temperature of zero, the search is a
+ * first-improvement local search. When the criterion implements
+ * {@link DeltaSubSetFitnessFunction}, swaps are scored from the fitness of the current
+ * solution.
+ * <p/>
+ * One step evaluates exactly one solution, so this optimizer usually needs far fewer
+ * evaluations than the genetic algorithm for criteria that vary smoothly with the subset.
+ */
+public class AnnealingOptimizer implements SubSetOptimizer {
+    private static final Logger LOG = Logger.getLogger(AnnealingOptimizer.class);
+    /**
+     * Number of random moves used to estimate the initial temperature.
+     */
+    private static final int TEMPERATURE_SAMPLES = 100;
+
+    private final int[] allElements;
+    private final int k;
+    private final SubSetFitnessFunction convergenceCriterion;
+    private final double[][] allPossibleParameterValues;
+    private final boolean[] continuousParameters;
+    private double parameterMutationScale = 0.05;
+    private SplittableGenerator random = new SplittableGenerator();
+    private double initialTemperature = Double.NaN;
+    private double finalTemperatureRatio = 1e-4;
+
+    private long numberOfEvaluations;
+    private int numberOfIterationsPerformed;
+    private IntSet fitestSubset;
+    private double[] fitestParams;
+    private double fitestFunctionValue;
+
+    // current and candidate solutions:
+    private int[] alleles;
+    private int[] paramIndices;
+    private int[] candidateAlleles;
+    private int[] candidateParamIndices;
+    private int[] elements;
+    private double[] paramValues;
+    private final int[] removed = new int[1];
+    private final int[] added = new int[1];
+
+    /**
+     * @param set                  The set of elements from which subsets are chosen.
+     * @param k                    Number of elements in each subset.
+     * @param convergenceCriterion The fitness function to maximize.
+     * @param params               Parameter definitions, see {@link OptimizeSubSet}.
+     */
+    public AnnealingOptimizer(final IntSet set, final int k, final SubSetFitnessFunction convergenceCriterion,
+                              final String... params) {
+        assert k <= set.size() : "subset cannot be larger than the set";
+        this.allElements = set.toIntArray();
+        Arrays.sort(allElements);
+        this.k = k;
+        this.convergenceCriterion = convergenceCriterion;
+        this.allPossibleParameterValues = OptimizeSubSet.parseParameterValues(params);
+        this.continuousParameters = new boolean[params.length];
+        for (int paramIndex = 0; paramIndex < params.length; paramIndex++) {
+            continuousParameters[paramIndex] = OptimizeSubSet.isContinuous(params[paramIndex]);
+        }
+    }
+
+    public void setRandomSeed(final int randomSeed) {
+        random = new SplittableGenerator(randomSeed);
+    }
+
+    /**
+     * Scale of the moves of continuous parameters, as in
+     * {@link OptimizeSubSet#setParameterMutationScale(double)}.
+     *
+     * @param parameterMutationScale Standard deviation of a move, as a fraction of the range
+     *                               of the parameter (0.05 by default).
+     */
+    public void setParameterMutationScale(final double parameterMutationScale) {
+        assert parameterMutationScale > 0 : "mutation scale must be strictly positive";
+        this.parameterMutationScale = parameterMutationScale;
+    }
+
+    /**
+     * Set the temperature schedule. By default, the initial temperature is estimated from
+     * random moves so that a typical degradation is accepted with probability one half, and
+     * the final temperature is 1e-4 times the initial temperature.
+     *
+     * @param initialTemperature    Temperature of the first step, NaN to estimate it, or zero
+     *                              for a first-improvement local search.
+     * @param finalTemperatureRatio Ratio of the temperature of the last step to the initial temperature.
+     */
+    public void setTemperature(final double initialTemperature, final double finalTemperatureRatio) {
+        assert finalTemperatureRatio > 0 && finalTemperatureRatio <= 1 : "ratio must be in (0, 1]";
+        this.initialTemperature = initialTemperature;
+        this.finalTemperatureRatio = finalTemperatureRatio;
+    }
+
+    /**
+     * Anneal from a random solution. A step evaluates one neighbour of the current solution.
+     *
+     * @param numSteps         Maximum number of steps before stopping.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @return True when the best fitness improved by less than abs(convergenceDelta) during
+     *         the last numSteps/10 steps.
+     */
+    public boolean optimize(final int numSteps, final double convergenceDelta) {
+        final int numParameters = allPossibleParameterValues.length;
+        alleles = new int[k];
+        candidateAlleles = new int[k];
+        paramIndices = new int[numParameters];
+        candidateParamIndices = new int[numParameters];
+        elements = new int[k];
+        paramValues = new double[numParameters];
+        numberOfEvaluations = 0;
+
+        randomSolution();
+        double fitness = evaluate(alleles, paramIndices, Double.NaN);
+        double bestFitness = fitness;
+        int[] bestAlleles = alleles.clone();
+        int[] bestParamIndices = paramIndices.clone();
+
+        final double startTemperature = Double.isNaN(initialTemperature)
+                ? estimateInitialTemperature(fitness) : initialTemperature;
+        final double cooling = numSteps > 1 ? Math.pow(finalTemperatureRatio, 1.0 / (numSteps - 1)) : 1;
+        double temperature = startTemperature;
+        final int deltaNumSteps = numSteps / 10;
+        // the run can only converge once a typical degradation is accepted less than once
+        // every deltaNumSteps steps, otherwise the random walk of the hot phase stops it
+        final double convergenceTemperature = deltaNumSteps > 2
+                ? startTemperature * Math.log(2) / Math.log(deltaNumSteps) : startTemperature;
+        final double delta = Math.abs(convergenceDelta);
+        double convergenceReference = bestFitness;
+        int stepsFitnessStable = 0;
+        int step = 0;
+        while (step < numSteps) {
+            final double candidateFitness = evaluate(candidateAlleles, candidateParamIndices,
+                    neighbour() ? fitness : Double.NaN);
+            step++;
+            final double difference = candidateFitness - fitness;
+            if (difference >= 0 || (temperature > 0 && random.nextDouble() < Math.exp(difference / temperature))) {
+                final int[] previousAlleles = alleles;
+                alleles = candidateAlleles;
+                candidateAlleles = previousAlleles;
+                final int[] previousParamIndices = paramIndices;
+                paramIndices = candidateParamIndices;
+                candidateParamIndices = previousParamIndices;
+                fitness = candidateFitness;
+                if (fitness > bestFitness) {
+                    bestFitness = fitness;
+                    System.arraycopy(alleles, 0, bestAlleles, 0, k);
+                    System.arraycopy(paramIndices, 0, bestParamIndices, 0, numParameters);
+                }
+            }
+            if (bestFitness - convergenceReference < delta) {
+                if (temperature <= convergenceTemperature) {
+                    stepsFitnessStable++;
+                }
+            } else {
+                convergenceReference = bestFitness;
+                stepsFitnessStable = 0;
+            }
+            if (stepsFitnessStable >= deltaNumSteps) {
+                break;
+            }
+            temperature *= cooling;
+        }
+        numberOfIterationsPerformed = step;
+        fitestFunctionValue = bestFitness;
+        fitestSubset = new IntArraySet();
+        for (final int allele : bestAlleles) {
+            fitestSubset.add(allElements[allele]);
+        }
+        fitestParams = new double[numParameters];
+        for (int paramIndex = 0; paramIndex < numParameters; paramIndex++) {
+            fitestParams[paramIndex] = allPossibleParameterValues[paramIndex][bestParamIndices[paramIndex]];
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("annealing stopped after " + step + " steps with fitness " + bestFitness);
+        }
+        return stepsFitnessStable >= deltaNumSteps;
+    }
+
+    /**
+     * Set the current solution to a random subset, drawn uniformly with Floyd's algorithm,
+     * and random parameter values.
+     */
+    private void randomSolution() {
+        final boolean[] selected = new boolean[allElements.length];
+        int count = 0;
+        for (int candidate = allElements.length - k; candidate < allElements.length; candidate++) {
+            final int allele = random.nextInt(candidate + 1);
+            final int chosen = selected[allele] ? candidate : allele;
+            selected[chosen] = true;
+            alleles[count++] = chosen;
+        }
+        Arrays.sort(alleles);
+        for (int paramIndex = 0; paramIndex < paramIndices.length; paramIndex++) {
+            paramIndices[paramIndex] = random.nextInt(allPossibleParameterValues[paramIndex].length);
+        }
+    }
+
+    /**
+     * Draw a neighbour of the current solution into the candidate arrays.
+     *
+     * @return True when the neighbour differs from the current solution by one swap,
+     *         whose elements are then in {@link #removed} and {@link #added}.
+     */
+    private boolean neighbour() {
+        System.arraycopy(alleles, 0, candidateAlleles, 0, k);
+        System.arraycopy(paramIndices, 0, candidateParamIndices, 0, paramIndices.length);
+        final int position = random.nextInt(k + paramIndices.length);
+        if (position >= k) {
+            final int paramIndex = position - k;
+            final int numValues = allPossibleParameterValues[paramIndex].length;
+            if (continuousParameters[paramIndex]) {
+                candidateParamIndices[paramIndex] = ContinuousParameterGene.step(paramIndices[paramIndex],
+                        numValues, parameterMutationScale, random);
+            } else if (numValues > 1) {
+                int value = random.nextInt(numValues - 1);
+                if (value >= paramIndices[paramIndex]) {
+                    value++;
+                }
+                candidateParamIndices[paramIndex] = value;
+            }
+            return false;
+        }
+        final int removedAllele = candidateAlleles[position];
+        final int addedAllele = SubsetOperators.swap(candidateAlleles, position, allElements.length, random);
+        if (addedAllele == -1) {
+            return false;
+        }
+        removed[0] = allElements[removedAllele];
+        added[0] = allElements[addedAllele];
+        return true;
+    }
+
+    /**
+     * Evaluate a solution.
+     *
+     * @param parentFitness Fitness of the current solution when the solution differs from it
+     *                      by the swap in {@link #removed} and {@link #added}, NaN otherwise.
+     */
+    private double evaluate(final int[] solutionAlleles, final int[] solutionParamIndices,
+                            final double parentFitness) {
+        numberOfEvaluations++;
+        for (int paramIndex = 0; paramIndex < solutionParamIndices.length; paramIndex++) {
+            paramValues[paramIndex] = allPossibleParameterValues[paramIndex][solutionParamIndices[paramIndex]];
+        }
+        if (convergenceCriterion instanceof ArraySubSetFitnessFunction) {
+            for (int i = 0; i < k; i++) {
+                elements[i] = allElements[solutionAlleles[i]];
+            }
+            if (!Double.isNaN(parentFitness) && convergenceCriterion instanceof DeltaSubSetFitnessFunction) {
+                return ((DeltaSubSetFitnessFunction) convergenceCriterion).evaluate(elements, paramValues,
+                        parentFitness, removed, added);
+            }
+            return ((ArraySubSetFitnessFunction) convergenceCriterion).evaluate(elements, paramValues);
+        }
+        final IntSet subset = new IntArraySet(k);
+        for (final int allele : solutionAlleles) {
+            subset.add(allElements[allele]);
+        }
+        return convergenceCriterion.evaluate(subset, paramValues.clone());
+    }
+
+    /**
+     * Estimate a temperature at which the average degradation caused by a random move is
+     * accepted with probability one half. Moves are drawn from the current solution and are
+     * not applied.
+     */
+    private double estimateInitialTemperature(final double fitness) {
+        double sumOfDegradations = 0;
+        int numberOfDegradations = 0;
+        for (int sample = 0; sample < TEMPERATURE_SAMPLES; sample++) {
+            final double candidateFitness = evaluate(candidateAlleles, candidateParamIndices,
+                    neighbour() ? fitness : Double.NaN);
+            if (candidateFitness < fitness) {
+                sumOfDegradations += fitness - candidateFitness;
+                numberOfDegradations++;
+            }
+        }
+        return numberOfDegradations == 0 ? 0 : sumOfDegradations / numberOfDegradations / Math.log(2);
+    }
+
+    public IntSet getFitestSubset() {
+        return fitestSubset;
+    }
+
+    public double[] getFitestParameterValues() {
+        return fitestParams;
+    }
+
+    public double getFitestFunctionValue() {
+        return fitestFunctionValue;
+    }
+
+    /**
+     * @return Number of annealing steps performed by the last optimization.
+     */
+    public int getNumberOfIterationsPerformed() {
+        return numberOfIterationsPerformed;
+    }
+
+    public int getNumberOfParameters() {
+        return allPossibleParameterValues.length;
+    }
+
+    /**
+     * @return Number of solutions evaluated by the last optimization, including those used to
+     *         estimate the initial temperature.
+     */
+    public long getNumberOfEvaluations() {
+        return numberOfEvaluations;
+    }
+}
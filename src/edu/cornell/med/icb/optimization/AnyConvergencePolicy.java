@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.Population;
+
+/**
+ * Stagnation as soon as any of several policies detects it. Every policy sees every
+ * generation, so that each keeps its history.
+ */
+public class AnyConvergencePolicy implements ConvergencePolicy {
+    private final ConvergencePolicy[] policies;
+
+    /**
+     * @param policies The policies to combine.
+     */
+    public AnyConvergencePolicy(final ConvergencePolicy... policies) {
+        this.policies = policies.clone();
+    }
+
+    public void reset() {
+        for (final ConvergencePolicy policy : policies) {
+            policy.reset();
+        }
+    }
+
+    public boolean isStagnant(final int generation, final double fitness, final Population population) {
+        boolean stagnant = false;
+        for (final ConvergencePolicy policy : policies) {
+            stagnant |= policy.isStagnant(generation, fitness, population);
+        }
+        return stagnant;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+/**
+ * A fitness function that evaluates all the new solutions of a generation in one call, for
+ * instance with a matrix kernel. When the convergence criterion implements this interface,
+ * {@link BulkFitnessNoOffset} hands it every chromosome of the population whose fitness is
+ * not known yet, except invalid solutions and those found in the fitness cache. Batch
+ * evaluation takes precedence over {@link DeltaSubSetFitnessFunction}.
+ * {@link #evaluate(int[], double[])} is still used where solutions are scored one at a time,
+ * for instance by {@link ExhaustiveOptimizer}, and must return the same values. The arrays are
+ * reused from one generation to the next, and may be longer than the number of solutions;
+ * implementations must not keep references to them after the call returns.
+ */
+public interface BatchSubSetFitnessFunction extends ArraySubSetFitnessFunction {
+    /**
+     * Evaluate the fitness function for several solutions.
+     *
+     * @param numberOfSolutions Number of solutions to evaluate, the first of each array.
+     * @param subsets           Elements of the subset of each solution, in increasing order.
+     * @param parameterIndices  Index of the value of each parameter of each solution, in the
+     *                          order of the parameter definitions.
+     * @param paramValues       Value of each parameter of each solution.
+     * @param fitness           Receives the value of the fitness function for each solution.
+     */
+    void evaluate(int numberOfSolutions, int[][] subsets, int[][] parameterIndices, double[][] paramValues,
+                  double[] fitness);
+}
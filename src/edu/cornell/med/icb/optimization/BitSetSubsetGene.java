@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.lang.MutableString;
+import org.jgap.BaseGene;
+import org.jgap.Configuration;
+import org.jgap.Gene;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.RandomGenerator;
+import org.jgap.UnsupportedRepresentationException;
+
+import java.util.Arrays;
+
+/**
+ * A subset gene that stores membership as a bitset of one bit per element of the set,
+ * instead of the k {@link org.jgap.impl.IntegerGene}s of a {@link SubsetSuperGene}. The gene
+ * takes N / 8 bytes whatever the subset size k, so it is smaller than a
+ * {@link SubsetSuperGene} when k is above roughly N / 560 (about 70 bytes per IntegerGene and
+ * its boxed allele). Validity is checked with a population count, and
+ * {@link SubsetOperators} mutate and cross bitsets with bitwise operations.
+ *
+ * @see OptimizeSubSet#setUseBitSetChromosome(boolean)
+ */
+public class BitSetSubsetGene extends BaseGene implements SubsetGene {
+    private final int k;
+    private final int[] allElements;
+    private final long[] words;
+
+    /**
+     * @param configuration The configuration of the genetic algorithm.
+     * @param k             Number of elements in the subset.
+     * @param allElements   All the elements of the set, in increasing order.
+     * @throws InvalidConfigurationException If the configuration is null.
+     */
+    public BitSetSubsetGene(final Configuration configuration, final int k, final int[] allElements)
+            throws InvalidConfigurationException {
+        super(configuration);
+        this.k = k;
+        this.allElements = allElements;
+        this.words = new long[(allElements.length + 63) >>> 6];
+    }
+
+    @Override
+    protected Gene newGeneInternal() {
+        try {
+            return new BitSetSubsetGene(getConfiguration(), k, allElements);
+        } catch (InvalidConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The words of the bitset, not a copy. Bit i of word i / 64 is set when allele i
+     *         is in the subset.
+     */
+    long[] getWords() {
+        return words;
+    }
+
+    /**
+     * @param allele A long[] bitset as returned by {@link #getAllele()}, copied into this gene.
+     */
+    public void setAllele(final Object allele) {
+        System.arraycopy((long[]) allele, 0, words, 0, words.length);
+    }
+
+    @Override
+    protected Object getInternalValue() {
+        return words;
+    }
+
+    @Override
+    public int size() {
+        return k;
+    }
+
+    public boolean isValid() {
+        int cardinality = 0;
+        for (final long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality == k;
+    }
+
+    public IntSet getSubSet() {
+        final int[] elements = new int[k];
+        getSubSet(elements);
+        return new IntArraySet(elements);
+    }
+
+    public void getSubSet(final int[] elements) {
+        getAlleles(elements);
+        for (int i = 0; i < k; i++) {
+            elements[i] = allElements[elements[i]];
+        }
+    }
+
+    public void getAlleles(final int[] alleles) {
+        int index = 0;
+        for (int w = 0; w < words.length && index < k; w++) {
+            long bits = words[w];
+            while (bits != 0 && index < k) {
+                alleles[index++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    public void setAlleles(final int[] alleles) {
+        Arrays.fill(words, 0);
+        for (int i = 0; i < k; i++) {
+            words[alleles[i] >>> 6] |= 1L << alleles[i];
+        }
+    }
+
+    public int getElement(final int allele) {
+        return allElements[allele];
+    }
+
+    public int getNumberOfElements() {
+        return allElements.length;
+    }
+
+    /**
+     * Draw k distinct alleles uniformly, with Floyd's algorithm.
+     */
+    public void setToRandomValue(final RandomGenerator a_numberGenerator) {
+        Arrays.fill(words, 0);
+        for (int j = allElements.length - k; j < allElements.length; j++) {
+            final int t = a_numberGenerator.nextInt(j + 1);
+            final int allele = (words[t >>> 6] & (1L << t)) == 0 ? t : j;
+            words[allele >>> 6] |= 1L << allele;
+        }
+    }
+
+    /**
+     * Swap the allele of rank index in the subset for an allele that is not in the subset.
+     * Used by JGAP's default mutation operator; the percentage is ignored.
+     */
+    public void applyMutation(final int index, final double a_percentage) {
+        SubsetOperators.swap(words, index, k, allElements.length, getConfiguration().getRandomGenerator());
+    }
+
+    public String getPersistentRepresentation() {
+        final int[] alleles = new int[k];
+        getAlleles(alleles);
+        final MutableString result = new MutableString();
+        for (int i = 0; i < k; i++) {
+            if (i > 0) {
+                result.append(',');
+            }
+            result.append(alleles[i]);
+        }
+        return result.toString();
+    }
+
+    public void setValueFromPersistentRepresentation(final String representation)
+            throws UnsupportedRepresentationException {
+        final String[] tokens = representation.split(",");
+        if (tokens.length != k) {
+            throw new UnsupportedRepresentationException("Expected " + k + " alleles: " + representation);
+        }
+        final int[] alleles = new int[k];
+        for (int i = 0; i < k; i++) {
+            alleles[i] = Integer.parseInt(tokens[i]);
+        }
+        setAlleles(alleles);
+    }
+
+    public int compareTo(final Object other) {
+        if (other == null) {
+            return 1;
+        }
+        final long[] otherWords = ((BitSetSubsetGene) other).words;
+        for (int w = 0; w < words.length; w++) {
+            if (words[w] != otherWords[w]) {
+                return words[w] < otherWords[w] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        final int[] alleles = new int[k];
+        getAlleles(alleles);
+        final MutableString result = new MutableString();
+        result.append("{ ");
+        for (final int allele : alleles) {
+            result.append(allele);
+            result.append(' ');
+        }
+        result.append("} ");
+        return result.toString();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+/**
+ * A fitness function that can bound the fitness of every subset that extends a partial
+ * subset. {@link ExhaustiveOptimizer} uses the bound to skip the completions of partial
+ * subsets that cannot be fitter than the best subset found so far. The bound must never be
+ * less than the fitness of a completion, otherwise the optimum may be missed; looser bounds
+ * only prune less.
+ */
+public interface BoundedSubSetFitnessFunction extends ArraySubSetFitnessFunction {
+    /**
+     * Bound the fitness of the subsets made of the partial subset and of
+     * k - partialSize elements of candidates[firstCandidate], ..., candidates[candidates.length - 1].
+     *
+     * @param partial        Elements of the partial subset, in increasing order, in positions 0 to partialSize - 1.
+     * @param partialSize    Number of elements in the partial subset.
+     * @param k              Number of elements in a complete subset.
+     * @param candidates     All the elements of the set, in increasing order. Every candidate is
+     *                       larger than the elements of the partial subset.
+     * @param firstCandidate Index of the first candidate that may complete the partial subset.
+     * @param paramValues    value of each define parameters
+     * @return An upper bound of the fitness of any completion of the partial subset.
+     */
+    double getUpperBound(int[] partial, int partialSize, int k, int[] candidates, int firstCandidate,
+                         double[] paramValues);
+}
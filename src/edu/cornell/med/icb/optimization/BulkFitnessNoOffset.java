@@ -23,7 +23,8 @@ import org.jgap.FitnessFunction;
 import org.jgap.IChromosome;
 import org.jgap.Population;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This class implements BulkFitnessFunction, but does not remove a population offset from
@@ -33,7 +34,11 @@ import java.util.Iterator;
  *         Time: 4:44:49 PM
  */
 public class BulkFitnessNoOffset extends BulkFitnessFunction {
-    private final FitnessFunction fitnessFunction;
+    protected final FitnessFunction fitnessFunction;
+    private long evaluationTime;
+    private volatile boolean hasDeadline;
+    private volatile long deadline;
+    private SurrogateModel surrogateModel;
 
     public BulkFitnessNoOffset(final FitnessFunction fitnessFunction) {
         this.fitnessFunction = fitnessFunction;
@@ -41,23 +46,113 @@ public class BulkFitnessNoOffset extends BulkFitnessFunction {
 
     @Override
     public void evaluate(final Population a_chromosomes) {
-         double curFitness;
-        final Iterator itChromosomes = a_chromosomes.iterator();
-        IChromosome chromosome;
-        while (itChromosomes.hasNext()) {
-            chromosome = (IChromosome) itChromosomes.next();
-
-            curFitness = chromosome.getFitnessValueDirectly();
-            if (curFitness < 0) {
-                // fitness was not evaluated for this chromosome yet.
-
-                curFitness = fitnessFunction.getFitnessValue(chromosome);
-                // And store it to avoid evaluation of the same Chromosome again:
-                chromosome.setFitnessValue(curFitness);
+        final long start = System.nanoTime();
+        List<IChromosome> unevaluated = getUnevaluated(a_chromosomes);
+        if (surrogateModel != null) {
+            // the chromosomes screened out are left unevaluated
+            unevaluated = surrogateModel.screen(unevaluated);
+        }
+        if (!unevaluated.isEmpty()) {
+            if (fitnessFunction instanceof FitnessFunctionAdapter
+                    && ((FitnessFunctionAdapter) fitnessFunction).isBatchEvaluation()) {
+                evaluateBatch(unevaluated);
             } else {
-                chromosome.setFitnessValue(curFitness);
+                evaluateChromosomes(unevaluated);
             }
+        }
+        if (surrogateModel != null) {
+            surrogateModel.learn(unevaluated);
+        }
+        evaluationTime += System.nanoTime() - start;
+    }
 
+    private static List<IChromosome> getUnevaluated(final Population a_chromosomes) {
+        final List<IChromosome> unevaluated = new ArrayList<IChromosome>();
+        for (final Object element : a_chromosomes.getChromosomes()) {
+            if (((IChromosome) element).getFitnessValueDirectly() < 0) {
+                unevaluated.add((IChromosome) element);
+            }
+        }
+        return unevaluated;
+    }
+
+    /**
+     * Screen the unevaluated chromosomes of each population with a surrogate model, so that
+     * only those the model ranks best are evaluated.
+     *
+     * @param surrogateModel The model, or null to evaluate every chromosome.
+     */
+    public void setSurrogateModel(final SurrogateModel surrogateModel) {
+        this.surrogateModel = surrogateModel;
+    }
+
+    public SurrogateModel getSurrogateModel() {
+        return surrogateModel;
+    }
+
+    /**
+     * @return Time spent evaluating populations since this instance was created, in nanoseconds.
+     */
+    public long getEvaluationTime() {
+        return evaluationTime;
+    }
+
+    /**
+     * Stop evaluating chromosomes once the deadline is reached. Each chromosome is only
+     * evaluated if the deadline has not been reached yet, so the deadline is overshot by at
+     * most one fitness evaluation (per thread). Chromosomes that are not evaluated keep the
+     * fitness {@link FitnessFunction#NO_FITNESS_VALUE}, so that they rank below the evaluated
+     * chromosomes and are never mistaken for evaluated ones.
+     *
+     * @param deadline Deadline, as a value of {@link System#nanoTime()}.
+     */
+    public void setDeadline(final long deadline) {
+        this.deadline = deadline;
+        hasDeadline = true;
+    }
+
+    public void clearDeadline() {
+        hasDeadline = false;
+    }
+
+    /**
+     * @return True if a deadline is set and has been reached.
+     */
+    public boolean isDeadlineReached() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Evaluate chromosomes whose fitness is not known yet with a single call to the
+     * {@link BatchSubSetFitnessFunction} of the adapter, on the calling thread. The deadline
+     * is only checked before the call.
+     *
+     * @param unevaluated The chromosomes to evaluate.
+     */
+    protected void evaluateBatch(final List<IChromosome> unevaluated) {
+        if (isDeadlineReached()) {
+            return;
+        }
+        final double[] fitness = new double[unevaluated.size()];
+        ((FitnessFunctionAdapter) fitnessFunction).evaluate(unevaluated, fitness);
+        for (int c = 0; c < fitness.length; c++) {
+            unevaluated.get(c).setFitnessValue(fitness[c]);
+        }
+    }
+
+    /**
+     * Evaluate chromosomes whose fitness is not known yet, one at a time.
+     *
+     * @param unevaluated The chromosomes to evaluate.
+     */
+    protected void evaluateChromosomes(final List<IChromosome> unevaluated) {
+        for (final IChromosome chromosome : unevaluated) {
+            if (isDeadlineReached()) {
+                // leave the remaining chromosomes unevaluated
+                return;
+            }
+            // store the fitness to avoid evaluation of the same Chromosome again:
+            chromosome.setFitnessValue(fitnessFunction.getFitnessValue(chromosome));
         }
     }
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.Configuration;
+import org.jgap.Genotype;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+import org.jgap.RandomGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * State of an {@link OptimizeSubSet} run between two generations, stored in a compact binary
+ * file. The file holds the loop and convergence counters, the serialized state of the random
+ * generator, the state of the surrogate model, if any, and for each chromosome of the
+ * population its fitness, age and encoded solution (see
+ * {@link FitnessFunctionAdapter#encodeSolution(IChromosome)}). Files are
+ * written to a temporary file that is then renamed, so that a run killed while writing
+ * leaves the previous checkpoint intact.
+ */
+final class Checkpoint {
+    private static final int MAGIC = 0x53534b43;
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 11 * 4 + 8;
+
+    /**
+     * Index of the next step of the optimization loop.
+     */
+    int step;
+    int timesFitnessStable;
+    double previousFitness = -1;
+    /**
+     * The random generator of the optimization, in its state at the time of the checkpoint.
+     */
+    RandomGenerator randomGenerator;
+    /**
+     * The surrogate model of the optimization, or null when it does not screen offspring. A
+     * model set before {@link #load(File, Configuration, int)} is restored to the saved state.
+     */
+    SurrogateModel surrogateModel;
+
+    private ByteBuffer buffer;
+
+    /**
+     * Write the population and the counters of this checkpoint to a file.
+     *
+     * @param file        Destination file, replaced if it exists.
+     * @param genotype    The population.
+     * @param numElements Number of elements in the set the subsets are chosen from.
+     * @throws IOException If the file cannot be written.
+     */
+    void save(final File file, final Genotype genotype, final int numElements) throws IOException {
+        final Population population = genotype.getPopulation();
+        final int size = population.size();
+        final int subsetSize = population.getChromosome(0).getGene(0).size();
+        final int solutionLength = subsetSize + population.getChromosome(0).size() - 1;
+        final byte[] generatorState = serialize(randomGenerator);
+        final int surrogateStateSize = surrogateModel == null ? 0 : surrogateModel.getStateSize();
+        final int length = HEADER_SIZE + generatorState.length + surrogateStateSize
+                + size * (8 + 4 + 4 + 4 * solutionLength);
+        if (buffer == null || buffer.capacity() < length) {
+            buffer = ByteBuffer.allocateDirect(length);
+        }
+        buffer.clear();
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putInt(numElements).putInt(subsetSize).putInt(solutionLength - subsetSize);
+        buffer.putInt(step).putInt(genotype.getConfiguration().getGenerationNr());
+        buffer.putInt(timesFitnessStable).putDouble(previousFitness);
+        buffer.putInt(generatorState.length).put(generatorState);
+        buffer.putInt(surrogateStateSize);
+        if (surrogateModel != null) {
+            surrogateModel.writeState(buffer);
+        }
+        buffer.putInt(size);
+        // the same chromosome object may appear more than once in a population:
+        final Map<IChromosome, Integer> firstIndex = new IdentityHashMap<IChromosome, Integer>();
+        final int[] solution = new int[solutionLength];
+        for (int i = 0; i < size; i++) {
+            final IChromosome chromosome = population.getChromosome(i);
+            final Integer sameAs = firstIndex.get(chromosome);
+            if (sameAs != null) {
+                buffer.putInt(sameAs);
+                continue;
+            }
+            firstIndex.put(chromosome, i);
+            buffer.putInt(-1);
+            buffer.putDouble(chromosome.getFitnessValueDirectly());
+            buffer.putInt(chromosome.getAge());
+            FitnessFunctionAdapter.encodeSolution(chromosome, solution);
+            for (final int value : solution) {
+                buffer.putInt(value);
+            }
+        }
+        buffer.flip();
+
+        final File temporary = new File(file.getPath() + ".tmp");
+        final FileOutputStream output = new FileOutputStream(temporary);
+        try {
+            final FileChannel channel = output.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } finally {
+            output.close();
+        }
+        // renameTo does not replace an existing file on every platform
+        if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+            throw new IOException("Cannot rename " + temporary + " to " + file);
+        }
+    }
+
+    /**
+     * Read a checkpoint and recreate its population. The counters of this checkpoint are set
+     * from the file.
+     *
+     * @param file          The checkpoint file.
+     * @param configuration Configuration of the optimizer that resumes the run. Its generation
+     *                      number is advanced to that of the checkpoint.
+     * @param numElements   Number of elements in the set the subsets are chosen from.
+     * @return The population saved in the checkpoint.
+     * @throws IOException                   If the file cannot be read, or was written for
+     *                                       another problem.
+     * @throws InvalidConfigurationException If the chromosomes cannot be created.
+     */
+    Population load(final File file, final Configuration configuration, final int numElements)
+            throws IOException, InvalidConfigurationException {
+        final FileInputStream input = new FileInputStream(file);
+        final ByteBuffer data;
+        try {
+            final FileChannel channel = input.getChannel();
+            data = ByteBuffer.allocate((int) channel.size());
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    throw new IOException("Unexpected end of checkpoint " + file);
+                }
+            }
+        } finally {
+            input.close();
+        }
+        data.flip();
+        if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+            throw new IOException(file + " is not a checkpoint file.");
+        }
+        final IChromosome sample = configuration.getSampleChromosome();
+        final int subsetSize = sample.getGene(0).size();
+        final int numParameters = sample.size() - 1;
+        if (data.getInt() != numElements || data.getInt() != subsetSize || data.getInt() != numParameters) {
+            throw new IOException("Checkpoint " + file + " was written for a different set, subset size or "
+                    + "number of parameters.");
+        }
+        step = data.getInt();
+        final int generationNumber = data.getInt();
+        timesFitnessStable = data.getInt();
+        previousFitness = data.getDouble();
+        final byte[] generatorState = new byte[data.getInt()];
+        data.get(generatorState);
+        randomGenerator = (RandomGenerator) deserialize(generatorState, file);
+        final int surrogateStateSize = data.getInt();
+        if (surrogateStateSize > 0 && surrogateModel != null) {
+            surrogateModel.readState(data);
+        } else {
+            // the saved model is only restored into a model configured on the optimizer:
+            data.position(data.position() + surrogateStateSize);
+        }
+        final int size = data.getInt();
+
+        final Population population = new Population(configuration, size);
+        final int[] solution = new int[subsetSize + numParameters];
+        for (int i = 0; i < size; i++) {
+            final int sameAs = data.getInt();
+            if (sameAs >= 0) {
+                population.addChromosome(population.getChromosome(sameAs));
+                continue;
+            }
+            final double fitness = data.getDouble();
+            final int age = data.getInt();
+            for (int j = 0; j < solution.length; j++) {
+                solution[j] = data.getInt();
+            }
+            final IChromosome chromosome = (IChromosome) sample.clone();
+            FitnessFunctionAdapter.decodeSolution(chromosome, solution);
+            chromosome.setFitnessValueDirectly(fitness);
+            chromosome.resetAge();
+            for (int a = 0; a < age; a++) {
+                chromosome.increaseAge();
+            }
+            population.addChromosome(chromosome);
+        }
+        while (configuration.getGenerationNr() < generationNumber) {
+            configuration.incrementGenerationNr();
+        }
+        return population;
+    }
+
+    private static byte[] serialize(final Object state) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(state);
+        output.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(final byte[] state, final File file) throws IOException {
+        final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(state));
+        try {
+            return input.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot restore the state saved in " + file + ": " + e.getMessage());
+        } finally {
+            input.close();
+        }
+    }
+}
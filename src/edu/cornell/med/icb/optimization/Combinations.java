@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+/**
+ * Ranks and unranks k-combinations of {0, ..., n-1} with the combinatorial number system. A
+ * combination c[0] &lt; c[1] &lt; ... &lt; c[k-1] has rank C(c[0], 1) + C(c[1], 2) + ... +
+ * C(c[k-1], k), which orders combinations colexicographically and maps them one to one onto
+ * 0 ... C(n, k) - 1. A range of ranks can then be enumerated independently of the others by
+ * unranking its first combination and stepping with {@link #next(int[], int)}.
+ */
+final class Combinations {
+    private Combinations() {
+        super();
+    }
+
+    /**
+     * @return The binomial coefficient C(n, k), or Long.MAX_VALUE if it does not fit in a long.
+     */
+    static long binomial(final int n, final int k) {
+        if (k < 0 || k > n) {
+            return 0;
+        }
+        final int smallest = Math.min(k, n - k);
+        long result = 1;
+        for (int i = 1; i <= smallest; i++) {
+            // result * (n - smallest + i) is divisible by i, divide first where possible to delay overflow
+            final long gcd = gcd(result, i);
+            final long factor = (n - smallest + i) / (i / gcd);
+            final long reduced = result / gcd;
+            if (reduced > Long.MAX_VALUE / factor) {
+                return Long.MAX_VALUE;
+            }
+            result = reduced * factor;
+        }
+        return result;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            final long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * @param combination Indices in increasing order.
+     * @return Rank of the combination.
+     */
+    static long rank(final int[] combination) {
+        long rank = 0;
+        for (int i = 0; i < combination.length; i++) {
+            rank += binomial(combination[i], i + 1);
+        }
+        return rank;
+    }
+
+    /**
+     * Find the combination of a given rank.
+     *
+     * @param rank        Rank of the combination, less than C(n, combination.length).
+     * @param n           Number of elements the indices are chosen from.
+     * @param combination Receives the indices of the combination, in increasing order.
+     */
+    static void unrank(final long rank, final int n, final int[] combination) {
+        long remaining = rank;
+        int candidate = n - 1;
+        for (int i = combination.length; i > 0; i--) {
+            // largest index c such that C(c, i) <= remaining
+            while (binomial(candidate, i) > remaining) {
+                candidate--;
+            }
+            combination[i - 1] = candidate;
+            remaining -= binomial(candidate, i);
+            candidate--;
+        }
+    }
+
+    /**
+     * Replace a combination by the combination of the next rank.
+     *
+     * @param combination Indices in increasing order.
+     * @param n           Number of elements the indices are chosen from.
+     * @return False if the combination had the last rank, in which case it is left unchanged.
+     */
+    static boolean next(final int[] combination, final int n) {
+        final int k = combination.length;
+        for (int i = 0; i < k; i++) {
+            final int limit = i + 1 < k ? combination[i + 1] : n;
+            if (combination[i] + 1 < limit) {
+                combination[i]++;
+                for (int j = 0; j < i; j++) {
+                    combination[j] = j;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+}
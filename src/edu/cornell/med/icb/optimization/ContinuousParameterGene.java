@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.Configuration;
+import org.jgap.Gene;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.RandomGenerator;
+import org.jgap.impl.IntegerGene;
+
+/**
+ * Gene of a continuous parameter, defined as name=min:max or name=min:max:log (see
+ * {@link OptimizeSubSet#parseParameterValues(String[])}). The range is quantized into
+ * {@link OptimizeSubSet#CONTINUOUS_PARAMETER_STEPS} values, and the gene holds the index of
+ * the value like the gene of a parameter with a grid of values. Instead of jumping to a random
+ * value, {@link #mutate(RandomGenerator)} moves the index by a Gaussian step, so that the
+ * search refines good parameter values instead of resampling the whole range.
+ */
+public class ContinuousParameterGene extends IntegerGene {
+    private final int numberOfValues;
+    private final double mutationScale;
+
+    /**
+     * @param configuration  The configuration of the genetic algorithm.
+     * @param numberOfValues Number of values the range of the parameter is quantized into.
+     * @param mutationScale  Standard deviation of a mutation step, as a fraction of the range.
+     * @throws InvalidConfigurationException If the configuration is null.
+     */
+    public ContinuousParameterGene(final Configuration configuration, final int numberOfValues,
+                                   final double mutationScale) throws InvalidConfigurationException {
+        super(configuration, 0, numberOfValues - 1);
+        assert numberOfValues > 1 : "a continuous parameter must have at least two values";
+        assert mutationScale > 0 : "mutation scale must be strictly positive";
+        this.numberOfValues = numberOfValues;
+        this.mutationScale = mutationScale;
+    }
+
+    @Override
+    protected Gene newGeneInternal() {
+        try {
+            return new ContinuousParameterGene(getConfiguration(), numberOfValues, mutationScale);
+        } catch (InvalidConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Move the index of the value by a Gaussian step of standard deviation mutationScale times
+     * the number of values, and of at least one value. Steps that leave the range are
+     * reflected at its bounds.
+     *
+     * @param random Source of random numbers.
+     */
+    public void mutate(final RandomGenerator random) {
+        setAllele(step(intValue(), numberOfValues, mutationScale, random));
+    }
+
+    /**
+     * Draw the index of a value a Gaussian step away from the given index, as
+     * {@link #mutate(RandomGenerator)} does. Also used by {@link AnnealingOptimizer} to draw
+     * neighbours of continuous parameters.
+     *
+     * @param index          Index of the current value.
+     * @param numberOfValues Number of values the range of the parameter is quantized into.
+     * @param mutationScale  Standard deviation of the step, as a fraction of the range.
+     * @param random         Source of random numbers.
+     * @return Index of the new value.
+     */
+    static int step(final int index, final int numberOfValues, final double mutationScale,
+                    final RandomGenerator random) {
+        // Box-Muller: RandomGenerator has no nextGaussian.
+        final double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble()))
+                * Math.cos(2 * Math.PI * random.nextDouble());
+        long step = Math.round(gaussian * mutationScale * (numberOfValues - 1));
+        if (step == 0) {
+            step = random.nextBoolean() ? 1 : -1;
+        }
+        final long last = numberOfValues - 1;
+        long next = index + step;
+        if (next < 0) {
+            next = -next;
+        } else if (next > last) {
+            next = 2 * last - next;
+        }
+        return (int) Math.max(0, Math.min(last, next));
+    }
+
+    public double getMutationScale() {
+        return mutationScale;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.Population;
+
+/**
+ * Decides when the population evolved by {@link OptimizeSubSet} has stagnated. The optimizer
+ * calls the policy once per generation, and then stops or restarts the population (see
+ * {@link OptimizeSubSet#setRestartOnStagnation(int, double)}). Policies keep state between
+ * calls; an instance must only be used by one optimizer at a time.
+ *
+ * @see OptimizeSubSet#setConvergencePolicy(ConvergencePolicy)
+ */
+public interface ConvergencePolicy {
+    /**
+     * Forget the generations seen so far. Called at the start of a run and after each restart.
+     */
+    void reset();
+
+    /**
+     * @param generation The generation of the population.
+     * @param fitness    Fitness of the fittest chromosome of the population.
+     * @param population The population, whose chromosomes have all been evaluated.
+     * @return True when the search has stagnated.
+     */
+    boolean isStagnant(int generation, double fitness, Population population);
+}
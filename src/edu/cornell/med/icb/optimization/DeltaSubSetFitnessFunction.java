@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+/**
+ * A fitness function that can score a subset from the fitness of the subset it was derived
+ * from. Criteria that are additive or pairwise over elements can then score a child that
+ * differs from its parent by a few swapped elements in O(1) or O(k) instead of a full
+ * re-evaluation. {@link FitnessFunctionAdapter} calls
+ * {@link #evaluate(int[], double[], double, int[], int[])} for chromosomes created by the
+ * subset operators from an evaluated parent with the same parameter values (see
+ * {@link SubsetLineage}), and {@link #evaluate(int[], double[])} for all other chromosomes.
+ * Both methods must return the same value for a given subset and parameter values. The
+ * subset may be larger than its parent when it was seeded by {@link SubsetSizeOptimizer}.
+ */
+public interface DeltaSubSetFitnessFunction extends ArraySubSetFitnessFunction {
+    /**
+     * Evaluate the fitness function given a subset and the fitness of its parent.
+     *
+     * @param subset        Elements of the subset, in increasing order.
+     * @param paramValues   value of each define parameters, identical for the subset and its parent.
+     * @param parentFitness Value of the fitness function for the parent.
+     * @param removed       Elements of the parent that are not in the subset, in increasing order.
+     * @param added         Elements of the subset that are not in the parent, in increasing order.
+     * @return Value of the fitness function for the given subset.
+     */
+    double evaluate(int[] subset, double[] paramValues, double parentFitness, int[] removed, int[] added);
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jgap.IChromosome;
+import org.jgap.Population;
+
+/**
+ * Stagnation when the diversity of the population collapses. The diversity is one minus the
+ * fraction of the population that are copies of its most common solution. Unlike the number
+ * of distinct solutions, it does not depend on how the size of the population compares with
+ * the number of possible solutions. Once most chromosomes are copies of one solution,
+ * crossover mostly recombines it with itself and only mutation explores, so a restart is
+ * usually more productive than further generations.
+ */
+public class DiversityConvergencePolicy implements ConvergencePolicy {
+    private final double minimumDiversity;
+    private double diversity = 1;
+
+    /**
+     * @param minimumDiversity Diversity below which the search has stagnated, for instance 0.1
+     *                         when nine chromosomes in ten are copies of the same solution.
+     */
+    public DiversityConvergencePolicy(final double minimumDiversity) {
+        assert minimumDiversity > 0 && minimumDiversity <= 1 : "minimum diversity must be in (0, 1]";
+        this.minimumDiversity = minimumDiversity;
+    }
+
+    public void reset() {
+        diversity = 1;
+    }
+
+    public boolean isStagnant(final int generation, final double fitness, final Population population) {
+        diversity = getDiversity(population);
+        return diversity < minimumDiversity;
+    }
+
+    /**
+     * @return Diversity of the population seen by the last call to
+     *         {@link #isStagnant(int, double, Population)}.
+     */
+    public double getDiversity() {
+        return diversity;
+    }
+
+    /**
+     * @param population A population of subset chromosomes.
+     * @return One minus the fraction of the population that are copies of its most common solution.
+     */
+    static double getDiversity(final Population population) {
+        final Object2IntMap<IntArrayList> copies = new Object2IntOpenHashMap<IntArrayList>();
+        int mostCopies = 0;
+        for (final Object chromosome : population.getChromosomes()) {
+            final IntArrayList solution =
+                    IntArrayList.wrap(FitnessFunctionAdapter.encodeSolution((IChromosome) chromosome));
+            final int count = copies.getInt(solution) + 1;
+            copies.put(solution, count);
+            mostCopies = Math.max(mostCopies, count);
+        }
+        return population.size() == 0 ? 1 : 1 - (double) mostCopies / population.size();
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates every subset of k elements with every combination of parameter values, and
+ * returns the optimum. This is faster than the genetic algorithm when the search space has
+ * up to a few million solutions. Subsets are enumerated by rank in the combinatorial number
+ * system (see {@link Combinations}): the ranks are split into contiguous ranges that are
+ * searched concurrently. When the criterion implements {@link BoundedSubSetFitnessFunction},
+ * subsets are instead enumerated depth first, one branch per smallest element, and partial
+ * subsets whose bound is less than the fittest solution found so far are not completed.
+ * <p/>
+ * When several solutions have the maximum fitness, the solution with the lowest subset rank,
+ * then the lowest parameter indices, is returned, so the result does not depend on the
+ * number of threads.
+ */
+public class ExhaustiveOptimizer implements SubSetOptimizer {
+    private static final Logger LOG = Logger.getLogger(ExhaustiveOptimizer.class);
+    /**
+     * Number of rank ranges per thread, so that threads that finish early can take more work.
+     */
+    private static final int RANGES_PER_THREAD = 8;
+
+    private final int[] allElements;
+    private final int k;
+    private final SubSetFitnessFunction convergenceCriterion;
+    private final double[][] allPossibleParameterValues;
+    private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService executor;
+    private boolean useUpperBounds = true;
+
+    private long numberOfEvaluations;
+    private int numberOfIterationsPerformed;
+    private IntSet fitestSubset;
+    private double[] fitestParams;
+    private double fitestFunctionValue;
+
+    /**
+     * @param set                  The set of elements from which subsets are chosen.
+     * @param k                    Number of elements in each subset.
+     * @param convergenceCriterion The fitness function to maximize. It must be safe to call
+     *                             concurrently when more than one thread is used.
+     * @param params               Parameter definitions, see {@link OptimizeSubSet}.
+     */
+    public ExhaustiveOptimizer(final IntSet set, final int k, final SubSetFitnessFunction convergenceCriterion,
+                               final String... params) {
+        this(sortedElements(set), k, convergenceCriterion, OptimizeSubSet.parseParameterValues(params));
+    }
+
+    /**
+     * @param allElements                The elements of the set, in increasing order.
+     * @param allPossibleParameterValues The possible values of each parameter.
+     */
+    ExhaustiveOptimizer(final int[] allElements, final int k, final SubSetFitnessFunction convergenceCriterion,
+                        final double[][] allPossibleParameterValues) {
+        assert k > 0 && k <= allElements.length : "subset size must be between one and the size of the set";
+        this.allElements = allElements;
+        this.k = k;
+        this.convergenceCriterion = convergenceCriterion;
+        this.allPossibleParameterValues = allPossibleParameterValues;
+    }
+
+    private static int[] sortedElements(final IntSet set) {
+        final int[] elements = set.toIntArray();
+        Arrays.sort(elements);
+        return elements;
+    }
+
+    /**
+     * Has no effect: the search is deterministic.
+     */
+    public void setRandomSeed(final int randomSeed) {
+    }
+
+    /**
+     * @param numberOfThreads Number of threads that search the solutions, by default the
+     *                        number of processors (1 searches in the calling thread).
+     */
+    public void setNumberOfThreads(final int numberOfThreads) {
+        assert numberOfThreads > 0 : "number of threads must be at least one";
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * Search with an executor provided by the caller. The executor is not shut down by this class.
+     *
+     * @param executor Executor that runs the search, or null to use {@link #setNumberOfThreads(int)}.
+     */
+    public void setExecutorService(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param useUpperBounds Whether to prune with the bounds of a {@link BoundedSubSetFitnessFunction}
+     *                       (the default). Has no effect for other criteria.
+     */
+    public void setUseUpperBounds(final boolean useUpperBounds) {
+        this.useUpperBounds = useUpperBounds;
+    }
+
+    /**
+     * @return Number of solutions in the search space, or Long.MAX_VALUE if it does not fit in a long.
+     */
+    public long getSearchSpaceSize() {
+        return getSearchSpaceSize(allElements.length, k, allPossibleParameterValues);
+    }
+
+    static long getSearchSpaceSize(final int numElements, final int k, final double[][] allPossibleParameterValues) {
+        long size = Combinations.binomial(numElements, k);
+        for (final double[] values : allPossibleParameterValues) {
+            if (size > Long.MAX_VALUE / values.length) {
+                return Long.MAX_VALUE;
+            }
+            size *= values.length;
+        }
+        return size;
+    }
+
+    /**
+     * Evaluate all the solutions. The search is a single pass and always finds the optimum.
+     *
+     * @param numSteps         Ignored.
+     * @param convergenceDelta Ignored.
+     * @return True.
+     */
+    public boolean optimize(final int numSteps, final double convergenceDelta) {
+        final long numberOfSubsets = Combinations.binomial(allElements.length, k);
+        assert numberOfSubsets < Long.MAX_VALUE : "too many subsets to enumerate";
+        final List<Callable<Search>> tasks = new ArrayList<Callable<Search>>();
+        if (useUpperBounds && convergenceCriterion instanceof BoundedSubSetFitnessFunction) {
+            final AtomicLong incumbent = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+            for (int first = 0; first <= allElements.length - k; first++) {
+                tasks.add(new BoundedSearch(first, incumbent));
+            }
+        } else {
+            final long numberOfRanges = Math.min(numberOfSubsets, (long) numberOfThreads * RANGES_PER_THREAD);
+            final long rangeSize = numberOfSubsets / numberOfRanges;
+            final long remainder = numberOfSubsets % numberOfRanges;
+            long from = 0;
+            for (long range = 0; range < numberOfRanges; range++) {
+                final long to = from + rangeSize + (range < remainder ? 1 : 0);
+                tasks.add(new RankSearch(from, to));
+                from = to;
+            }
+        }
+        LOG.debug("searching " + getSearchSpaceSize() + " solutions in " + tasks.size() + " tasks");
+
+        Search fittest = null;
+        numberOfEvaluations = 0;
+        for (final Search search : run(tasks)) {
+            numberOfEvaluations += search.evaluations;
+            if (search.combination != null && (fittest == null || search.isFitterThan(fittest))) {
+                fittest = search;
+            }
+        }
+        numberOfIterationsPerformed = 1;
+        assert fittest != null : "at least one solution must be evaluated";
+        fitestFunctionValue = fittest.fitness;
+        fitestSubset = new IntArraySet(k);
+        for (final int index : fittest.combination) {
+            fitestSubset.add(allElements[index]);
+        }
+        fitestParams = new double[allPossibleParameterValues.length];
+        for (int paramIndex = 0; paramIndex < fitestParams.length; paramIndex++) {
+            fitestParams[paramIndex] = allPossibleParameterValues[paramIndex][fittest.paramIndices[paramIndex]];
+        }
+        return true;
+    }
+
+    private List<Search> run(final List<Callable<Search>> tasks) {
+        final List<Search> results = new ArrayList<Search>(tasks.size());
+        if (executor == null && numberOfThreads == 1) {
+            for (final Callable<Search> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (Exception e) {
+                    throw new IllegalStateException("An error occurred evaluating a solution.", e);
+                }
+            }
+            return results;
+        }
+        final ExecutorService service = executor == null ? Executors.newFixedThreadPool(numberOfThreads) : executor;
+        try {
+            for (final Future<Search> result : service.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching solutions.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("An error occurred evaluating a solution.", e.getCause());
+        } finally {
+            if (service != executor) {
+                service.shutdown();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * A part of the search space, and the fittest solution found in it.
+     */
+    private abstract class Search implements Callable<Search> {
+        final int[] current = new int[k];
+        final int[] currentParamIndices = new int[allPossibleParameterValues.length];
+        final double[] paramValues = new double[allPossibleParameterValues.length];
+        private final int[] elements = new int[k];
+        long evaluations;
+
+        int[] combination;
+        int[] paramIndices;
+        double fitness;
+        private long combinationRank;
+        private long paramRank;
+
+        /**
+         * Evaluate the current solution, with the parameter values set by {@link #setParameterValues()}.
+         */
+        double evaluate() {
+            evaluations++;
+            for (int i = 0; i < k; i++) {
+                elements[i] = allElements[current[i]];
+            }
+            if (convergenceCriterion instanceof ArraySubSetFitnessFunction) {
+                return ((ArraySubSetFitnessFunction) convergenceCriterion).evaluate(elements, paramValues);
+            }
+            return convergenceCriterion.evaluate(new IntArraySet(elements), paramValues.clone());
+        }
+
+        void setParameterValues() {
+            for (int paramIndex = 0; paramIndex < paramValues.length; paramIndex++) {
+                paramValues[paramIndex] = allPossibleParameterValues[paramIndex][currentParamIndices[paramIndex]];
+            }
+        }
+
+        /**
+         * Advance the parameter indices to the next combination of parameter values.
+         *
+         * @return False, with the indices reset to zero, after the last combination.
+         */
+        boolean nextParameterValues() {
+            for (int paramIndex = currentParamIndices.length - 1; paramIndex >= 0; paramIndex--) {
+                if (++currentParamIndices[paramIndex] < allPossibleParameterValues[paramIndex].length) {
+                    return true;
+                }
+                currentParamIndices[paramIndex] = 0;
+            }
+            return false;
+        }
+
+        /**
+         * Keep the current solution if it is fitter than the fittest solution found so far.
+         */
+        void consider(final double currentFitness, final long currentRank, final long currentParamRank) {
+            if (combination == null || currentFitness > fitness || currentFitness == fitness
+                    && (currentRank < combinationRank || currentRank == combinationRank && currentParamRank < paramRank)) {
+                if (combination == null) {
+                    combination = new int[k];
+                    paramIndices = new int[currentParamIndices.length];
+                }
+                System.arraycopy(current, 0, combination, 0, k);
+                System.arraycopy(currentParamIndices, 0, paramIndices, 0, paramIndices.length);
+                fitness = currentFitness;
+                combinationRank = currentRank;
+                paramRank = currentParamRank;
+            }
+        }
+
+        boolean isFitterThan(final Search other) {
+            return fitness > other.fitness || fitness == other.fitness
+                    && (combinationRank < other.combinationRank || combinationRank == other.combinationRank
+                    && paramRank < other.paramRank);
+        }
+    }
+
+    /**
+     * Evaluates the subsets with ranks from (inclusive) to to (exclusive), with all parameter values.
+     */
+    private final class RankSearch extends Search {
+        private final long from;
+        private final long to;
+
+        private RankSearch(final long from, final long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public Search call() {
+            Combinations.unrank(from, allElements.length, current);
+            for (long rank = from; rank < to; rank++) {
+                if (rank > from) {
+                    Combinations.next(current, allElements.length);
+                }
+                long paramRank = 0;
+                do {
+                    setParameterValues();
+                    consider(evaluate(), rank, paramRank++);
+                } while (nextParameterValues());
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Evaluates the subsets whose smallest element has a given index, depth first, pruning
+     * partial subsets with the bounds of the criterion. The fittest fitness found by any
+     * search is shared, as the bits of a double, so that all searches prune with it.
+     */
+    private final class BoundedSearch extends Search {
+        private final int first;
+        private final AtomicLong incumbent;
+        private final int[] partial = new int[k];
+        private final BoundedSubSetFitnessFunction bounded = (BoundedSubSetFitnessFunction) convergenceCriterion;
+
+        private BoundedSearch(final int first, final AtomicLong incumbent) {
+            this.first = first;
+            this.incumbent = incumbent;
+        }
+
+        public Search call() {
+            long paramRank = 0;
+            do {
+                setParameterValues();
+                current[0] = first;
+                partial[0] = allElements[first];
+                if (k == 1 || !isPruned(1, first + 1)) {
+                    search(1, paramRank);
+                }
+                paramRank++;
+            } while (nextParameterValues());
+            return this;
+        }
+
+        private void search(final int depth, final long paramRank) {
+            if (depth == k) {
+                final double currentFitness = evaluate();
+                if (currentFitness >= Double.longBitsToDouble(incumbent.get())) {
+                    consider(currentFitness, Combinations.rank(current), paramRank);
+                    raiseIncumbent(currentFitness);
+                }
+                return;
+            }
+            for (int index = current[depth - 1] + 1; index <= allElements.length - (k - depth); index++) {
+                current[depth] = index;
+                partial[depth] = allElements[index];
+                if (depth + 1 == k || !isPruned(depth + 1, index + 1)) {
+                    search(depth + 1, paramRank);
+                }
+            }
+        }
+
+        private boolean isPruned(final int partialSize, final int firstCandidate) {
+            // ties are not pruned, so that the fittest solution of lowest rank is always found
+            return bounded.getUpperBound(partial, partialSize, k, allElements, firstCandidate, paramValues)
+                    < Double.longBitsToDouble(incumbent.get());
+        }
+
+        private void raiseIncumbent(final double value) {
+            long bits = incumbent.get();
+            while (value > Double.longBitsToDouble(bits)
+                    && !incumbent.compareAndSet(bits, Double.doubleToLongBits(value))) {
+                bits = incumbent.get();
+            }
+        }
+    }
+
+    public IntSet getFitestSubset() {
+        return fitestSubset;
+    }
+
+    public double[] getFitestParameterValues() {
+        return fitestParams;
+    }
+
+    public double getFitestFunctionValue() {
+        return fitestFunctionValue;
+    }
+
+    /**
+     * @return 1 after a search, which is a single pass over the search space.
+     */
+    public int getNumberOfIterationsPerformed() {
+        return numberOfIterationsPerformed;
+    }
+
+    public int getNumberOfParameters() {
+        return allPossibleParameterValues.length;
+    }
+
+    /**
+     * @return Number of solutions evaluated by the last search. Less than the size of the
+     *         search space when partial subsets were pruned.
+     */
+    public long getNumberOfEvaluations() {
+        return numberOfEvaluations;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of fitness values. Solutions are identified by the sorted allele indices of
+ * the subset followed by the indices of the parameter values. When the cache is full, the least
+ * recently used value is evicted. Instances are safe to use from several threads.
+ */
+public class FitnessCache {
+    private final int capacity;
+    private final Map<Key, Double> values;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a cache.
+     *
+     * @param capacity Maximum number of fitness values kept in the cache.
+     */
+    public FitnessCache(final int capacity) {
+        assert capacity > 0 : "cache capacity must be strictly positive";
+        this.capacity = capacity;
+        this.values = new LinkedHashMap<Key, Double>(Math.min(capacity, 1 << 16), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Double> eldest) {
+                return size() > FitnessCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Look up the fitness of a solution.
+     *
+     * @param key Encoded solution, see {@link FitnessCache}.
+     * @return The cached fitness value, or null when the solution has not been seen recently.
+     */
+    public synchronized Double get(final int[] key) {
+        final Double value = values.get(new Key(key));
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Store the fitness of a solution. The key array is kept by the cache and must not be
+     * modified afterwards.
+     *
+     * @param key     Encoded solution, see {@link FitnessCache}.
+     * @param fitness Fitness value of the solution.
+     */
+    public synchronized void put(final int[] key, final double fitness) {
+        values.put(new Key(key), fitness);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void clear() {
+        values.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    private static final class Key {
+        private final int[] encoded;
+        private final int hashCode;
+
+        Key(final int[] encoded) {
+            this.encoded = encoded;
+            this.hashCode = Arrays.hashCode(encoded);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof Key && Arrays.equals(encoded, ((Key) other).encoded);
+        }
+    }
+}
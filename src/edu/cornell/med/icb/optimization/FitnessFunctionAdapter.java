@@ -23,6 +23,9 @@ import org.jgap.FitnessFunction;
 import org.jgap.IChromosome;
 import org.jgap.impl.IntegerGene;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * @author Fabien Campagne
  *         Date: Oct 10, 2007
@@ -33,6 +36,12 @@ public class FitnessFunctionAdapter extends FitnessFunction {
     private final IntSet set;
     SubSetFitnessFunction delegate;
     private final double[][] paramValues;
+    private FitnessCache cache;
+    private final AtomicLong numberOfEvaluations = new AtomicLong();
+    private final AtomicLong numberOfInvalidSolutions = new AtomicLong();
+    private final AtomicLong numberOfDeltaEvaluations = new AtomicLong();
+    private final transient ThreadLocal<EvaluationBuffers> buffers = new ThreadLocal<EvaluationBuffers>();
+    private transient BatchBuffers batchBuffers;
 
     public FitnessFunctionAdapter(final IntSet set, final int k, final SubSetFitnessFunction convergenceCriterion, final double[][] paramValues) {
         this.k = k;
@@ -41,32 +50,255 @@ public class FitnessFunctionAdapter extends FitnessFunction {
         this.paramValues = paramValues;
     }
 
+    /**
+     * Memoize fitness values in the given cache. Evaluations of solutions found in the cache
+     * are not delegated to the convergence criterion.
+     *
+     * @param cache Cache to use, or null to evaluate every solution.
+     */
+    public void setFitnessCache(final FitnessCache cache) {
+        this.cache = cache;
+    }
+
+    public FitnessCache getFitnessCache() {
+        return cache;
+    }
+
+    /**
+     * @return Number of chromosomes evaluated by this adapter, including invalid ones.
+     */
+    public long getNumberOfEvaluations() {
+        return numberOfEvaluations.get();
+    }
+
+    /**
+     * @return Number of chromosomes evaluated by this adapter whose subset was not valid.
+     */
+    public long getNumberOfInvalidSolutions() {
+        return numberOfInvalidSolutions.get();
+    }
+
+    /**
+     * @return Number of chromosomes scored from the fitness of their parent by a
+     *         {@link DeltaSubSetFitnessFunction}.
+     */
+    public long getNumberOfDeltaEvaluations() {
+        return numberOfDeltaEvaluations.get();
+    }
+
     @Override
     protected double evaluate(final IChromosome potentialSolution) {
-        final IntSet subset;
-        final SubsetSuperGene subsetSuperGene = (SubsetSuperGene) potentialSolution.getGene(0);
-        if (!subsetSuperGene.isValid()) {
+        numberOfEvaluations.incrementAndGet();
+        final Object applicationData = potentialSolution.getApplicationData();
+        final SubsetLineage lineage;
+        if (applicationData instanceof SubsetLineage) {
+            lineage = (SubsetLineage) applicationData;
+            // the lineage is only valid for the first evaluation, clones must not inherit it:
+            potentialSolution.setApplicationData(null);
+        } else {
+            lineage = null;
+        }
+        final SubsetGene subsetGene = (SubsetGene) potentialSolution.getGene(0);
+        if (!subsetGene.isValid()) {
+            numberOfInvalidSolutions.incrementAndGet();
             return 0;
         }
-        subset = subsetSuperGene.getSubSet();
-        final double[] evalParamValues = getParameterValues(potentialSolution, paramValues);
+        final EvaluationBuffers scratch = getBuffers(potentialSolution);
+        if (cache != null) {
+            encodeSolution(potentialSolution, scratch.key);
+            final Double cached = cache.get(scratch.key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final double fitness;
+        if (delegate instanceof ArraySubSetFitnessFunction) {
+            subsetGene.getSubSet(scratch.elements);
+            getParameterValues(potentialSolution, paramValues, scratch.paramValues);
+            if (lineage != null && delegate instanceof DeltaSubSetFitnessFunction) {
+                numberOfDeltaEvaluations.incrementAndGet();
+                fitness = ((DeltaSubSetFitnessFunction) delegate).evaluate(scratch.elements, scratch.paramValues,
+                        lineage.getParentFitness(), lineage.getRemoved(), lineage.getAdded());
+            } else {
+                fitness = ((ArraySubSetFitnessFunction) delegate).evaluate(scratch.elements, scratch.paramValues);
+            }
+        } else {
+            final IntSet subset = subsetGene.getSubSet();
+            final double[] evalParamValues = getParameterValues(potentialSolution, paramValues);
+            fitness = delegate.evaluate(subset, evalParamValues);
+        }
+        if (cache != null) {
+            cache.put(scratch.key.clone(), fitness);
+        }
+        return fitness;
+    }
+
+    /**
+     * @return True when the convergence criterion evaluates whole generations, see
+     *         {@link #evaluate(List, double[])}.
+     */
+    public boolean isBatchEvaluation() {
+        return delegate instanceof BatchSubSetFitnessFunction;
+    }
+
+    /**
+     * Evaluate several chromosomes with one call to a {@link BatchSubSetFitnessFunction}.
+     * Invalid solutions and solutions found in the fitness cache are not passed to the
+     * convergence criterion. The chromosomes are counted as evaluations, as with
+     * {@link #getFitnessValue(IChromosome)}.
+     *
+     * @param chromosomes The chromosomes to evaluate.
+     * @param fitness     Receives the fitness of each chromosome.
+     */
+    public synchronized void evaluate(final List<IChromosome> chromosomes, final double[] fitness) {
+        numberOfEvaluations.addAndGet(chromosomes.size());
+        final BatchBuffers batch = getBatchBuffers(chromosomes);
+        int numberOfSolutions = 0;
+        for (int c = 0; c < chromosomes.size(); c++) {
+            final IChromosome chromosome = chromosomes.get(c);
+            SubsetLineage.clear(chromosome);
+            final SubsetGene subsetGene = (SubsetGene) chromosome.getGene(0);
+            if (!subsetGene.isValid()) {
+                numberOfInvalidSolutions.incrementAndGet();
+                fitness[c] = 0;
+                continue;
+            }
+            final int[] key = batch.keys[numberOfSolutions];
+            encodeSolution(chromosome, key);
+            if (cache != null) {
+                final Double cached = cache.get(key);
+                if (cached != null) {
+                    fitness[c] = cached;
+                    continue;
+                }
+            }
+            subsetGene.getSubSet(batch.subsets[numberOfSolutions]);
+            final int[] parameterIndices = batch.parameterIndices[numberOfSolutions];
+            System.arraycopy(key, key.length - parameterIndices.length, parameterIndices, 0,
+                    parameterIndices.length);
+            getParameterValues(chromosome, paramValues, batch.paramValues[numberOfSolutions]);
+            batch.positions[numberOfSolutions++] = c;
+        }
+        if (numberOfSolutions == 0) {
+            return;
+        }
+        ((BatchSubSetFitnessFunction) delegate).evaluate(numberOfSolutions, batch.subsets, batch.parameterIndices,
+                batch.paramValues, batch.fitness);
+        for (int s = 0; s < numberOfSolutions; s++) {
+            fitness[batch.positions[s]] = batch.fitness[s];
+            if (cache != null) {
+                cache.put(batch.keys[s].clone(), batch.fitness[s]);
+            }
+        }
+    }
+
+    private BatchBuffers getBatchBuffers(final List<IChromosome> chromosomes) {
+        if (batchBuffers == null || batchBuffers.fitness.length < chromosomes.size()) {
+            final IChromosome sample = chromosomes.get(0);
+            batchBuffers = new BatchBuffers(chromosomes.size(), sample.getGene(0).size(), sample.size() - 1);
+        }
+        return batchBuffers;
+    }
+
+    /**
+     * Arrays reused by the batch evaluations of successive generations.
+     */
+    private static final class BatchBuffers {
+        private final int[][] subsets;
+        private final int[][] parameterIndices;
+        private final double[][] paramValues;
+        private final int[][] keys;
+        private final int[] positions;
+        private final double[] fitness;
+
+        private BatchBuffers(final int size, final int k, final int numberOfParameters) {
+            subsets = new int[size][k];
+            parameterIndices = new int[size][numberOfParameters];
+            paramValues = new double[size][numberOfParameters];
+            keys = new int[size][k + numberOfParameters];
+            positions = new int[size];
+            fitness = new double[size];
+        }
+    }
+
+    /**
+     * Returns the arrays reused by the evaluations of the calling thread.
+     */
+    private EvaluationBuffers getBuffers(final IChromosome potentialSolution) {
+        EvaluationBuffers scratch = buffers.get();
+        if (scratch == null) {
+            scratch = new EvaluationBuffers(potentialSolution.getGene(0).size(), potentialSolution.size() - 1);
+            buffers.set(scratch);
+        }
+        return scratch;
+    }
 
-        return delegate.evaluate(subset, evalParamValues);
+    private static final class EvaluationBuffers {
+        private final int[] elements;
+        private final double[] paramValues;
+        private final int[] key;
 
+        private EvaluationBuffers(final int k, final int numberOfParameters) {
+            elements = new int[k];
+            paramValues = new double[numberOfParameters];
+            key = new int[k + numberOfParameters];
+        }
+    }
+
+    /**
+     * Encode a solution as the allele of each subset gene (sorted for valid solutions),
+     * followed by the index of each parameter value.
+     *
+     * @param potentialSolution A chromosome with a valid subset gene.
+     * @return The encoded solution.
+     */
+    protected static int[] encodeSolution(final IChromosome potentialSolution) {
+        final int[] encoded = new int[potentialSolution.getGene(0).size() + potentialSolution.size() - 1];
+        encodeSolution(potentialSolution, encoded);
+        return encoded;
+    }
+
+    static void encodeSolution(final IChromosome potentialSolution, final int[] encoded) {
+        final SubsetGene subsetGene = (SubsetGene) potentialSolution.getGene(0);
+        subsetGene.getAlleles(encoded);
+        final int numberOfParameters = potentialSolution.size() - 1;
+        int index = subsetGene.size();
+        for (int paramIndex = 0; paramIndex < numberOfParameters; paramIndex++) {
+            encoded[index++] = ((IntegerGene) potentialSolution.getGene(1 + paramIndex)).intValue();
+        }
+    }
+
+    /**
+     * Set the genes of a chromosome from a solution encoded by {@link #encodeSolution(IChromosome)}.
+     *
+     * @param chromosome The chromosome to modify.
+     * @param encoded    The encoded solution.
+     */
+    protected static void decodeSolution(final IChromosome chromosome, final int[] encoded) {
+        final SubsetGene subsetGene = (SubsetGene) chromosome.getGene(0);
+        subsetGene.setAlleles(encoded);
+        int index = subsetGene.size();
+        for (int geneIndex = 1; geneIndex < chromosome.size(); geneIndex++) {
+            chromosome.getGene(geneIndex).setAllele(encoded[index++]);
+        }
     }
 
     protected static double[] getParameterValues(final IChromosome potentialSolution,
                                                  final double[][] parameterValues) {
-        final int numberOfParameters = potentialSolution.getGenes().length - 1;
-        final double[] evalParamValues = new double[numberOfParameters];
+        final double[] evalParamValues = new double[potentialSolution.size() - 1];
+        getParameterValues(potentialSolution, parameterValues, evalParamValues);
+        return evalParamValues;
+    }
 
+    private static void getParameterValues(final IChromosome potentialSolution,
+                                           final double[][] parameterValues, final double[] evalParamValues) {
+        final int numberOfParameters = evalParamValues.length;
         for (int paramIndex = 0; paramIndex < numberOfParameters; paramIndex++) {
             final IntegerGene paramGene = (IntegerGene) potentialSolution.getGene(1 + paramIndex);
             final int paramValueIndex = paramGene.intValue();
             final double paramValue = parameterValues[paramIndex][paramValueIndex];
             evalParamValues[paramIndex] = paramValue;
         }
-        return evalParamValues;
     }
 
 
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+/**
+ * Receives the metrics of each generation evolved by {@link OptimizeSubSet}. Listeners are
+ * called on the thread that runs the optimization, after the offspring of the generation
+ * have been evaluated, and should return quickly.
+ *
+ * @see OptimizeSubSet#addGenerationListener(GenerationListener)
+ */
+public interface GenerationListener {
+    /**
+     * @param metrics Metrics of the generation that was just evolved.
+     */
+    void generationCompleted(GenerationMetrics metrics);
+}
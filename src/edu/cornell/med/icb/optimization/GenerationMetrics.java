@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+/**
+ * Metrics of one generation of an {@link OptimizeSubSet} run. Times are wall-clock times of
+ * the thread that runs the optimization. Fitness statistics only include the chromosomes of
+ * the population whose fitness was evaluated.
+ */
+public final class GenerationMetrics {
+    private final int generation;
+    private final long numberOfEvaluations;
+    private final long generationEvaluations;
+    private final long generationInvalidSolutions;
+    private final long evolveTime;
+    private final long evaluationTime;
+    private final double bestFitness;
+    private final double meanFitness;
+    private final double fitnessVariance;
+    private final int generationsSinceImprovement;
+
+    GenerationMetrics(final int generation, final long numberOfEvaluations, final long generationEvaluations,
+                      final long generationInvalidSolutions, final long evolveTime, final long evaluationTime,
+                      final double bestFitness, final double meanFitness, final double fitnessVariance,
+                      final int generationsSinceImprovement) {
+        this.generation = generation;
+        this.numberOfEvaluations = numberOfEvaluations;
+        this.generationEvaluations = generationEvaluations;
+        this.generationInvalidSolutions = generationInvalidSolutions;
+        this.evolveTime = evolveTime;
+        this.evaluationTime = evaluationTime;
+        this.bestFitness = bestFitness;
+        this.meanFitness = meanFitness;
+        this.fitnessVariance = fitnessVariance;
+        this.generationsSinceImprovement = generationsSinceImprovement;
+    }
+
+    /**
+     * @return Number of generations evolved so far, this one included.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return Number of chromosomes evaluated since the start of the run.
+     */
+    public long getNumberOfEvaluations() {
+        return numberOfEvaluations;
+    }
+
+    /**
+     * @return Number of chromosomes evaluated during this generation.
+     */
+    public long getGenerationEvaluations() {
+        return generationEvaluations;
+    }
+
+    /**
+     * @return Chromosomes evaluated during this generation, per second of generation time.
+     */
+    public double getEvaluationsPerSecond() {
+        final long generationTime = evolveTime + evaluationTime;
+        return generationTime == 0 ? 0 : generationEvaluations * 1e9 / generationTime;
+    }
+
+    /**
+     * @return Fraction of the chromosomes evaluated during this generation that did not encode
+     *         a valid subset.
+     */
+    public double getInvalidRate() {
+        return generationEvaluations == 0 ? 0 : generationInvalidSolutions / (double) generationEvaluations;
+    }
+
+    /**
+     * @return Time spent in selection and genetic operators during this generation, in nanoseconds.
+     */
+    public long getEvolveTime() {
+        return evolveTime;
+    }
+
+    /**
+     * @return Time spent evaluating fitness during this generation, in nanoseconds.
+     */
+    public long getEvaluationTime() {
+        return evaluationTime;
+    }
+
+    public double getBestFitness() {
+        return bestFitness;
+    }
+
+    public double getMeanFitness() {
+        return meanFitness;
+    }
+
+    public double getFitnessVariance() {
+        return fitnessVariance;
+    }
+
+    /**
+     * @return Number of generations since the best fitness of the run last increased.
+     */
+    public int getGenerationsSinceImprovement() {
+        return generationsSinceImprovement;
+    }
+
+    @Override
+    public String toString() {
+        return "generation " + generation + " best " + bestFitness + " mean " + meanFitness
+                + " variance " + fitnessVariance + " evaluations/s " + getEvaluationsPerSecond()
+                + " evolve " + evolveTime + "ns evaluation " + evaluationTime + "ns invalid rate "
+                + getInvalidRate() + " generations since improvement " + generationsSinceImprovement;
+    }
+}
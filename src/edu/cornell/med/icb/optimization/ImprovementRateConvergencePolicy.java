@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.Population;
+
+/**
+ * Stagnation when the fitness improves too slowly over a sliding window of generations. The
+ * rate is the relative improvement of the fittest chromosome over the window, divided by the
+ * length of the window. This stops runs that still improve now and then, but too slowly to be
+ * worth the evaluations.
+ */
+public class ImprovementRateConvergencePolicy implements ConvergencePolicy {
+    private final int window;
+    private final double minimumRate;
+    private final double[] history;
+    private int numberOfGenerations;
+
+    /**
+     * @param window      Number of generations the improvement is measured over.
+     * @param minimumRate Smallest relative improvement per generation of a search that has not
+     *                    stagnated, for instance 1e-4.
+     */
+    public ImprovementRateConvergencePolicy(final int window, final double minimumRate) {
+        assert window > 0 : "window must be strictly positive";
+        this.window = window;
+        this.minimumRate = minimumRate;
+        this.history = new double[window + 1];
+    }
+
+    public void reset() {
+        numberOfGenerations = 0;
+    }
+
+    public boolean isStagnant(final int generation, final double fitness, final Population population) {
+        history[numberOfGenerations % history.length] = fitness;
+        numberOfGenerations++;
+        if (numberOfGenerations < history.length) {
+            return false;
+        }
+        // the oldest value is the one the next generation overwrites:
+        final double before = history[numberOfGenerations % history.length];
+        final double rate = (fitness - before) / (window * Math.max(Math.abs(before), Double.MIN_NORMAL));
+        return rate < minimumRate;
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.apache.log4j.Logger;
+import org.jgap.Genotype;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Island model on top of {@link OptimizeSubSet}. Several populations (islands) evolve
+ * concurrently, each with its own JGAP configuration and random generator. Every
+ * migration interval, the fittest chromosomes of each island replace the least fit
+ * chromosomes of the islands designated by the {@link MigrationTopology}. Islands only
+ * interact during migration, which is done by the calling thread in island order, so runs
+ * are reproducible for a given random seed.
+ */
+public class IslandOptimizer implements SubSetOptimizer {
+    private static final Logger LOG = Logger.getLogger(IslandOptimizer.class);
+    private static final int DEFAULT_POPULATION_SIZE = 1000;
+
+    private final OptimizeSubSet[] islands;
+    private int migrationInterval = 50;
+    private int numberOfMigrants = 5;
+    private MigrationTopology topology = MigrationTopology.RING;
+    private int numberOfThreads;
+
+    private int numberOfIterationsPerformed;
+    private int fittestIsland = -1;
+    private double fitestFunctionValue;
+
+    public IslandOptimizer(final IntSet set, final int k, final SubSetFitnessFunction convergenceCriterion,
+                           final int numberOfIslands, final String... params) throws InvalidConfigurationException {
+        this(set, k, convergenceCriterion, numberOfIslands, DEFAULT_POPULATION_SIZE, params);
+    }
+
+    /**
+     * Create an island model.
+     *
+     * @param set                  The set of elements from which subsets are chosen.
+     * @param k                    Number of elements in each subset.
+     * @param convergenceCriterion The fitness function. It is called concurrently from the
+     *                             threads that evolve the islands and must be thread safe.
+     * @param numberOfIslands      Number of populations evolved.
+     * @param populationSize       Number of individuals in each island.
+     * @param params               Parameter definitions, see {@link OptimizeSubSet}.
+     * @throws InvalidConfigurationException If an error occurs configuring an island.
+     */
+    public IslandOptimizer(final IntSet set, final int k, final SubSetFitnessFunction convergenceCriterion,
+                           final int numberOfIslands, final int populationSize, final String... params)
+            throws InvalidConfigurationException {
+        assert numberOfIslands > 0 : "at least one island is needed";
+        islands = new OptimizeSubSet[numberOfIslands];
+        for (int i = 0; i < numberOfIslands; i++) {
+            islands[i] = new OptimizeSubSet(set, k, convergenceCriterion, populationSize, params);
+        }
+        numberOfThreads = numberOfIslands;
+        setRandomSeed(1);
+    }
+
+    /**
+     * Seed the random generators of the islands. Each island is seeded with a distinct value
+     * derived from the given seed.
+     *
+     * @param randomSeed The master seed.
+     */
+    public void setRandomSeed(final int randomSeed) {
+        final TwisterGenerator seeds = new TwisterGenerator(randomSeed);
+        for (final OptimizeSubSet island : islands) {
+            island.setRandomSeed(seeds.nextInt());
+        }
+    }
+
+    /**
+     * @param migrationInterval Number of generations between two migrations.
+     */
+    public void setMigrationInterval(final int migrationInterval) {
+        assert migrationInterval > 0 : "migration interval must be strictly positive";
+        this.migrationInterval = migrationInterval;
+    }
+
+    /**
+     * @param numberOfMigrants Number of chromosomes sent by an island to each destination.
+     */
+    public void setNumberOfMigrants(final int numberOfMigrants) {
+        this.numberOfMigrants = numberOfMigrants;
+    }
+
+    public void setTopology(final MigrationTopology topology) {
+        this.topology = topology;
+    }
+
+    /**
+     * @param numberOfThreads Number of islands evolved at the same time. Defaults to the number of islands.
+     */
+    public void setNumberOfThreads(final int numberOfThreads) {
+        assert numberOfThreads > 0 : "number of threads must be at least one";
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    public int getNumberOfIslands() {
+        return islands.length;
+    }
+
+    /**
+     * Access an island, for instance to configure its fitness cache or population size
+     * before optimization.
+     *
+     * @param index Index of the island.
+     * @return The optimizer that evolves this island.
+     */
+    public OptimizeSubSet getIsland(final int index) {
+        return islands[index];
+    }
+
+    /**
+     * Find an optimal subset with all islands. Convergence is defined as in
+     * {@link OptimizeSubSet#optimize(int, double)}, using the fittest chromosome of all
+     * islands, and is tested after each migration interval.
+     *
+     * @param numSteps         Maximum number of generations evolved by each island.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @return True when the optimization has converged, False otherwise.
+     * @throws InvalidConfigurationException If an error occurs configuring the islands.
+     */
+    public boolean optimize(final int numSteps, final double convergenceDelta) throws InvalidConfigurationException {
+        for (final OptimizeSubSet island : islands) {
+            island.initializePopulation();
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(numberOfThreads, islands.length));
+        try {
+            return evolve(executor, numSteps, convergenceDelta);
+        } finally {
+            executor.shutdown();
+            for (final OptimizeSubSet island : islands) {
+                island.releaseResources();
+            }
+        }
+    }
+
+    private boolean evolve(final ExecutorService executor, final int numSteps, final double convergenceDelta) {
+        final int deltaNumSteps = numSteps / 10;
+        int generationsFitnessStable = 0;
+        double previousFitness = -1;
+        double fitness = -2;
+        int generation = 0;
+        boolean converged = false;
+        updateFittest();
+        while (generation < numSteps - 1) {
+            final int generations = Math.min(migrationInterval, numSteps - 1 - generation);
+            evolveIslands(executor, generations);
+            generation += generations;
+            migrate();
+            previousFitness = fitness;
+            fitness = updateFittest();
+            if (fitness >= previousFitness && fitness - previousFitness < Math.abs(convergenceDelta)) {
+                generationsFitnessStable += generations;
+            } else {
+                generationsFitnessStable = 0;
+            }
+            LOG.debug("generation " + generation + " best fitness " + fitness + " on island " + fittestIsland);
+            if (generationsFitnessStable >= deltaNumSteps) {
+                converged = true;
+                break;
+            }
+        }
+        numberOfIterationsPerformed = generation;
+        final IChromosome fittest = islands[fittestIsland].getGenotype().getFittestChromosome();
+        for (final OptimizeSubSet island : islands) {
+            island.setNumberOfIterationsPerformed(generation);
+        }
+        islands[fittestIsland].setSolution(fittest, fittest.getFitnessValue());
+        return converged;
+    }
+
+    private void evolveIslands(final ExecutorService executor, final int generations) {
+        final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(islands.length);
+        for (final OptimizeSubSet island : islands) {
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    final Genotype genotype = island.getGenotype();
+                    for (int i = 0; i < generations; i++) {
+                        genotype.evolve();
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            for (final Future<Object> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evolving islands.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("An error occurred evolving an island.", e.getCause());
+        }
+    }
+
+    private double updateFittest() {
+        double best = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < islands.length; i++) {
+            final double fitness = islands[i].getGenotype().getFittestChromosome().getFitnessValue();
+            if (fitness > best) {
+                best = fitness;
+                fittestIsland = i;
+            }
+        }
+        fitestFunctionValue = best;
+        return best;
+    }
+
+    /**
+     * Send copies of the fittest chromosomes of each island to its destinations. Migrants are
+     * chosen on every island before any chromosome is replaced, among the chromosomes whose
+     * fitness was evaluated.
+     */
+    private void migrate() {
+        if (numberOfMigrants <= 0 || islands.length < 2) {
+            return;
+        }
+        final List<List<IChromosome>> emigrants = new ArrayList<List<IChromosome>>(islands.length);
+        for (final OptimizeSubSet island : islands) {
+            final List<IChromosome> sorted = sortedByFitness(island.getGenotype());
+            int count = 0;
+            while (count < numberOfMigrants && count < sorted.size()
+                    && sorted.get(count).getFitnessValueDirectly() >= 0) {
+                count++;
+            }
+            emigrants.add(sorted.subList(0, count));
+        }
+        final int[][][] encoded = new int[islands.length][][];
+        final double[][] fitness = new double[islands.length][];
+        for (int i = 0; i < islands.length; i++) {
+            final List<IChromosome> migrants = emigrants.get(i);
+            encoded[i] = new int[migrants.size()][];
+            fitness[i] = new double[migrants.size()];
+            for (int m = 0; m < migrants.size(); m++) {
+                encoded[i][m] = FitnessFunctionAdapter.encodeSolution(migrants.get(m));
+                fitness[i][m] = migrants.get(m).getFitnessValueDirectly();
+            }
+        }
+        for (int source = 0; source < islands.length; source++) {
+            for (final int destination : topology.getDestinations(source, islands.length)) {
+                receive(islands[destination].getGenotype(), encoded[source], fitness[source]);
+            }
+        }
+    }
+
+    /**
+     * Replace the least fit chromosomes of a population with the given migrants. Each migrant
+     * is decoded into a new chromosome, so that chromosomes held more than once by the
+     * population, or referenced elsewhere, are left untouched.
+     */
+    static void receive(final Genotype genotype, final int[][] migrants, final double[] fitness) {
+        final Population population = genotype.getPopulation();
+        final Integer[] leastFit = new Integer[population.size()];
+        for (int i = 0; i < leastFit.length; i++) {
+            leastFit[i] = i;
+        }
+        Arrays.sort(leastFit, new Comparator<Integer>() {
+            public int compare(final Integer first, final Integer second) {
+                return Double.compare(population.getChromosome(first).getFitnessValueDirectly(),
+                        population.getChromosome(second).getFitnessValueDirectly());
+            }
+        });
+        // never replace the fittest chromosome of the population
+        final int count = Math.min(migrants.length, leastFit.length - 1);
+        for (int m = 0; m < count; m++) {
+            final IChromosome immigrant = (IChromosome) population.getChromosome(leastFit[m]).clone();
+            FitnessFunctionAdapter.decodeSolution(immigrant, migrants[m]);
+            SubsetLineage.clear(immigrant);
+            immigrant.setFitnessValueDirectly(fitness[m]);
+            // marks the population as changed, so that its fittest chromosome is determined again:
+            population.setChromosome(leastFit[m], immigrant);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<IChromosome> sortedByFitness(final Genotype genotype) {
+        final IChromosome[] chromosomes = (IChromosome[]) genotype.getPopulation().getChromosomes().toArray(
+                new IChromosome[genotype.getPopulation().size()]);
+        Arrays.sort(chromosomes, new Comparator<IChromosome>() {
+            public int compare(final IChromosome first, final IChromosome second) {
+                return Double.compare(second.getFitnessValueDirectly(), first.getFitnessValueDirectly());
+            }
+        });
+        return Arrays.asList(chromosomes);
+    }
+
+    public int getNumberOfIterationsPerformed() {
+        return numberOfIterationsPerformed;
+    }
+
+    /**
+     * @return The fittest subset found on any island.
+     */
+    public IntSet getFitestSubset() {
+        return fittestIsland < 0 ? null : islands[fittestIsland].getFitestSubset();
+    }
+
+    public double[] getFitestParameterValues() {
+        return fittestIsland < 0 ? null : islands[fittestIsland].getFitestParameterValues();
+    }
+
+    public double getFitestFunctionValue() {
+        return fitestFunctionValue;
+    }
+
+    public int getNumberOfParameters() {
+        return islands[0].getNumberOfParameters();
+    }
+
+    /**
+     * @return Number of chromosomes evaluated on all islands.
+     */
+    public long getNumberOfEvaluations() {
+        long numberOfEvaluations = 0;
+        for (final OptimizeSubSet island : islands) {
+            numberOfEvaluations += island.getNumberOfEvaluations();
+        }
+        return numberOfEvaluations;
+    }
+
+    /**
+     * @return Index of the island where the fittest subset was found.
+     */
+    public int getFittestIsland() {
+        return fittestIsland;
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import edu.cornell.med.icb.optimization.MigrationProtocol.Layout;
+import edu.cornell.med.icb.optimization.MigrationProtocol.Message;
+import edu.cornell.med.icb.optimization.MigrationProtocol.Migrant;
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates islands evolved by {@link MigrationWorker}s, possibly in other processes or on
+ * other hosts. The coordinator keeps a pool of the fittest solutions received from all workers,
+ * and answers the migrants sent by a worker with the pooled solutions contributed by other
+ * workers. It tracks the global best solution, and tells workers to stop once the global best
+ * has not improved by more than the convergence delta for a number of generations. A worker
+ * that disconnects or fails is dropped; the other workers continue. So is a worker that sends
+ * an invalid message, or solutions whose subset size or parameters differ from those of the
+ * first worker.
+ */
+public class MigrationCoordinator {
+    private static final Logger LOG = Logger.getLogger(MigrationCoordinator.class);
+
+    private final ServerSocket serverSocket;
+    private int poolSize = 10;
+    private double convergenceDelta = 0.001;
+    private int stableGenerations = 1000;
+
+    private final List<PooledMigrant> pool = new ArrayList<PooledMigrant>();
+    private PooledMigrant fittest;
+    private Layout layout;
+    private int latestGeneration;
+    private int improvementGeneration;
+    private boolean converged;
+    private boolean closed;
+    private int numberOfWorkersConnected;
+    private int numberOfActiveWorkers;
+    private int nextWorkerId;
+
+    /**
+     * Create a coordinator listening on the given port.
+     *
+     * @param port The port to listen on, or zero to use any free port.
+     * @throws IOException If the port cannot be opened.
+     */
+    public MigrationCoordinator(final int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+    }
+
+    /**
+     * @param convergenceDelta  Improvements of the global best smaller than this value are ignored.
+     * @param stableGenerations Number of generations without improvement after which workers are stopped.
+     */
+    public synchronized void setConvergence(final double convergenceDelta, final int stableGenerations) {
+        this.convergenceDelta = Math.abs(convergenceDelta);
+        this.stableGenerations = stableGenerations;
+    }
+
+    /**
+     * @param poolSize Number of solutions kept in the migrant pool.
+     */
+    public synchronized void setPoolSize(final int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Start accepting workers, on a background thread.
+     */
+    public void start() {
+        final Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                acceptWorkers();
+            }
+        }, "migration-coordinator-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptWorkers() {
+        while (!isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                final int workerId;
+                synchronized (this) {
+                    workerId = nextWorkerId++;
+                    numberOfWorkersConnected++;
+                    numberOfActiveWorkers++;
+                }
+                final Thread handler = new Thread(new Runnable() {
+                    public void run() {
+                        serve(socket, workerId);
+                    }
+                }, "migration-worker-" + workerId);
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!isClosed()) {
+                    LOG.warn("Error accepting worker connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(final Socket socket, final int workerId) {
+        LOG.info("worker " + workerId + " connected from " + socket.getRemoteSocketAddress());
+        try {
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                final byte type = input.readByte();
+                if (type != MigrationProtocol.MIGRANTS) {
+                    throw new IOException("Unexpected message type " + type);
+                }
+                final Message message = MigrationProtocol.readMigrants(input, getLayout());
+                final List<Migrant> reply = exchange(workerId, message);
+                if (reply == null) {
+                    MigrationProtocol.writeStop(output);
+                } else {
+                    MigrationProtocol.writeMigrants(output, message.generation, message.layout, reply);
+                }
+            }
+        } catch (EOFException e) {
+            LOG.info("worker " + workerId + " disconnected");
+        } catch (SocketException e) {
+            LOG.info("worker " + workerId + " disconnected: " + e.getMessage());
+        } catch (IOException e) {
+            LOG.warn("dropping worker " + workerId, e);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOG.debug("error closing worker socket", e);
+            }
+            synchronized (this) {
+                numberOfActiveWorkers--;
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Record the migrants of a worker and select the migrants it receives in return.
+     *
+     * @return The migrants for the worker, or null if the worker must stop.
+     * @throws IOException If the solutions of the worker do not have the layout of those of
+     *                     the first worker.
+     */
+    private synchronized List<Migrant> exchange(final int workerId, final Message message) throws IOException {
+        if (layout == null) {
+            layout = message.layout;
+        } else if (!layout.equals(message.layout)) {
+            throw new IOException("Layout " + message.layout + " does not match the " + layout
+                    + " of the first worker");
+        }
+        latestGeneration = Math.max(latestGeneration, message.generation);
+        for (final Migrant migrant : message.migrants) {
+            if (fittest == null || migrant.fitness - fittest.migrant.fitness >= convergenceDelta) {
+                improvementGeneration = latestGeneration;
+            }
+            if (fittest == null || migrant.fitness > fittest.migrant.fitness) {
+                fittest = new PooledMigrant(migrant, workerId);
+            }
+            addToPool(new PooledMigrant(migrant, workerId));
+        }
+        if (!converged && fittest != null && latestGeneration - improvementGeneration >= stableGenerations) {
+            LOG.info("global best " + fittest.migrant.fitness + " stable since generation " + improvementGeneration);
+            converged = true;
+            notifyAll();
+        }
+        if (converged || closed) {
+            return null;
+        }
+        final List<Migrant> reply = new ArrayList<Migrant>();
+        for (final PooledMigrant pooled : pool) {
+            if (pooled.workerId != workerId) {
+                reply.add(pooled.migrant);
+            }
+        }
+        return reply;
+    }
+
+    private void addToPool(final PooledMigrant candidate) {
+        for (int i = 0; i < pool.size(); i++) {
+            final PooledMigrant pooled = pool.get(i);
+            if (Arrays.equals(pooled.migrant.solution, candidate.migrant.solution)) {
+                return;
+            }
+        }
+        int position = pool.size();
+        while (position > 0 && pool.get(position - 1).migrant.fitness < candidate.migrant.fitness) {
+            position--;
+        }
+        if (position < poolSize) {
+            pool.add(position, candidate);
+            if (pool.size() > poolSize) {
+                pool.remove(pool.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Wait until every worker that connected has disconnected, or until the run converged.
+     *
+     * @param timeout Maximum time to wait.
+     * @param unit    Unit of the timeout.
+     * @return True when the run is complete, false if the timeout elapsed first.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized boolean awaitCompletion(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        if (deadline < 0) {
+            // overflow, wait without limit
+            deadline = Long.MAX_VALUE;
+        }
+        while (!converged && (numberOfWorkersConnected == 0 || numberOfActiveWorkers > 0)) {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Stop accepting workers. Workers still connected are told to stop at their next exchange.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOG.debug("error closing coordinator socket", e);
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public synchronized boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * @return The fittest subset received from any worker, or null if none was received.
+     */
+    public synchronized IntSet getFitestSubset() {
+        if (fittest == null) {
+            return null;
+        }
+        final IntSet subset = new IntArraySet();
+        for (int i = 0; i < layout.subsetSize; i++) {
+            subset.add(fittest.migrant.solution[i]);
+        }
+        return subset;
+    }
+
+    /**
+     * @return Index of each parameter value of the fittest solution, in the order of the
+     *         parameter definitions given to the workers.
+     */
+    public synchronized int[] getFitestParameterIndices() {
+        if (fittest == null) {
+            return null;
+        }
+        return Arrays.copyOfRange(fittest.migrant.solution, layout.subsetSize, fittest.migrant.solution.length);
+    }
+
+    public synchronized double getFitestFunctionValue() {
+        return fittest == null ? 0 : fittest.migrant.fitness;
+    }
+
+    /**
+     * @return Highest generation reported by a worker.
+     */
+    public synchronized int getNumberOfIterationsPerformed() {
+        return latestGeneration;
+    }
+
+    public synchronized int getNumberOfWorkersConnected() {
+        return numberOfWorkersConnected;
+    }
+
+    public synchronized int getNumberOfActiveWorkers() {
+        return numberOfActiveWorkers;
+    }
+
+    private static final class PooledMigrant {
+        private final Migrant migrant;
+        private final int workerId;
+
+        private PooledMigrant(final Migrant migrant, final int workerId) {
+            this.migrant = migrant;
+            this.workerId = workerId;
+        }
+    }
+
+    /**
+     * Run a coordinator until the workers complete or converge.
+     * Arguments: port [stableGenerations [convergenceDelta]].
+     *
+     * @param args command line arguments
+     * @throws IOException If the port cannot be opened.
+     * @throws InterruptedException If interrupted while waiting for workers.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: MigrationCoordinator port [stableGenerations [convergenceDelta]]");
+            System.exit(1);
+        }
+        final MigrationCoordinator coordinator = new MigrationCoordinator(Integer.parseInt(args[0]));
+        if (args.length > 1) {
+            coordinator.setConvergence(args.length > 2 ? Double.parseDouble(args[2]) : 0.001,
+                    Integer.parseInt(args[1]));
+        }
+        coordinator.start();
+        coordinator.awaitCompletion(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        coordinator.close();
+        System.out.println("fitness: " + coordinator.getFitestFunctionValue());
+        System.out.println("subset: " + coordinator.getFitestSubset());
+        System.out.println("parameter indices: " + Arrays.toString(coordinator.getFitestParameterIndices()));
+    }
+}
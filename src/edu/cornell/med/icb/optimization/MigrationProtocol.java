@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary messages exchanged between {@link MigrationWorker}s and a {@link MigrationCoordinator}.
+ * A worker sends its fittest solutions in a {@link #MIGRANTS} message, and the coordinator
+ * replies with either migrants for this worker or {@link #STOP}. A migrants message is made of
+ * the message type (one byte), the generation of the sender, the number of migrants, the number
+ * of elements in a subset and the number of parameters (four ints), the number of values of
+ * each parameter (ints), followed, for each migrant, by its fitness (a double), its elements
+ * in increasing order and its parameter value indices (ints). Messages are validated as they
+ * are read, so that a faulty peer cannot make the reader allocate more than it sends.
+ */
+final class MigrationProtocol {
+    static final byte MIGRANTS = 1;
+    static final byte STOP = 2;
+    /**
+     * Largest number of migrants in a message.
+     */
+    static final int MAX_MIGRANTS = 1 << 16;
+    /**
+     * Largest number of elements plus parameters in a solution.
+     */
+    static final int MAX_SOLUTION_LENGTH = 1 << 20;
+
+    private MigrationProtocol() {
+        super();
+    }
+
+    /**
+     * A solution sent between islands.
+     */
+    static final class Migrant {
+        /**
+         * Elements of the subset in increasing order, followed by the index of each parameter value.
+         */
+        final int[] solution;
+        final double fitness;
+
+        Migrant(final int[] solution, final double fitness) {
+            this.solution = solution;
+            this.fitness = fitness;
+        }
+    }
+
+    /**
+     * Shape of the solutions of a run: the number of elements in a subset and the number of
+     * values of each parameter. All the islands of a run must have the same layout.
+     */
+    static final class Layout {
+        final int subsetSize;
+        final int[] numberOfParameterValues;
+
+        Layout(final int subsetSize, final int[] numberOfParameterValues) {
+            this.subsetSize = subsetSize;
+            this.numberOfParameterValues = numberOfParameterValues;
+        }
+
+        int getSolutionLength() {
+            return subsetSize + numberOfParameterValues.length;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Layout)) {
+                return false;
+            }
+            final Layout layout = (Layout) other;
+            return subsetSize == layout.subsetSize
+                    && Arrays.equals(numberOfParameterValues, layout.numberOfParameterValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * subsetSize + Arrays.hashCode(numberOfParameterValues);
+        }
+
+        @Override
+        public String toString() {
+            return "subset size " + subsetSize + ", parameter values " + Arrays.toString(numberOfParameterValues);
+        }
+    }
+
+    /**
+     * The content of a migrants message.
+     */
+    static final class Message {
+        final int generation;
+        final Layout layout;
+        final List<Migrant> migrants;
+
+        private Message(final int generation, final Layout layout, final List<Migrant> migrants) {
+            this.generation = generation;
+            this.layout = layout;
+            this.migrants = migrants;
+        }
+    }
+
+    static void writeMigrants(final DataOutputStream output, final int generation, final Layout layout,
+                              final List<Migrant> migrants) throws IOException {
+        output.writeByte(MIGRANTS);
+        output.writeInt(generation);
+        output.writeInt(migrants.size());
+        output.writeInt(layout.subsetSize);
+        output.writeInt(layout.numberOfParameterValues.length);
+        for (final int numberOfValues : layout.numberOfParameterValues) {
+            output.writeInt(numberOfValues);
+        }
+        for (final Migrant migrant : migrants) {
+            output.writeDouble(migrant.fitness);
+            for (final int value : migrant.solution) {
+                output.writeInt(value);
+            }
+        }
+        output.flush();
+    }
+
+    static void writeStop(final DataOutputStream output) throws IOException {
+        output.writeByte(STOP);
+        output.flush();
+    }
+
+    /**
+     * Read the body of a migrants message, after its type.
+     *
+     * @param input    Stream to read from.
+     * @param expected Layout the message must have, or null to accept any layout.
+     * @return The message.
+     * @throws IOException If the message cannot be read, does not have the expected layout, or
+     *                     holds an invalid solution or fitness.
+     */
+    static Message readMigrants(final DataInputStream input, final Layout expected) throws IOException {
+        final int generation = input.readInt();
+        final int count = input.readInt();
+        if (count < 0 || count > MAX_MIGRANTS) {
+            throw new IOException("Invalid number of migrants " + count);
+        }
+        final int subsetSize = input.readInt();
+        final int numberOfParameters = input.readInt();
+        if (subsetSize <= 0 || numberOfParameters < 0
+                || (long) subsetSize + numberOfParameters > MAX_SOLUTION_LENGTH) {
+            throw new IOException("Invalid solution size: " + subsetSize + " elements and "
+                    + numberOfParameters + " parameters");
+        }
+        if (expected != null && (subsetSize != expected.subsetSize
+                || numberOfParameters != expected.numberOfParameterValues.length)) {
+            throw new IOException("Solutions of " + subsetSize + " elements and " + numberOfParameters
+                    + " parameters do not match the expected " + expected);
+        }
+        final int[] numberOfParameterValues = new int[numberOfParameters];
+        for (int paramIndex = 0; paramIndex < numberOfParameters; paramIndex++) {
+            numberOfParameterValues[paramIndex] = input.readInt();
+            if (numberOfParameterValues[paramIndex] <= 0) {
+                throw new IOException("Invalid number of values " + numberOfParameterValues[paramIndex]
+                        + " for parameter " + paramIndex);
+            }
+        }
+        final Layout layout = new Layout(subsetSize, numberOfParameterValues);
+        if (expected != null && !expected.equals(layout)) {
+            throw new IOException("Layout " + layout + " does not match the expected " + expected);
+        }
+        // grows with the migrants actually received, whatever the announced count:
+        final List<Migrant> migrants = new ArrayList<Migrant>(Math.min(count, 64));
+        for (int m = 0; m < count; m++) {
+            final double fitness = input.readDouble();
+            if (!(fitness >= 0) || Double.isInfinite(fitness)) {
+                throw new IOException("Invalid migrant fitness " + fitness);
+            }
+            final int[] solution = new int[layout.getSolutionLength()];
+            for (int i = 0; i < solution.length; i++) {
+                solution[i] = input.readInt();
+            }
+            for (int i = 1; i < subsetSize; i++) {
+                if (solution[i] <= solution[i - 1]) {
+                    throw new IOException("Migrant elements are not distinct and in increasing order");
+                }
+            }
+            for (int paramIndex = 0; paramIndex < numberOfParameters; paramIndex++) {
+                final int valueIndex = solution[subsetSize + paramIndex];
+                if (valueIndex < 0 || valueIndex >= numberOfParameterValues[paramIndex]) {
+                    throw new IOException("Invalid value index " + valueIndex + " for parameter " + paramIndex);
+                }
+            }
+            migrants.add(new Migrant(solution, fitness));
+        }
+        return new Message(generation, layout, migrants);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+/**
+ * Defines which islands receive the migrants of an island, see {@link IslandOptimizer}.
+ */
+public enum MigrationTopology {
+    /**
+     * Island i sends migrants to island i+1, the last island to the first.
+     */
+    RING {
+        @Override
+        public int[] getDestinations(final int island, final int numberOfIslands) {
+            return numberOfIslands < 2 ? new int[0] : new int[]{(island + 1) % numberOfIslands};
+        }
+    },
+    /**
+     * Island i sends migrants to islands i-1 and i+1.
+     */
+    BIDIRECTIONAL_RING {
+        @Override
+        public int[] getDestinations(final int island, final int numberOfIslands) {
+            if (numberOfIslands < 3) {
+                return RING.getDestinations(island, numberOfIslands);
+            }
+            return new int[]{(island + numberOfIslands - 1) % numberOfIslands, (island + 1) % numberOfIslands};
+        }
+    },
+    /**
+     * Each island sends migrants to every other island.
+     */
+    COMPLETE {
+        @Override
+        public int[] getDestinations(final int island, final int numberOfIslands) {
+            final int[] destinations = new int[Math.max(0, numberOfIslands - 1)];
+            int index = 0;
+            for (int destination = 0; destination < numberOfIslands; destination++) {
+                if (destination != island) {
+                    destinations[index++] = destination;
+                }
+            }
+            return destinations;
+        }
+    };
+
+    /**
+     * @param island          Index of the island sending migrants.
+     * @param numberOfIslands Number of islands in the model.
+     * @return Indices of the islands that receive the migrants.
+     */
+    public abstract int[] getDestinations(int island, int numberOfIslands);
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import edu.cornell.med.icb.optimization.MigrationProtocol.Layout;
+import edu.cornell.med.icb.optimization.MigrationProtocol.Migrant;
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.apache.log4j.Logger;
+import org.jgap.Genotype;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.impl.IntegerGene;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Evolves the population of an {@link OptimizeSubSet} as one island of a distributed island
+ * model. Every migration interval, the worker sends its fittest solutions to a
+ * {@link MigrationCoordinator} and replaces its least fit chromosomes with the migrants
+ * received in return. Solutions are exchanged as element ids, so workers only need to agree
+ * on the set of elements, the subset size and the parameter definitions. If the coordinator
+ * cannot be reached, or sends solutions that do not fit the set, subset size or parameters of
+ * the worker, the worker keeps evolving its population on its own.
+ */
+public class MigrationWorker {
+    private static final Logger LOG = Logger.getLogger(MigrationWorker.class);
+
+    private final OptimizeSubSet optimizer;
+    private final String host;
+    private final int port;
+    private int migrationInterval = 50;
+    private int numberOfMigrants = 5;
+
+    private Socket socket;
+    private DataInputStream input;
+    private DataOutputStream output;
+    private boolean stoppedByCoordinator;
+
+    /**
+     * @param optimizer The optimizer whose population is evolved by this worker.
+     * @param host      Host of the coordinator.
+     * @param port      Port of the coordinator.
+     */
+    public MigrationWorker(final OptimizeSubSet optimizer, final String host, final int port) {
+        this.optimizer = optimizer;
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * @param migrationInterval Number of generations between two exchanges with the coordinator.
+     */
+    public void setMigrationInterval(final int migrationInterval) {
+        assert migrationInterval > 0 : "migration interval must be strictly positive";
+        this.migrationInterval = migrationInterval;
+    }
+
+    /**
+     * @param numberOfMigrants Number of fittest chromosomes sent to the coordinator at each exchange.
+     */
+    public void setNumberOfMigrants(final int numberOfMigrants) {
+        this.numberOfMigrants = numberOfMigrants;
+    }
+
+    /**
+     * Evolve the population until numSteps generations, local convergence as defined by
+     * {@link OptimizeSubSet#optimize(int, double)}, or until the coordinator stops the run.
+     * The solution is then available from the optimizer.
+     *
+     * @param numSteps         Maximum number of generations.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @return True when the optimization has converged, locally or globally.
+     * @throws InvalidConfigurationException If an error occurs configuring the optimizer.
+     */
+    public boolean optimize(final int numSteps, final double convergenceDelta) throws InvalidConfigurationException {
+        optimizer.initializePopulation();
+        connect();
+        try {
+            return evolve(numSteps, convergenceDelta);
+        } finally {
+            disconnect();
+            optimizer.releaseResources();
+        }
+    }
+
+    private boolean evolve(final int numSteps, final double convergenceDelta) {
+        final Genotype genotype = optimizer.getGenotype();
+        final int deltaNumSteps = numSteps / 10;
+        int generationsFitnessStable = 0;
+        double previousFitness = -1;
+        double fitness = -2;
+        int generation = 0;
+        while (generation < numSteps - 1 && !stoppedByCoordinator) {
+            final int generations = Math.min(migrationInterval, numSteps - 1 - generation);
+            for (int i = 0; i < generations; i++) {
+                genotype.evolve();
+            }
+            generation += generations;
+            exchangeMigrants(genotype, generation);
+            previousFitness = fitness;
+            fitness = genotype.getFittestChromosome().getFitnessValue();
+            if (fitness >= previousFitness && fitness - previousFitness < Math.abs(convergenceDelta)) {
+                generationsFitnessStable += generations;
+            } else {
+                generationsFitnessStable = 0;
+            }
+            if (generationsFitnessStable >= deltaNumSteps) {
+                break;
+            }
+        }
+        final IChromosome fittest = genotype.getFittestChromosome();
+        optimizer.setNumberOfIterationsPerformed(generation);
+        optimizer.setSolution(fittest, fittest.getFitnessValue());
+        return stoppedByCoordinator || fitness - previousFitness < Math.abs(convergenceDelta);
+    }
+
+    private void connect() {
+        try {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } catch (IOException e) {
+            LOG.warn("Cannot reach coordinator at " + host + ":" + port + ", evolving without migration", e);
+            disconnect();
+        }
+    }
+
+    private void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOG.debug("error closing coordinator socket", e);
+            }
+        }
+        socket = null;
+        input = null;
+        output = null;
+    }
+
+    private void exchangeMigrants(final Genotype genotype, final int generation) {
+        if (output == null) {
+            return;
+        }
+        try {
+            final Layout layout = new Layout(optimizer.getSubsetSize(), optimizer.getNumberOfParameterValues());
+            MigrationProtocol.writeMigrants(output, generation, layout, selectEmigrants(genotype));
+            final byte type = input.readByte();
+            if (type == MigrationProtocol.STOP) {
+                stoppedByCoordinator = true;
+                return;
+            }
+            if (type != MigrationProtocol.MIGRANTS) {
+                throw new IOException("Unexpected message type " + type);
+            }
+            final List<Migrant> immigrants = MigrationProtocol.readMigrants(input, layout).migrants;
+            final int[][] alleles = new int[immigrants.size()][];
+            final double[] fitness = new double[immigrants.size()];
+            for (int m = 0; m < immigrants.size(); m++) {
+                alleles[m] = toAlleles(immigrants.get(m).solution, layout.subsetSize);
+                fitness[m] = immigrants.get(m).fitness;
+            }
+            IslandOptimizer.receive(genotype, alleles, fitness);
+        } catch (IOException e) {
+            LOG.warn("Lost connection to coordinator, evolving without migration", e);
+            disconnect();
+        }
+    }
+
+    private List<Migrant> selectEmigrants(final Genotype genotype) {
+        final List fittest = genotype.getFittestChromosomes(numberOfMigrants);
+        final List<Migrant> emigrants = new ArrayList<Migrant>(fittest.size());
+        for (final Object element : fittest) {
+            final IChromosome chromosome = (IChromosome) element;
+            if (chromosome.getFitnessValueDirectly() < 0) {
+                // skipped by the surrogate model or at the deadline
+                continue;
+            }
+            final SubsetGene subsetGene = (SubsetGene) chromosome.getGene(0);
+            final int[] solution = new int[subsetGene.size() + chromosome.size() - 1];
+            subsetGene.getSubSet(solution);
+            for (int geneIndex = 1; geneIndex < chromosome.size(); geneIndex++) {
+                solution[subsetGene.size() + geneIndex - 1] = ((IntegerGene) chromosome.getGene(geneIndex)).intValue();
+            }
+            emigrants.add(new Migrant(solution, chromosome.getFitnessValueDirectly()));
+        }
+        return emigrants;
+    }
+
+    /**
+     * Convert a solution expressed with element ids into the encoding of
+     * {@link FitnessFunctionAdapter#encodeSolution(IChromosome)}.
+     */
+    private int[] toAlleles(final int[] solution, final int subsetSize) throws IOException {
+        final int[] allElements = optimizer.getAllElements();
+        final int[] alleles = solution.clone();
+        for (int i = 0; i < subsetSize; i++) {
+            alleles[i] = Arrays.binarySearch(allElements, solution[i]);
+            if (alleles[i] < 0) {
+                throw new IOException("Migrant element " + solution[i] + " is not in the set of this worker.");
+            }
+        }
+        return alleles;
+    }
+
+    public boolean isStoppedByCoordinator() {
+        return stoppedByCoordinator;
+    }
+
+    public OptimizeSubSet getOptimizer() {
+        return optimizer;
+    }
+
+    /**
+     * Run a worker for the elements 1..numberOfElements.
+     * Arguments: host port fitnessFunctionClass numberOfElements k numSteps randomSeed [parameterDefinitions...].
+     * The fitness function class must have a public constructor without arguments.
+     *
+     * @param args command line arguments
+     * @throws Exception If the fitness function cannot be created or the optimizer cannot be configured.
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 7) {
+            System.err.println("usage: MigrationWorker host port fitnessFunctionClass numberOfElements k"
+                    + " numSteps randomSeed [parameterDefinitions...]");
+            System.exit(1);
+        }
+        final SubSetFitnessFunction fitnessFunction =
+                (SubSetFitnessFunction) Class.forName(args[2]).newInstance();
+        final IntSet set = new IntArraySet();
+        final int numberOfElements = Integer.parseInt(args[3]);
+        for (int element = 1; element <= numberOfElements; element++) {
+            set.add(element);
+        }
+        final String[] params = Arrays.copyOfRange(args, 7, args.length);
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, Integer.parseInt(args[4]), fitnessFunction, params);
+        optimizer.setRandomSeed(Integer.parseInt(args[6]));
+        final MigrationWorker worker = new MigrationWorker(optimizer, args[0], Integer.parseInt(args[1]));
+        worker.optimize(Integer.parseInt(args[5]), 0.001);
+        System.out.println("fitness: " + optimizer.getFitestFunctionValue());
+        System.out.println("subset: " + optimizer.getFitestSubset());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+
+/**
+ * The fittest solution of a population at a given generation, as passed to a
+ * {@link SolutionObserver}. The subset and parameter values are copies that observers may
+ * keep.
+ */
+public final class ObservedSolution {
+    private final int generation;
+    private final IntSet subset;
+    private final double[] parameterValues;
+    private final double fitness;
+    private final boolean improvement;
+
+    ObservedSolution(final int generation, final IntSet subset, final double[] parameterValues,
+                     final double fitness, final boolean improvement) {
+        this.generation = generation;
+        this.subset = subset;
+        this.parameterValues = parameterValues;
+        this.fitness = fitness;
+        this.improvement = improvement;
+    }
+
+    /**
+     * @return Number of generations evolved before this solution was observed.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    public IntSet getSubset() {
+        return subset;
+    }
+
+    /**
+     * @return Value of each parameter, in the order of the parameter definitions.
+     */
+    public double[] getParameterValues() {
+        return parameterValues;
+    }
+
+    public double getFitness() {
+        return fitness;
+    }
+
+    /**
+     * @return True when the solution is fitter than every solution observed before in the run.
+     */
+    public boolean isImprovement() {
+        return improvement;
+    }
+
+    @Override
+    public String toString() {
+        return "generation " + generation + " fitness " + fitness + " subset " + subset;
+    }
+}
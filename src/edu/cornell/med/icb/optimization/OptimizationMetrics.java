@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * A {@link GenerationListener} that keeps the metrics of the latest generation and exposes
+ * them as a JMX MBean, for instance:
+ * <pre>
+ * final OptimizationMetrics metrics = new OptimizationMetrics();
+ * optimizer.addGenerationListener(metrics);
+ * metrics.register("edu.cornell.med.icb.optimization:type=OptimizeSubSet,name=myRun");
+ * </pre>
+ */
+public class OptimizationMetrics implements GenerationListener, OptimizationMetricsMBean {
+    private static final GenerationMetrics NO_METRICS = new GenerationMetrics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    private volatile GenerationMetrics latest = NO_METRICS;
+    private ObjectName objectName;
+
+    public void generationCompleted(final GenerationMetrics metrics) {
+        latest = metrics;
+    }
+
+    /**
+     * @return Metrics of the latest generation.
+     */
+    public GenerationMetrics getLatest() {
+        return latest;
+    }
+
+    /**
+     * Register this instance with the platform MBean server.
+     *
+     * @param name JMX object name of the MBean.
+     * @throws JMException If the name is malformed or already registered.
+     */
+    public synchronized void register(final String name) throws JMException {
+        final ObjectName newName = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+        objectName = newName;
+    }
+
+    /**
+     * Unregister this instance from the platform MBean server, if it was registered.
+     *
+     * @throws JMException If the MBean cannot be unregistered.
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (InstanceNotFoundException e) {
+                // already unregistered
+            }
+            objectName = null;
+        }
+    }
+
+    public int getGeneration() {
+        return latest.getGeneration();
+    }
+
+    public long getNumberOfEvaluations() {
+        return latest.getNumberOfEvaluations();
+    }
+
+    public double getEvaluationsPerSecond() {
+        return latest.getEvaluationsPerSecond();
+    }
+
+    public long getEvolveTime() {
+        return latest.getEvolveTime();
+    }
+
+    public long getEvaluationTime() {
+        return latest.getEvaluationTime();
+    }
+
+    public double getInvalidRate() {
+        return latest.getInvalidRate();
+    }
+
+    public double getBestFitness() {
+        return latest.getBestFitness();
+    }
+
+    public double getMeanFitness() {
+        return latest.getMeanFitness();
+    }
+
+    public double getFitnessVariance() {
+        return latest.getFitnessVariance();
+    }
+
+    public int getGenerationsSinceImprovement() {
+        return latest.getGenerationsSinceImprovement();
+    }
+}
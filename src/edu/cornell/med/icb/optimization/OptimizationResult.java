@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+
+/**
+ * Result of an optimization job run by an {@link OptimizationScheduler}, or of one subset
+ * size optimized by a {@link SubsetSizeOptimizer}.
+ */
+public final class OptimizationResult {
+    private final String name;
+    private final IntSet subset;
+    private final double[] parameterValues;
+    private final double fitness;
+    private final boolean converged;
+    private final int numberOfIterationsPerformed;
+    private final long numberOfEvaluations;
+    private final long elapsedTime;
+
+    OptimizationResult(final String name, final SubSetOptimizer optimizer, final boolean converged,
+                       final long elapsedTime) {
+        this.name = name;
+        this.subset = optimizer.getFitestSubset();
+        this.parameterValues = optimizer.getFitestParameterValues();
+        this.fitness = optimizer.getFitestFunctionValue();
+        this.converged = converged;
+        this.numberOfIterationsPerformed = optimizer.getNumberOfIterationsPerformed();
+        this.numberOfEvaluations = optimizer.getNumberOfEvaluations();
+        this.elapsedTime = elapsedTime;
+    }
+
+    /**
+     * @return Name the job was submitted with.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public IntSet getSubset() {
+        return subset;
+    }
+
+    /**
+     * @return Value of each parameter, in the order of the parameter definitions.
+     */
+    public double[] getParameterValues() {
+        return parameterValues;
+    }
+
+    public double getFitness() {
+        return fitness;
+    }
+
+    public boolean isConverged() {
+        return converged;
+    }
+
+    public int getNumberOfIterationsPerformed() {
+        return numberOfIterationsPerformed;
+    }
+
+    public long getNumberOfEvaluations() {
+        return numberOfEvaluations;
+    }
+
+    /**
+     * @return Wall-clock time of the job, in milliseconds, not counting the time it waited in the queue.
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": fitness " + fitness + " subset " + subset;
+    }
+}
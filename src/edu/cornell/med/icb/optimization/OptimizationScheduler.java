@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many independent optimizations concurrently on a bounded pool of threads. Each job
+ * runs its own optimizer, whose JGAP configuration is isolated from the configurations of
+ * the other jobs (see {@link OptimizeSubSet#configure()}), so a job gives the same result
+ * as a serial run of the same optimizer with the same seed. An optimizer must not be
+ * submitted more than once, or used by the caller, until its job completes. The fitness
+ * functions of concurrent jobs run on different threads, and must not share mutable state.
+ */
+public class OptimizationScheduler {
+    private static final Logger LOG = Logger.getLogger(OptimizationScheduler.class);
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final ExecutorService executor;
+
+    /**
+     * @param numberOfThreads Number of jobs that run at the same time.
+     */
+    public OptimizationScheduler(final int numberOfThreads) {
+        assert numberOfThreads > 0 : "number of threads must be at least one";
+        final int poolNumber = POOL_NUMBER.incrementAndGet();
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable,
+                        "optimization-" + poolNumber + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queue an optimization job.
+     *
+     * @param name             Name of the job, reported in its result.
+     * @param optimizer        The optimizer, configured with its set, criterion and seed.
+     * @param numSteps         Maximum number of steps, see {@link SubSetOptimizer#optimize(int, double)}.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @return The result of the job. Errors of the optimization are thrown by
+     *         {@link Future#get()}, wrapped in an ExecutionException.
+     */
+    public Future<OptimizationResult> submit(final String name, final SubSetOptimizer optimizer,
+                                             final int numSteps, final double convergenceDelta) {
+        return executor.submit(new Callable<OptimizationResult>() {
+            public OptimizationResult call() throws Exception {
+                final long start = System.currentTimeMillis();
+                final boolean converged = optimizer.optimize(numSteps, convergenceDelta);
+                final OptimizationResult result =
+                        new OptimizationResult(name, optimizer, converged, System.currentTimeMillis() - start);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("job " + result + " completed in " + result.getElapsedTime() + " ms");
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Stop accepting jobs. Jobs already submitted are completed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Cancel the jobs that have not started and interrupt the jobs in progress. An
+     * {@link OptimizeSubSet} that is interrupted stops at its next generation.
+     */
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Wait until all jobs have completed after a shutdown.
+     *
+     * @param timeout Maximum time to wait.
+     * @param unit    Unit of the timeout.
+     * @return True if all jobs completed, false if the timeout elapsed first.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
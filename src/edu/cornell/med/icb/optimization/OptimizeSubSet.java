@@ -32,13 +32,28 @@ import org.jgap.Gene;
 import org.jgap.Genotype;
 import org.jgap.IChromosome;
 import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
 import org.jgap.RandomGenerator;
 import org.jgap.impl.DefaultConfiguration;
 import org.jgap.impl.IntegerGene;
-import org.jgap.supergenes.AbstractSupergene;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.Format;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Optimize a subset of elements according to some convergenceCriterion. Given a set S of N
@@ -47,7 +62,7 @@ import java.text.Format;
  *
  * @author Fabien Campagne Date: Oct 10, 2007 Time: 12:38:14 PM
  */
-public class OptimizeSubSet {
+public class OptimizeSubSet implements SubSetOptimizer {
     private int[] allElements;
     private final SubSetFitnessFunction convergenceCriterion;
     private int k;
@@ -58,12 +73,27 @@ public class OptimizeSubSet {
     IChromosome subsetChromosome;
     int numParams;
     private static final int DEFAULT_POPULATION_SIZE = 1000;
+    private static final AtomicInteger CONFIGURATION_NUMBER = new AtomicInteger();
+    /**
+     * Number of chromosomes of the initial population created by one task.
+     */
+    private static final int INITIALIZATION_BATCH_SIZE = 64;
+    /**
+     * Number of values the range of a continuous parameter is quantized into.
+     */
+    static final int CONTINUOUS_PARAMETER_STEPS = 4096;
     private Configuration configuration;
     private int numberOfIterationsPerformed;
     RandomGenerator randomGenerator;
+    private boolean useSplittableRandom;
+    private boolean useBitSetChromosome;
 
 
     double randomSeed;
+    /**
+     * Seed of the streams created by {@link #createRandomStream(int)}.
+     */
+    private long streamSeed = SplittableGenerator.clockSeed();
     private IntSet set;
     private boolean configured;
     private int numberOfParameters;
@@ -89,19 +119,13 @@ public class OptimizeSubSet {
         parseParameterDefinitions(params);
         this.set = set;
         this.k = k;
-        int i = 0;
-        this.allElements = new int[set.size()];
-        for (final int element : set) {
-            allElements[i++] = element;
-        }
+        // sorted, so that the increasing alleles of a valid solution map to increasing elements:
+        this.allElements = set.toIntArray();
+        Arrays.sort(allElements);
 
         this.convergenceCriterion = convergenceCriterion;
         this.k = k;
         numElementsInSet = set.size();
-        // This is odd: JGAP seems to maintain properties associated with each thread, so creating a new
-        // Configuration instance is not sufficient to indicate that we want a fresh configuration. We have
-        // to call the static reset method on Configuration..
-        Configuration.reset();
 
         randomGenerator = new TwisterGenerator();
         this.populationSize = populationSize;
@@ -110,15 +134,43 @@ public class OptimizeSubSet {
 
     private String[] parameterNames;
     private double[][] allPossibleParameterValues;
+    private boolean[] continuousParameters;
+    private double parameterMutationScale = 0.05;
 
     private void parseParameterDefinitions(final String[] paramDefinitions) {
-        int paramIndex = 0;
         parameterNames = new String[paramDefinitions.length];
-        allPossibleParameterValues = new double[paramDefinitions.length][];
+        continuousParameters = new boolean[paramDefinitions.length];
+        for (int paramIndex = 0; paramIndex < paramDefinitions.length; paramIndex++) {
+            parameterNames[paramIndex] = paramDefinitions[paramIndex].split("[=,]")[0];
+            continuousParameters[paramIndex] = isContinuous(paramDefinitions[paramIndex]);
+        }
+        allPossibleParameterValues = parseParameterValues(paramDefinitions);
+    }
+
+    static boolean isContinuous(final String parameterDefinition) {
+        return parameterDefinition.indexOf(':') >= 0;
+    }
+
+    /**
+     * Parse parameter definitions. A definition of the form name=value1,value2,... lists the
+     * values of the parameter. A definition of the form name=min:max defines a continuous
+     * parameter, whose range is quantized into {@link #CONTINUOUS_PARAMETER_STEPS} evenly spaced
+     * values; with name=min:max:log, the values are evenly spaced on a log scale. Solutions
+     * hold the index of each parameter value in both cases.
+     *
+     * @param paramDefinitions The parameter definitions.
+     * @return The possible values of each parameter, in the order of the definitions.
+     */
+    static double[][] parseParameterValues(final String[] paramDefinitions) {
+        int paramIndex = 0;
+        final double[][] allPossibleParameterValues = new double[paramDefinitions.length][];
         for (final String parameterDefinition : paramDefinitions) {
+            if (isContinuous(parameterDefinition)) {
+                allPossibleParameterValues[paramIndex++] = parseContinuousRange(parameterDefinition);
+                continue;
+            }
             final String[] tokens = parameterDefinition.split("[=,]");
             assert tokens.length > 3 : "parameter definition must be of the form name=value1,value2,...";
-            parameterNames[paramIndex] = tokens[0];
             final DoubleList paramValues = new DoubleArrayList();
             for (int valueIndex = 1; valueIndex < tokens.length; valueIndex++) {
                 paramValues.add(Double.parseDouble(tokens[valueIndex]));
@@ -126,6 +178,29 @@ public class OptimizeSubSet {
             allPossibleParameterValues[paramIndex] = paramValues.toDoubleArray();
             paramIndex++;
         }
+        return allPossibleParameterValues;
+    }
+
+    private static double[] parseContinuousRange(final String parameterDefinition) {
+        final String[] tokens = parameterDefinition.split("[=:]");
+        assert tokens.length == 3 || (tokens.length == 4 && "log".equals(tokens[3]))
+                : "continuous parameter definition must be of the form name=min:max or name=min:max:log";
+        final double min = Double.parseDouble(tokens[1]);
+        final double max = Double.parseDouble(tokens[2]);
+        final boolean logScale = tokens.length == 4;
+        assert min < max : "continuous parameter range must not be empty";
+        assert !logScale || min > 0 : "log-scaled parameter range must be strictly positive";
+        final double[] values = new double[CONTINUOUS_PARAMETER_STEPS];
+        final double from = logScale ? Math.log(min) : min;
+        final double to = logScale ? Math.log(max) : max;
+        for (int i = 0; i < values.length; i++) {
+            final double value = from + (to - from) * i / (values.length - 1);
+            values[i] = logScale ? Math.exp(value) : value;
+        }
+        // bounds exactly as given, whatever the rounding of exp(log(x)):
+        values[0] = min;
+        values[values.length - 1] = max;
+        return values;
     }
 
     /**
@@ -139,32 +214,434 @@ public class OptimizeSubSet {
 
     public void setRandomSeed(final int randomSeed) {
         this.randomSeed = randomSeed;
-        this.randomGenerator = new TwisterGenerator(randomSeed);
+        this.streamSeed = randomSeed;
+        this.randomGenerator = createRandomGenerator(randomSeed);
+        configured = false;
+    }
+
+    /**
+     * Draw the random numbers of the genetic algorithm from a {@link SplittableGenerator}
+     * instead of a {@link TwisterGenerator}, whose bounded integers are biased. The generator
+     * is seeded from the clock until {@link #setRandomSeed(int)} is called.
+     *
+     * @param useSplittableRandom Whether to use a {@link SplittableGenerator}.
+     */
+    public void setUseSplittableRandom(final boolean useSplittableRandom) {
+        this.useSplittableRandom = useSplittableRandom;
+        this.randomGenerator = useSplittableRandom ? new SplittableGenerator() : new TwisterGenerator();
+        configured = false;
+    }
+
+    /**
+     * Store the subset of each chromosome as a {@link BitSetSubsetGene} instead of a
+     * {@link SubsetSuperGene}. The bitset takes N / 8 bytes per chromosome for a set of N
+     * elements, whatever the subset size, and the subset operators work on it with bitwise
+     * operations. It saves memory and time when k is large; for small k and large N, the
+     * default {@link SubsetSuperGene} is smaller.
+     *
+     * @param useBitSetChromosome Whether to store subsets as bitsets.
+     */
+    public void setUseBitSetChromosome(final boolean useBitSetChromosome) {
+        this.useBitSetChromosome = useBitSetChromosome;
+        configured = false;
+    }
+
+    /**
+     * Scale of the mutation of continuous parameters (defined as name=min:max, see
+     * {@link #parseParameterValues(String[])}): a mutation moves the value by a Gaussian step
+     * whose standard deviation is this fraction of the range. Parameters defined by a list of
+     * values are mutated to a random value of the list.
+     *
+     * @param parameterMutationScale Standard deviation of a mutation step, as a fraction of the
+     *                               range of the parameter (0.05 by default).
+     */
+    public void setParameterMutationScale(final double parameterMutationScale) {
+        assert parameterMutationScale > 0 : "mutation scale must be strictly positive";
+        this.parameterMutationScale = parameterMutationScale;
+        configured = false;
+    }
+
+    /**
+     * Create a stream of random numbers derived from the seed given to
+     * {@link #setRandomSeed(int)}, for instance for a fitness function that draws random
+     * numbers on several threads. The stream of a given index is the same in every run with
+     * the same seed, and is independent of the streams of other indices and of the generator
+     * of the genetic algorithm. Until a seed is set, streams are derived from a seed drawn
+     * from the clock when the optimizer was created, different for each optimizer.
+     *
+     * @param index Index of the stream, zero or more.
+     * @return A new generator, to be used by one thread at a time.
+     */
+    public SplittableGenerator createRandomStream(final int index) {
+        return SplittableGenerator.stream(streamSeed, index);
+    }
+
+    private RandomGenerator createRandomGenerator(final int seed) {
+        return useSplittableRandom ? new SplittableGenerator(seed) : new TwisterGenerator(seed);
     }
 
     private int populationSize;
 
+    /**
+     * Evaluate the fitness of the population with the given number of threads. The fitness
+     * function must be safe to call concurrently when more than one thread is used.
+     * Must be called before {@link #configure()} to take effect.
+     *
+     * @param numberOfThreads Number of threads used to evaluate fitness (1 evaluates sequentially).
+     */
+    public void setNumberOfThreads(final int numberOfThreads) {
+        assert numberOfThreads > 0 : "number of threads must be at least one";
+        this.numberOfThreads = numberOfThreads;
+        configured = false;
+    }
+
+    /**
+     * Evaluate the fitness of the population with an executor provided by the caller. The
+     * executor is not shut down by this class. Must be called before {@link #configure()}
+     * to take effect.
+     *
+     * @param executor Executor used to evaluate fitness, or null to use {@link #setNumberOfThreads(int)}.
+     */
+    public void setExecutorService(final ExecutorService executor) {
+        this.executor = executor;
+        configured = false;
+    }
+
+    /**
+     * Memoize the fitness of the most recently evaluated solutions. Useful when the
+     * convergence criterion is expensive, since the algorithm frequently revisits the same
+     * subsets. Must be called before {@link #configure()} to take effect.
+     *
+     * @param fitnessCacheSize Maximum number of fitness values to keep, or zero to disable the cache.
+     */
+    public void setFitnessCacheSize(final int fitnessCacheSize) {
+        this.fitnessCacheSize = fitnessCacheSize;
+        configured = false;
+    }
+
+    /**
+     * Decide when the search has stagnated with the given policy, instead of waiting for
+     * numSteps / 10 generations without an improvement larger than the convergence delta.
+     * The state of the policy is not saved in checkpoints; a resumed run starts it afresh.
+     *
+     * @param convergencePolicy The policy, or null to use the default test.
+     */
+    public void setConvergencePolicy(final ConvergencePolicy convergencePolicy) {
+        this.convergencePolicy = convergencePolicy;
+    }
+
+    /**
+     * Restart the population when the {@link ConvergencePolicy} detects stagnation, instead
+     * of stopping. A restart keeps the fittest chromosomes and replaces the others with random
+     * chromosomes. The run stops at the first stagnation after the last restart.
+     *
+     * @param maxRestarts   Maximum number of restarts in one run, zero to never restart.
+     * @param eliteFraction Fraction of the population kept by a restart. At least the fittest
+     *                      chromosome is kept.
+     */
+    public void setRestartOnStagnation(final int maxRestarts, final double eliteFraction) {
+        assert maxRestarts >= 0 : "maximum number of restarts must not be negative";
+        assert eliteFraction >= 0 && eliteFraction < 1 : "elite fraction must be in [0, 1)";
+        this.maxRestarts = maxRestarts;
+        this.restartEliteFraction = eliteFraction;
+    }
+
+    /**
+     * @return Number of restarts performed by the last optimization.
+     */
+    public int getNumberOfRestarts() {
+        return numberOfRestarts;
+    }
+
+    /**
+     * Skip the evaluation of offspring that a {@link SurrogateModel} predicts to be unfit.
+     * The model learns from the chromosomes evaluated so far; once fitted, only the predicted
+     * best fraction of the unevaluated offspring of each generation is evaluated. The other
+     * offspring are left unevaluated, so they are never reported as the fittest solution nor
+     * used as the parent of a delta evaluation. Useful when the convergence criterion is
+     * expensive. Disabled by default. Must be called before {@link #configure()} to take effect.
+     * The model is saved in checkpoints, and a resumed run that screens offspring continues
+     * with the saved model.
+     *
+     * @param evaluatedFraction Fraction of the offspring that is evaluated, or 1 to disable
+     *                          screening.
+     * @param refreshInterval   Number of generations between two fits of the model.
+     */
+    public void setSurrogateScreening(final double evaluatedFraction, final int refreshInterval) {
+        assert evaluatedFraction > 0 && evaluatedFraction <= 1 : "evaluated fraction must be in (0, 1]";
+        assert refreshInterval > 0 : "refresh interval must be strictly positive";
+        this.surrogateEvaluatedFraction = evaluatedFraction;
+        this.surrogateRefreshInterval = refreshInterval;
+        configured = false;
+    }
+
+    /**
+     * @return Number of offspring whose evaluation was skipped by the surrogate model.
+     */
+    public long getNumberOfSurrogateSkips() {
+        return surrogateModel == null ? 0 : surrogateModel.getNumberOfSkipped();
+    }
+
+    /**
+     * @return Fraction of the offspring ranked by the surrogate model whose evaluation was skipped.
+     */
+    public double getSurrogateSkipRate() {
+        return surrogateModel == null ? 0 : surrogateModel.getSkipRate();
+    }
+
+    /**
+     * @return Number of fitness evaluations answered from the fitness cache.
+     */
+    public long getFitnessCacheHits() {
+        return fitnessCache == null ? 0 : fitnessCache.getHits();
+    }
+
+    /**
+     * @return Number of fitness evaluations that were not found in the fitness cache.
+     */
+    public long getFitnessCacheMisses() {
+        return fitnessCache == null ? 0 : fitnessCache.getMisses();
+    }
+
+    /**
+     * Choose the genetic operators. When true (the default), crossover and mutation are done by
+     * {@link SubsetCrossoverOperator} and {@link SubsetMutationOperator}, which only produce
+     * valid subsets. When false, the JGAP default operators are used, and the invalid
+     * offspring they produce are given a fitness of zero. Must be called before
+     * {@link #configure()} to take effect.
+     *
+     * @param useSubsetOperators Whether to use the subset-aware genetic operators.
+     */
+    public void setUseSubsetOperators(final boolean useSubsetOperators) {
+        this.useSubsetOperators = useSubsetOperators;
+        configured = false;
+    }
+
+    /**
+     * Search all the solutions with an {@link ExhaustiveOptimizer} instead of evolving a
+     * population when the search space has at most the given number of solutions. The
+     * exhaustive search uses the threads or executor set on this optimizer, and returns the
+     * optimum. Disabled by default.
+     *
+     * @param exhaustiveSearchThreshold Largest search space searched exhaustively, or zero to
+     *                                  always use the genetic algorithm.
+     */
+    public void setExhaustiveSearchThreshold(final long exhaustiveSearchThreshold) {
+        this.exhaustiveSearchThreshold = exhaustiveSearchThreshold;
+    }
+
+    /**
+     * @return Number of solutions: subsets of k elements times combinations of parameter
+     *         values, or Long.MAX_VALUE if it does not fit in a long.
+     */
+    public long getSearchSpaceSize() {
+        return ExhaustiveOptimizer.getSearchSpaceSize(numElementsInSet, k, allPossibleParameterValues);
+    }
+
+    /**
+     * Periodically save the state of the optimization, so that an interrupted run can be
+     * continued with {@link #resume(File, int, double)}. The state is saved after every
+     * checkpointInterval generations, replacing the previous checkpoint. The state of the
+     * random generator and of the surrogate model (see {@link #setSurrogateScreening(double, int)})
+     * is saved with the population, so a run with checkpoints follows the same path as a run
+     * with the same seed and no checkpoints, and so does its continuation.
+     *
+     * @param checkpointFile     File the state is written to, or null to disable checkpoints.
+     * @param checkpointInterval Number of generations between two checkpoints.
+     */
+    public void setCheckpoint(final File checkpointFile, final int checkpointInterval) {
+        assert checkpointFile == null || checkpointInterval > 0 : "checkpoint interval must be strictly positive";
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Register a listener notified with the metrics of each generation evolved by
+     * {@link #optimize(int, double)}. Metrics are only computed when at least one listener
+     * is registered.
+     *
+     * @param listener The listener to add.
+     * @see OptimizationMetrics
+     */
+    public void addGenerationListener(final GenerationListener listener) {
+        generationListeners.add(listener);
+    }
+
+    public void removeGenerationListener(final GenerationListener listener) {
+        generationListeners.remove(listener);
+    }
+
+    /**
+     * Register an observer of the fittest solution of the optimization. The run stops as
+     * soon as an observer asks for it, with the observed solution as its result.
+     *
+     * @param observer         The observer to add.
+     * @param improvementsOnly True to only observe solutions fitter than those observed
+     *                         before in the run, false to observe the fittest solution of
+     *                         every generation.
+     */
+    public void addSolutionObserver(final SolutionObserver observer, final boolean improvementsOnly) {
+        if (improvementsOnly) {
+            improvementObservers.add(observer);
+        } else {
+            generationObservers.add(observer);
+        }
+    }
+
+    public void removeSolutionObserver(final SolutionObserver observer) {
+        improvementObservers.remove(observer);
+        generationObservers.remove(observer);
+    }
+
+    /**
+     * Ask the optimization in progress to stop before its next generation. May be called from
+     * any thread. The fittest solution found so far is then the result of
+     * {@link #optimize(int, double)}. Interrupting the thread that runs the optimization has
+     * the same effect. A stop requested while no optimization runs stops the next one as soon
+     * as it starts. Exhaustive searches are not stopped.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Check for a stop requested by {@link #stop()} or an interrupt, on behalf of an optimizer
+     * that evolves the population of this optimizer itself. The request is consumed, and
+     * {@link #isStopped()} reports the stop.
+     *
+     * @return True if the optimization must stop.
+     */
+    boolean checkStopRequested() {
+        if (stopRequested || Thread.currentThread().isInterrupted()) {
+            stopRequested = false;
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    /**
+     * @return Name of a setting that only applies to the generations of
+     *         {@link #optimize(int, double)}, or null when none is set.
+     */
+    String getGenerationalSetting() {
+        if (surrogateEvaluatedFraction < 1) {
+            return "surrogate screening";
+        }
+        if (!generationListeners.isEmpty()) {
+            return "generation listeners";
+        }
+        if (!improvementObservers.isEmpty() || !generationObservers.isEmpty()) {
+            return "solution observers";
+        }
+        if (convergencePolicy != null) {
+            return "a convergence policy";
+        }
+        if (checkpointFile != null) {
+            return "checkpoints";
+        }
+        return null;
+    }
+
+    /**
+     * @return True if the last optimization was stopped by {@link #stop()}, an interrupt or
+     *         an observer.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private final List<GenerationListener> generationListeners = new CopyOnWriteArrayList<GenerationListener>();
+    private final List<SolutionObserver> improvementObservers = new CopyOnWriteArrayList<SolutionObserver>();
+    private final List<SolutionObserver> generationObservers = new CopyOnWriteArrayList<SolutionObserver>();
+    private volatile boolean stopRequested;
+    private boolean stopped;
+    private boolean deadlineReached;
+    private long metricsEvaluations;
+    private long metricsInvalidSolutions;
+    private double metricsBestFitness;
+    private int metricsImprovementGeneration;
+    private long exhaustiveSearchThreshold;
+    private long numberOfExhaustiveEvaluations;
+    private File checkpointFile;
+    private int checkpointInterval;
+    private boolean useSubsetOperators = true;
+    private static final int DEFAULT_CROSSOVER_RATE = 2;
+    static final int DEFAULT_MUTATION_RATE = 15;
+    private int fitnessCacheSize;
+    private FitnessCache fitnessCache;
+    private int numberOfThreads = 1;
+    private ExecutorService executor;
+    private BulkFitnessNoOffset bulkFitnessFunction;
+    private double surrogateEvaluatedFraction = 1;
+    private int surrogateRefreshInterval = 10;
+    private SurrogateModel surrogateModel;
+    private ConvergencePolicy convergencePolicy;
+    private int maxRestarts;
+    private double restartEliteFraction = 0.1;
+    private int numberOfRestarts;
 
     public void configure() throws InvalidConfigurationException {
 
 
-        configuration = new DefaultConfiguration();
+        // JGAP keeps properties of each configuration in the system properties, keyed by the
+        // thread that created the configuration and by its id. A unique id isolates this
+        // configuration from those of other optimizers, whatever the thread they run on.
+        final String configurationId = "OptimizeSubSet-" + CONFIGURATION_NUMBER.incrementAndGet();
+        configuration = new DefaultConfiguration(configurationId, "subset optimization");
         configuration.setPreservFittestIndividual(true);
         configuration.setKeepPopulationSizeConstant(true);
 
         configuration.setRandomGenerator(randomGenerator);
-        fitnessFunction = new FitnessFunctionAdapter(set, k, convergenceCriterion, allPossibleParameterValues);
+        if (useSubsetOperators) {
+            configuration.getGeneticOperators().clear();
+            configuration.addGeneticOperator(new SubsetCrossoverOperator(configuration, DEFAULT_CROSSOVER_RATE));
+            configuration.addGeneticOperator(new SubsetMutationOperator(configuration, DEFAULT_MUTATION_RATE));
+        }
+        final FitnessFunctionAdapter adapter =
+                new FitnessFunctionAdapter(set, k, convergenceCriterion, allPossibleParameterValues);
+        fitnessCache = fitnessCacheSize > 0 ? new FitnessCache(fitnessCacheSize) : null;
+        adapter.setFitnessCache(fitnessCache);
+        fitnessFunction = adapter;
 
-      configuration.setBulkFitnessFunction(new BulkFitnessNoOffset(fitnessFunction));
+        if (executor != null) {
+            bulkFitnessFunction = new ParallelBulkFitnessNoOffset(fitnessFunction, executor);
+        } else if (numberOfThreads > 1) {
+            bulkFitnessFunction = new ParallelBulkFitnessNoOffset(fitnessFunction, numberOfThreads);
+        } else {
+            bulkFitnessFunction = new BulkFitnessNoOffset(fitnessFunction);
+        }
+        if (surrogateEvaluatedFraction < 1) {
+            surrogateModel = new SurrogateModel(numElementsInSet, getNumberOfParameterValues(),
+                    surrogateEvaluatedFraction, surrogateRefreshInterval);
+        } else {
+            surrogateModel = null;
+        }
+        bulkFitnessFunction.setSurrogateModel(surrogateModel);
+        configuration.setBulkFitnessFunction(bulkFitnessFunction);
 
         subsetChromosome = setupChromosome(allElements);
         configuration.setSampleChromosome(subsetChromosome);
         configuration.setPopulationSize(populationSize);
         progressLogger = new ProgressLogger(log);
         fitestSubset = new IntArraySet();
+        removeConfigurationProperties(configurationId);
         configured = true;
     }
 
+    /**
+     * Remove the system properties JGAP set for a configuration. They are only used to detect
+     * conflicting settings while a configuration is built, and would otherwise accumulate.
+     */
+    private static void removeConfigurationProperties(final String configurationId) {
+        final String marker = "|" + configurationId + "|";
+        final Properties properties = System.getProperties();
+        for (final String name : properties.stringPropertyNames()) {
+            if (name.contains(marker)) {
+                properties.remove(name);
+            }
+        }
+    }
+
     /**
      * Creates a chromosome that encodes the optimization problem.
      *
@@ -186,10 +663,18 @@ public class OptimizeSubSet {
             subsetGenes[g] = new IntegerGene(configuration, 0, numElementsInSet - 1);
         }
         final Gene[] genes = new Gene[1 + getNumberOfParameters()];
-        final AbstractSupergene constrainedGenes = new SubsetSuperGene(configuration, subsetGenes, this.allElements);
-        genes[0] = constrainedGenes;
+        if (useBitSetChromosome) {
+            genes[0] = new BitSetSubsetGene(configuration, k, this.allElements);
+        } else {
+            genes[0] = new SubsetSuperGene(configuration, subsetGenes, this.allElements);
+        }
         for (int paramIndex = 0; paramIndex < getNumberOfParameters(); paramIndex++) {
-            genes[1 + paramIndex] = new IntegerGene(configuration, 0, this.allPossibleParameterValues[paramIndex].length - 1);
+            if (continuousParameters[paramIndex]) {
+                genes[1 + paramIndex] = new ContinuousParameterGene(configuration,
+                        this.allPossibleParameterValues[paramIndex].length, parameterMutationScale);
+            } else {
+                genes[1 + paramIndex] = new IntegerGene(configuration, 0, this.allPossibleParameterValues[paramIndex].length - 1);
+            }
         }
         subsetChromosome = new Chromosome(configuration, genes);
         return subsetChromosome;
@@ -211,6 +696,7 @@ public class OptimizeSubSet {
      * Find an optimal subset, given the convergenceCriterion. Optimization will proceed for at most numSteps. If convergence of
      * the convergenceCriterion cost function occurs becore maxSteps, the optimization terminates. Formally, the optimization
      * terminates if cost(step i+1) - cost(step i) < abs(convergenceDelta) for more than deltaNumSteps contiguous steps.
+     * A policy set with {@link #setConvergencePolicy(ConvergencePolicy)} replaces this test.
      *
      * @param numSteps         Maximum number of steps before stopping.
      * @param convergenceDelta convergence cost function convergenceCriterion
@@ -219,25 +705,320 @@ public class OptimizeSubSet {
      *          If an error occurs configuring the optimization solver.
      */
     public boolean optimize(final int numSteps, final double convergenceDelta) throws InvalidConfigurationException {
+        if (getSearchSpaceSize() <= exhaustiveSearchThreshold) {
+            return optimizeExhaustively();
+        }
+        initializePopulation();
+        return evolvePopulation(numSteps, convergenceDelta);
+    }
+
+    /**
+     * Find an optimal subset within a time budget. The optimization proceeds as with
+     * {@link #optimize(int, double)}, but also stops when the time budget is spent, with the
+     * fittest solution evaluated by then. The deadline is checked before every fitness
+     * evaluation, so it is overshot by at most one evaluation. Use
+     * {@link #getNumberOfIterationsPerformed()} and {@link #getNumberOfEvaluations()} to know
+     * how much work was done. The genetic algorithm is used even when the search space is
+     * below the exhaustive search threshold.
+     *
+     * @param numSteps         Maximum number of steps before stopping.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @param timeBudget       Maximum duration of the optimization.
+     * @param unit             Unit of the time budget.
+     * @return True when the optimization has converged before the deadline, False otherwise.
+     * @throws InvalidConfigurationException If an error occurs configuring the optimization solver.
+     * @see #isDeadlineReached()
+     */
+    public boolean optimize(final int numSteps, final double convergenceDelta, final long timeBudget,
+                            final TimeUnit unit) throws InvalidConfigurationException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeBudget);
+        initializePopulation();
+        bulkFitnessFunction.setDeadline(deadline);
+        try {
+            return evolve(numSteps, convergenceDelta, new Checkpoint());
+        } finally {
+            bulkFitnessFunction.clearDeadline();
+            releaseResources();
+        }
+    }
+
+    /**
+     * Find an optimal subset before a deadline, see {@link #optimize(int, double, long, TimeUnit)}.
+     *
+     * @param numSteps         Maximum number of steps before stopping.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @param deadline         Time the optimization must stop, in milliseconds since the epoch
+     *                         as returned by {@link System#currentTimeMillis()}.
+     * @return True when the optimization has converged before the deadline, False otherwise.
+     * @throws InvalidConfigurationException If an error occurs configuring the optimization solver.
+     */
+    public boolean optimizeUntil(final int numSteps, final double convergenceDelta, final long deadline)
+            throws InvalidConfigurationException {
+        return optimize(numSteps, convergenceDelta, deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return True if the last optimization was stopped by its deadline.
+     */
+    public boolean isDeadlineReached() {
+        return deadlineReached;
+    }
+
+    private boolean optimizeExhaustively() {
+        log.info("searching all " + getSearchSpaceSize() + " solutions exhaustively");
+        final ExhaustiveOptimizer exhaustive =
+                new ExhaustiveOptimizer(allElements, k, convergenceCriterion, allPossibleParameterValues);
+        exhaustive.setNumberOfThreads(numberOfThreads);
+        exhaustive.setExecutorService(executor);
+        exhaustive.optimize(0, 0);
+        numberOfExhaustiveEvaluations += exhaustive.getNumberOfEvaluations();
+        numberOfIterationsPerformed = 0;
+        fitestFunctionValue = exhaustive.getFitestFunctionValue();
+        fitestSubset = exhaustive.getFitestSubset();
+        fitestParams = exhaustive.getFitestParameterValues();
+        return true;
+    }
+
+    /**
+     * Continue an optimization from a checkpoint written by an optimizer configured with the
+     * same set, subset size, parameter definitions and fitness function. The run proceeds
+     * exactly as the interrupted run would have, given the same numSteps and
+     * convergenceDelta. Checkpoints continue to be written if {@link #setCheckpoint(File, int)}
+     * was called on this optimizer.
+     *
+     * @param checkpoint       The checkpoint file.
+     * @param numSteps         Maximum number of steps before stopping, counted from the start of the run.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @return True when the optimization has converged, False otherwise.
+     * @throws IOException If the checkpoint cannot be read or does not match this optimizer.
+     * @throws InvalidConfigurationException If an error occurs configuring the optimization solver.
+     */
+    public boolean resume(final File checkpoint, final int numSteps, final double convergenceDelta)
+            throws IOException, InvalidConfigurationException {
+        configure();
+        final Checkpoint state = new Checkpoint();
+        state.surrogateModel = surrogateModel;
+        final Population savedPopulation = state.load(checkpoint, configuration, numElementsInSet);
+        randomGenerator = state.randomGenerator;
+        configuration.setRandomGenerator(randomGenerator);
+        // the random generator of the configuration must be set before the genotype locks it:
+        population = new Genotype(configuration, savedPopulation);
+        // the next optimization must not start from the state of the checkpoint:
+        configured = false;
+        try {
+            return evolve(numSteps, convergenceDelta, state);
+        } finally {
+            releaseResources();
+        }
+    }
+
+    /**
+     * Configure the optimizer if needed, and create a random initial population.
+     *
+     * @throws InvalidConfigurationException If an error occurs configuring the optimization solver.
+     */
+    void initializePopulation() throws InvalidConfigurationException {
         if (!configured) {
             configure();
         }
+        stopped = false;
+        population = new Genotype(configuration, createInitialPopulation());
+    }
+
+    /**
+     * Create populationSize random chromosomes. Chromosome i is drawn by a
+     * {@link SplittableGenerator} seeded with i plus a value drawn once from the random
+     * generator of the optimizer, so the population does not depend on how many threads
+     * create it. The initial draws use a {@link SplittableGenerator} whatever the choice made
+     * with {@link #setUseSplittableRandom(boolean)}: its bounded integers are unbiased, so
+     * that each subset is drawn uniformly (see {@link SubsetSuperGene#setToRandomValue}).
+     * Chromosomes are created by the threads or the executor that evaluate fitness.
+     *
+     * @return The initial population.
+     * @throws InvalidConfigurationException If the chromosomes cannot be created.
+     */
+    private Population createInitialPopulation() throws InvalidConfigurationException {
+        final long populationSeed = randomGenerator.nextLong();
+        final IChromosome[] chromosomes = new IChromosome[populationSize];
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        for (int first = 0; first < populationSize; first += INITIALIZATION_BATCH_SIZE) {
+            final int start = first;
+            final int end = Math.min(populationSize, first + INITIALIZATION_BATCH_SIZE);
+            tasks.add(new Runnable() {
+                public void run() {
+                    for (int i = start; i < end; i++) {
+                        final RandomGenerator random = new SplittableGenerator(populationSeed + i);
+                        final IChromosome chromosome = (IChromosome) subsetChromosome.clone();
+                        for (int geneIndex = 0; geneIndex < chromosome.size(); geneIndex++) {
+                            chromosome.getGene(geneIndex).setToRandomValue(random);
+                        }
+                        chromosomes[i] = chromosome;
+                    }
+                }
+            });
+        }
+        if (bulkFitnessFunction instanceof ParallelBulkFitnessNoOffset && tasks.size() > 1) {
+            final List<Callable<Object>> callables = new ArrayList<Callable<Object>>(tasks.size());
+            for (final Runnable task : tasks) {
+                callables.add(Executors.callable(task));
+            }
+            try {
+                for (final Future<Object> result
+                        : ((ParallelBulkFitnessNoOffset) bulkFitnessFunction).getExecutor().invokeAll(callables)) {
+                    result.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while creating the initial population.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("An error occurred creating the initial population.", e.getCause());
+            }
+        } else {
+            for (final Runnable task : tasks) {
+                task.run();
+            }
+        }
+        return new Population(configuration, chromosomes);
+    }
+
+    /**
+     * Evolve the population created by {@link #initializePopulation()}, possibly modified by
+     * the caller, as {@link #optimize(int, double)} does, then release the resources of the run.
+     *
+     * @param numSteps         Maximum number of steps before stopping.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @return True when the optimization has converged, False otherwise.
+     */
+    boolean evolvePopulation(final int numSteps, final double convergenceDelta) {
+        try {
+            return evolve(numSteps, convergenceDelta, new Checkpoint());
+        } finally {
+            releaseResources();
+        }
+    }
+
+    /**
+     * @return The population being evolved, or null before the first optimization.
+     */
+    Genotype getGenotype() {
+        return population;
+    }
+
+    /**
+     * @return The fitness function of the configured optimizer, which evaluates one chromosome
+     *         and is safe to call concurrently when more than one thread is used.
+     */
+    FitnessFunction getFitnessFunction() {
+        return fitnessFunction;
+    }
+
+    /**
+     * @return The executor that evaluates fitness, or null when fitness is evaluated on the
+     *         calling thread.
+     */
+    ExecutorService getEvaluationExecutor() {
+        return bulkFitnessFunction instanceof ParallelBulkFitnessNoOffset
+                ? ((ParallelBulkFitnessNoOffset) bulkFitnessFunction).getExecutor() : null;
+    }
+
+    /**
+     * Release the threads used to evaluate fitness, if any were created by this optimizer.
+     */
+    void releaseResources() {
+        if (bulkFitnessFunction instanceof ParallelBulkFitnessNoOffset) {
+            ((ParallelBulkFitnessNoOffset) bulkFitnessFunction).shutdown();
+        }
+    }
+
+    /**
+     * Record the given chromosome as the solution of the optimization.
+     *
+     * @param fittestChromosome The fittest chromosome found.
+     * @param fitness           Fitness value of the chromosome.
+     */
+    void setSolution(final IChromosome fittestChromosome, final double fitness) {
+        fitestFunctionValue = fitness;
+        convertFittestToSolution(fittestChromosome);
+    }
+
+    /**
+     * @return Number of elements in each subset.
+     */
+    int getSubsetSize() {
+        return k;
+    }
+
+    /**
+     * @return Number of possible values of each parameter, in the order of the definitions.
+     */
+    int[] getNumberOfParameterValues() {
+        final int[] numberOfParameterValues = new int[getNumberOfParameters()];
+        for (int paramIndex = 0; paramIndex < numberOfParameterValues.length; paramIndex++) {
+            numberOfParameterValues[paramIndex] = allPossibleParameterValues[paramIndex].length;
+        }
+        return numberOfParameterValues;
+    }
+
+    /**
+     * @return All the elements of the set, in increasing order. Alleles of the subset genes are
+     *         indices into this array.
+     */
+    int[] getAllElements() {
+        return allElements;
+    }
+
+    void setNumberOfIterationsPerformed(final int numberOfIterationsPerformed) {
+        this.numberOfIterationsPerformed = numberOfIterationsPerformed;
+    }
+
+    private Genotype population;
+
+    private boolean evolve(final int numSteps, final double convergenceDelta, final Checkpoint state) {
         final int deltaNumSteps = numSteps/10;
-        final Genotype population = Genotype.randomInitialGenotype(configuration);
         final boolean converged;
-        int timesFitnessStable = 0;
-        double previousFitness = -1;
+        boolean stagnant = false;
+        numberOfRestarts = 0;
+        if (convergencePolicy != null) {
+            convergencePolicy.reset();
+        }
+        int timesFitnessStable = state.timesFitnessStable;
+        double previousFitness = state.previousFitness;
         progressLogger.expectedUpdates = numSteps;
         progressLogger.start("optimization");
         IChromosome fitestChromosome = null;
         double fitness = -2;
-        for (int i = 0; i < numSteps; i++) {
+        final FitnessFunctionAdapter adapter = (FitnessFunctionAdapter) fitnessFunction;
+        metricsEvaluations = adapter.getNumberOfEvaluations();
+        metricsInvalidSolutions = adapter.getNumberOfInvalidSolutions();
+        metricsBestFitness = Double.NEGATIVE_INFINITY;
+        metricsImprovementGeneration = state.step;
+        double observedFitness = Double.NEGATIVE_INFINITY;
+        stopped = false;
+        deadlineReached = false;
+        for (int i = state.step; i < numSteps; i++) {
              //   writeCurrentPopulation(population);
             fitestChromosome = population.getFittestChromosome();
 
-            fitness = fitnessFunction.getFitnessValue(fitestChromosome);
+            deadlineReached = bulkFitnessFunction.isDeadlineReached();
+            // past the deadline, do not evaluate a fitness that is already known
+            fitness = deadlineReached && fitestChromosome.getFitnessValueDirectly() >= 0
+                    ? fitestChromosome.getFitnessValueDirectly() : fitnessFunction.getFitnessValue(fitestChromosome);
             fitestFunctionValue = fitness;
-            if (i % moduloProgressReport == 1) {
+            if (!improvementObservers.isEmpty() || !generationObservers.isEmpty()) {
+                final boolean improvement = fitness > observedFitness;
+                observedFitness = Math.max(observedFitness, fitness);
+                stopped = fireSolutionObserved(i, fitestChromosome, fitness, improvement);
+            }
+            if (stopRequested || Thread.currentThread().isInterrupted()) {
+                stopped = true;
+            }
+            if (stopped || deadlineReached) {
+                numberOfIterationsPerformed = i;
+                log.info("optimization " + (stopped ? "stopped" : "reached its deadline") + " after " + i
+                        + " generations with fitness " + fitness);
+                break;
+            }
+            if (i % moduloProgressReport == 1 && log.isInfoEnabled()) {
                 log.info("Current solution has a fitness value of " +
                         formatDouble(Math.log(fitestChromosome.getFitnessValue())) +
                         " absolute: " + formatDouble(Math.log(fitness)) +
@@ -246,36 +1027,171 @@ public class OptimizeSubSet {
             }
             if (fitness >= previousFitness && fitness - previousFitness < Math.abs(convergenceDelta)) {
                 timesFitnessStable++;
-                log.trace("fitness function value stable " + timesFitnessStable);
+                if (log.isTraceEnabled()) {
+                    log.trace("fitness function value stable " + timesFitnessStable);
+                }
             } else {
                 timesFitnessStable = 0;
-                log.trace("fitness function not stable, old: " + previousFitness + " new fitness: " + fitness);
+                if (log.isTraceEnabled()) {
+                    log.trace("fitness function not stable, old: " + previousFitness + " new fitness: " + fitness);
+                }
             }
 
             previousFitness = fitness;
-            if (timesFitnessStable >= deltaNumSteps) {
-                break;
+            if (convergencePolicy == null) {
+                if (timesFitnessStable >= deltaNumSteps) {
+                    break;
+                }
+            } else if (convergencePolicy.isStagnant(i, fitness, population.getPopulation())) {
+                if (numberOfRestarts >= maxRestarts) {
+                    stagnant = true;
+                    numberOfIterationsPerformed = i;
+                    log.info("search stagnated after " + i + " generations with fitness " + fitness);
+                    break;
+                }
+                restartPopulation();
+                numberOfRestarts++;
+                convergencePolicy.reset();
+                log.info("restarted the population after " + i + " generations with fitness " + fitness);
             }
             numberOfIterationsPerformed = i;
             if (i != numSteps - 1) {
                 // do not evolve if this is the last step.
+                final boolean notifyListeners = !generationListeners.isEmpty();
+                long generationStart = 0;
+                long evaluationTimeBefore = 0;
+                if (notifyListeners) {
+                    generationStart = System.nanoTime();
+                    evaluationTimeBefore = bulkFitnessFunction.getEvaluationTime();
+                }
                 population.evolve();
                 progressLogger.lightUpdate();
+                if (notifyListeners) {
+                    fireGenerationCompleted(i + 1, System.nanoTime() - generationStart,
+                            bulkFitnessFunction.getEvaluationTime() - evaluationTimeBefore);
+                }
+                // a generation cut short by the deadline is not saved
+                if (checkpointFile != null && (i + 1) % checkpointInterval == 0
+                        && !bulkFitnessFunction.isDeadlineReached()) {
+                    state.step = i + 1;
+                    state.timesFitnessStable = timesFitnessStable;
+                    state.previousFitness = previousFitness;
+                    saveCheckpoint(state);
+                }
             }
 
         }
-        if (fitness - previousFitness < Math.abs(convergenceDelta)) {
+        stopRequested = false;
+        if (convergencePolicy != null) {
+            converged = !stopped && !deadlineReached && stagnant;
+        } else if (!stopped && !deadlineReached && fitness - previousFitness < Math.abs(convergenceDelta)) {
             converged = true;
         } else {
             converged = false;
         }
         progressLogger.stop("optimization");
+        if (surrogateModel != null) {
+            log.info("surrogate model skipped " + surrogateModel.getNumberOfSkipped() + " of "
+                    + surrogateModel.getNumberOfScreened() + " screened evaluations");
+        }
         convertFittestToSolution(fitestChromosome);
 
         return converged;
 
     }
 
+    /**
+     * Keep the fittest chromosomes of the population and replace the others with random
+     * chromosomes, see {@link #setRestartOnStagnation(int, double)}.
+     */
+    private void restartPopulation() {
+        final Population current = population.getPopulation();
+        final IChromosome[] chromosomes =
+                (IChromosome[]) current.getChromosomes().toArray(new IChromosome[current.size()]);
+        Arrays.sort(chromosomes, new Comparator<IChromosome>() {
+            public int compare(final IChromosome first, final IChromosome second) {
+                return Double.compare(second.getFitnessValueDirectly(), first.getFitnessValueDirectly());
+            }
+        });
+        final int eliteSize = Math.max(1, (int) (restartEliteFraction * chromosomes.length));
+        try {
+            final Population restarted = createInitialPopulation();
+            for (int i = 0; i < eliteSize && i < chromosomes.length; i++) {
+                restarted.setChromosome(i, chromosomes[i]);
+            }
+            population = new Genotype(configuration, restarted);
+        } catch (InvalidConfigurationException e) {
+            throw new IllegalStateException("Cannot restart the population.", e);
+        }
+    }
+
+    private boolean fireSolutionObserved(final int generation, final IChromosome fittestChromosome,
+                                         final double fitness, final boolean improvement) {
+        if (!improvement && generationObservers.isEmpty()) {
+            return false;
+        }
+        convertFittestToSolution(fittestChromosome);
+        final ObservedSolution solution = new ObservedSolution(generation, new IntArraySet(fitestSubset),
+                fitestParams.clone(), fitness, improvement);
+        boolean stop = false;
+        for (final SolutionObserver observer : generationObservers) {
+            stop |= observer.solutionObserved(solution);
+        }
+        if (improvement) {
+            for (final SolutionObserver observer : improvementObservers) {
+                stop |= observer.solutionObserved(solution);
+            }
+        }
+        return stop;
+    }
+
+    private void fireGenerationCompleted(final int generation, final long generationTime,
+                                         final long evaluationTime) {
+        final FitnessFunctionAdapter adapter = (FitnessFunctionAdapter) fitnessFunction;
+        final long evaluations = adapter.getNumberOfEvaluations();
+        final long invalidSolutions = adapter.getNumberOfInvalidSolutions();
+        final List chromosomes = population.getPopulation().getChromosomes();
+        double best = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        double sumOfSquares = 0;
+        int size = 0;
+        for (final Object chromosome : chromosomes) {
+            final double value = ((IChromosome) chromosome).getFitnessValueDirectly();
+            if (value < 0) {
+                // not evaluated
+                continue;
+            }
+            size++;
+            best = Math.max(best, value);
+            sum += value;
+            sumOfSquares += value * value;
+        }
+        final double mean = size == 0 ? Double.NaN : sum / size;
+        if (best > metricsBestFitness) {
+            metricsBestFitness = best;
+            metricsImprovementGeneration = generation;
+        }
+        final GenerationMetrics metrics = new GenerationMetrics(generation, evaluations,
+                evaluations - metricsEvaluations, invalidSolutions - metricsInvalidSolutions,
+                generationTime - evaluationTime, evaluationTime, best, mean,
+                Math.max(0, sumOfSquares / size - mean * mean), generation - metricsImprovementGeneration);
+        metricsEvaluations = evaluations;
+        metricsInvalidSolutions = invalidSolutions;
+        for (final GenerationListener listener : generationListeners) {
+            listener.generationCompleted(metrics);
+        }
+    }
+
+    private void saveCheckpoint(final Checkpoint state) {
+        state.randomGenerator = randomGenerator;
+        state.surrogateModel = surrogateModel;
+        try {
+            state.save(checkpointFile, population, numElementsInSet);
+        } catch (IOException e) {
+            log.warn("Cannot write checkpoint " + checkpointFile + ", optimization continues", e);
+        }
+    }
+
     private IntSet fitestSubset;
     private double[] fitestParams;
 
@@ -284,7 +1200,7 @@ public class OptimizeSubSet {
             fitestSubset = null;
             fitestParams = ArrayUtils.EMPTY_DOUBLE_ARRAY;
         } else {
-            fitestSubset = ((SubsetSuperGene) fittestChromosome.getGene(0)).getSubSet();
+            fitestSubset = ((SubsetGene) fittestChromosome.getGene(0)).getSubSet();
             fitestParams = FitnessFunctionAdapter.getParameterValues(fittestChromosome, allPossibleParameterValues);
 
         }
@@ -318,4 +1234,26 @@ public class OptimizeSubSet {
     public double getFitestFunctionValue() {
         return fitestFunctionValue;
     }
+
+    /**
+     * @return Number of chromosomes evaluated since the optimizer was configured, plus the
+     *         solutions evaluated by exhaustive searches.
+     */
+    public long getNumberOfEvaluations() {
+        return ((FitnessFunctionAdapter) fitnessFunction).getNumberOfEvaluations() + numberOfExhaustiveEvaluations;
+    }
+
+    /**
+     * @return Number of chromosomes scored incrementally by a {@link DeltaSubSetFitnessFunction}.
+     */
+    public long getNumberOfDeltaEvaluations() {
+        return ((FitnessFunctionAdapter) fitnessFunction).getNumberOfDeltaEvaluations();
+    }
+
+    /**
+     * @return Number of evaluated chromosomes that did not encode a valid subset.
+     */
+    public long getNumberOfInvalidSolutions() {
+        return ((FitnessFunctionAdapter) fitnessFunction).getNumberOfInvalidSolutions();
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.FitnessFunction;
+import org.jgap.IChromosome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A version of {@link BulkFitnessNoOffset} that evaluates the chromosomes of a population
+ * concurrently. Only chromosomes whose fitness has not been evaluated yet, and that the
+ * surrogate model does not screen out, are submitted to the executor. Fitness values do not
+ * depend on evaluation order, so results are identical to the sequential implementation.
+ * The fitness function must be safe to call from several threads at once. A
+ * {@link BatchSubSetFitnessFunction} still receives all these chromosomes in one call, on the
+ * calling thread.
+ */
+public class ParallelBulkFitnessNoOffset extends BulkFitnessNoOffset {
+    private final int numberOfThreads;
+    private transient ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * Evaluate with a thread pool of the given size, created when first needed and
+     * released by {@link #shutdown()}.
+     *
+     * @param fitnessFunction The fitness function used to evaluate each chromosome.
+     * @param numberOfThreads Number of threads used to evaluate a population.
+     */
+    public ParallelBulkFitnessNoOffset(final FitnessFunction fitnessFunction, final int numberOfThreads) {
+        super(fitnessFunction);
+        assert numberOfThreads > 0 : "number of threads must be at least one";
+        this.numberOfThreads = numberOfThreads;
+        this.ownsExecutor = true;
+    }
+
+    /**
+     * Evaluate with an executor provided by the caller. The caller remains responsible for
+     * shutting the executor down.
+     *
+     * @param fitnessFunction The fitness function used to evaluate each chromosome.
+     * @param executor        Executor that will run the fitness evaluations.
+     */
+    public ParallelBulkFitnessNoOffset(final FitnessFunction fitnessFunction, final ExecutorService executor) {
+        super(fitnessFunction);
+        this.numberOfThreads = 0;
+        this.executor = executor;
+        this.ownsExecutor = false;
+    }
+
+    @Override
+    protected void evaluateChromosomes(final List<IChromosome> unevaluated) {
+        final List<Callable<Double>> tasks = new ArrayList<Callable<Double>>(unevaluated.size());
+        for (final IChromosome chromosome : unevaluated) {
+            tasks.add(new Callable<Double>() {
+                public Double call() {
+                    return isDeadlineReached() ? FitnessFunction.NO_FITNESS_VALUE
+                            : fitnessFunction.getFitnessValue(chromosome);
+                }
+            });
+        }
+        final List<Future<Double>> results;
+        try {
+            results = getExecutor().invokeAll(tasks);
+            int index = 0;
+            for (final Future<Double> result : results) {
+                // store the value in the calling thread, to avoid evaluation of the same Chromosome again;
+                // chromosomes skipped at the deadline are left unevaluated:
+                final double fitness = result.get();
+                if (fitness >= 0) {
+                    unevaluated.get(index).setFitnessValue(fitness);
+                }
+                index++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating population fitness.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("An error occurred evaluating chromosome fitness.", e.getCause());
+        }
+    }
+
+    synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(numberOfThreads, new DaemonThreadFactory());
+        }
+        return executor;
+    }
+
+    /**
+     * Release the threads of the pool created by this instance. Has no effect when the
+     * executor was provided by the caller. A new pool is created if the instance is used
+     * again afterwards.
+     */
+    public synchronized void shutdown() {
+        if (ownsExecutor && executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+        private final int poolNumber = POOL_NUMBER.incrementAndGet();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                    "fitness-" + poolNumber + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
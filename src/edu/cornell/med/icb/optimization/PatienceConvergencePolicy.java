@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.Population;
+
+/**
+ * Stagnation after a fixed number of generations without improvement. Unlike the default
+ * test of {@link OptimizeSubSet#optimize(int, double)}, which waits for numSteps / 10 stable
+ * generations, the patience does not grow with the maximum number of generations, and small
+ * improvements add up until they exceed the minimum improvement.
+ */
+public class PatienceConvergencePolicy implements ConvergencePolicy {
+    private final int patience;
+    private final double minimumImprovement;
+    private double reference;
+    private int improvementGeneration;
+    private boolean started;
+
+    /**
+     * @param patience           Number of generations without improvement after which the
+     *                           search has stagnated.
+     * @param minimumImprovement Smallest increase of fitness that counts as an improvement.
+     */
+    public PatienceConvergencePolicy(final int patience, final double minimumImprovement) {
+        assert patience > 0 : "patience must be strictly positive";
+        this.patience = patience;
+        this.minimumImprovement = Math.abs(minimumImprovement);
+    }
+
+    public void reset() {
+        started = false;
+    }
+
+    public boolean isStagnant(final int generation, final double fitness, final Population population) {
+        if (!started || (fitness > reference && fitness - reference >= minimumImprovement)) {
+            started = true;
+            reference = fitness;
+            improvementGeneration = generation;
+            return false;
+        }
+        return generation - improvementGeneration >= patience;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+/**
+ * Receives the fittest solution of an {@link OptimizeSubSet} run as the optimization
+ * progresses, and decides whether the run should continue. Observers are called on the
+ * thread that runs the optimization, before the next generation is evolved.
+ *
+ * @see OptimizeSubSet#addSolutionObserver(SolutionObserver, boolean)
+ */
+public interface SolutionObserver {
+    /**
+     * @param solution The fittest solution of the current population.
+     * @return True to stop the optimization. The solution is then the result of the run.
+     */
+    boolean solutionObserved(ObservedSolution solution);
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.RandomGenerator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A xoshiro256** random generator for JGAP, seeded with SplitMix64. Bounded integers are
+ * drawn without bias with Lemire's multiply and shift method, which costs one 64 bit
+ * multiplication and rarely rejects a draw. A generator can be split into independent
+ * streams: {@link #jump()} advances the state by 2^128 draws, so the streams obtained by
+ * {@link #split()} or {@link #stream(long, int)} never overlap in practice. Streams are
+ * derived deterministically from the seed, which makes parallel runs reproducible.
+ * Instances are not thread safe: give each thread its own stream.
+ */
+public class SplittableGenerator implements RandomGenerator {
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final long[] JUMP = {
+            0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL};
+    private static final AtomicLong SEED_UNIQUIFIER = new AtomicLong(0x5851f42d4c957f2dL);
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    /**
+     * Create a generator seeded from the current time.
+     */
+    public SplittableGenerator() {
+        this(clockSeed());
+    }
+
+    public SplittableGenerator(final long seed) {
+        setSeed(seed);
+    }
+
+    SplittableGenerator(final long s0, final long s1, final long s2, final long s3) {
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    /**
+     * Restart the generator from a seed. The state is filled with SplitMix64, so that
+     * similar seeds give unrelated sequences.
+     *
+     * @param seed The seed.
+     */
+    public void setSeed(final long seed) {
+        long x = seed;
+        s0 = mix(x += GOLDEN_GAMMA);
+        s1 = mix(x += GOLDEN_GAMMA);
+        s2 = mix(x += GOLDEN_GAMMA);
+        s3 = mix(x + GOLDEN_GAMMA);
+    }
+
+    private static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public long nextLong() {
+        final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        final long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * @param ceiling Exclusive upper bound, strictly positive.
+     * @return An integer drawn uniformly from 0 (inclusive) to ceiling (exclusive).
+     */
+    public int nextInt(final int ceiling) {
+        assert ceiling > 0 : "ceiling must be strictly positive";
+        long product = (nextLong() >>> 32) * ceiling;
+        long low = product & 0xffffffffL;
+        if (low < ceiling) {
+            // reject the draws that would make some values more likely: 2^32 mod ceiling of them
+            final long threshold = (0x100000000L - ceiling) % ceiling;
+            while (low < threshold) {
+                product = (nextLong() >>> 32) * ceiling;
+                low = product & 0xffffffffL;
+            }
+        }
+        return (int) (product >>> 32);
+    }
+
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /**
+     * Advance the state by 2^128 draws.
+     */
+    public void jump() {
+        long t0 = 0;
+        long t1 = 0;
+        long t2 = 0;
+        long t3 = 0;
+        for (final long jump : JUMP) {
+            for (int bit = 0; bit < 64; bit++) {
+                if ((jump & (1L << bit)) != 0) {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+
+    /**
+     * Split off a stream: the returned generator continues from the current state, and this
+     * generator jumps 2^128 draws ahead.
+     *
+     * @return A generator independent of the draws this generator will make.
+     */
+    public SplittableGenerator split() {
+        final SplittableGenerator stream = new SplittableGenerator(s0, s1, s2, s3);
+        jump();
+        return stream;
+    }
+
+    /**
+     * @return A seed drawn from the current time, different for each call.
+     */
+    static long clockSeed() {
+        return System.nanoTime() ^ SEED_UNIQUIFIER.addAndGet(GOLDEN_GAMMA);
+    }
+
+    /**
+     * @param seed  The seed the streams are derived from.
+     * @param index Index of the stream, zero or more.
+     * @return Stream index of the seed. Streams with different indices never overlap, and
+     *         none overlaps the generator created with the same seed.
+     */
+    public static SplittableGenerator stream(final long seed, final int index) {
+        assert index >= 0 : "stream index must not be negative";
+        final SplittableGenerator generator = new SplittableGenerator(seed);
+        for (int i = 0; i <= index; i++) {
+            generator.jump();
+        }
+        return generator;
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.apache.log4j.Logger;
+import org.jgap.FitnessFunction;
+import org.jgap.Gene;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.RandomGenerator;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Asynchronous steady-state evolution. Instead of evaluating a whole generation and waiting
+ * for its slowest evaluation, the optimizer keeps a fixed number of evaluations in flight.
+ * Whenever one finishes, the evaluated chromosome replaces the least fit member of the
+ * population if it is fitter and not already in the population, and a new offspring is bred
+ * and submitted right away. An offspring is the crossover of two parents chosen by binary
+ * tournament, mutated as by {@link SubsetMutationOperator}. Threads are never idle while
+ * fitness costs vary between subsets.
+ * <p/>
+ * The population, chromosomes, fitness function, random seed and results are those of an
+ * {@link OptimizeSubSet}, available from {@link #getOptimizer()} to configure the fitness
+ * cache, the chromosome representation or continuous parameters. A step is the evaluation of
+ * as many offspring as there are chromosomes in the population, so that numSteps compares
+ * with the generations of {@link OptimizeSubSet#optimize(int, double)}. With more than one
+ * evaluation in flight, the order in which evaluations complete, and hence the result,
+ * depends on the timing of the threads.
+ * <p/>
+ * Offspring are evaluated one at a time, without the generations of {@link OptimizeSubSet}.
+ * Surrogate screening, generation listeners, solution observers, convergence policies and
+ * checkpoints of the wrapped optimizer therefore do not apply, and {@link #optimize(int, double)}
+ * rejects an optimizer configured with any of them. There is no time budget either.
+ * {@link OptimizeSubSet#stop()} and interrupts stop the submission of offspring; the
+ * evaluations in flight are completed.
+ */
+public class SteadyStateOptimizer implements SubSetOptimizer {
+    private static final Logger LOG = Logger.getLogger(SteadyStateOptimizer.class);
+    private static final int DEFAULT_POPULATION_SIZE = 1000;
+
+    private final OptimizeSubSet optimizer;
+    private final int populationSize;
+    private int evaluationsInFlight;
+
+    private IChromosome[] members;
+    private int[][] memberSolutions;
+    private int numberOfMembers;
+    private IChromosome fittest;
+    private int numberOfIterationsPerformed;
+
+    // evaluations completed on the calling thread, when fitness is not evaluated by an executor:
+    private final Queue<IChromosome> completed = new ArrayDeque<IChromosome>();
+    private CompletionService<IChromosome> completionService;
+    private FitnessFunction fitnessFunction;
+    // arrays reused by the offspring bred on the calling thread:
+    private int[] parentAlleles;
+    private int[] otherAlleles;
+    private int[] childAlleles;
+    private int[] exclusive;
+
+    public SteadyStateOptimizer(final IntSet set, final int k, final SubSetFitnessFunction convergenceCriterion,
+                                final String... params) throws InvalidConfigurationException {
+        this(set, k, convergenceCriterion, DEFAULT_POPULATION_SIZE, params);
+    }
+
+    /**
+     * @param set                  The set of elements from which subsets are chosen.
+     * @param k                    Number of elements in each subset.
+     * @param convergenceCriterion The fitness function to maximize.
+     * @param populationSize       Number of chromosomes in the population.
+     * @param params               Parameter definitions, see {@link OptimizeSubSet}.
+     * @throws InvalidConfigurationException If an error occurs configuring the optimizer.
+     */
+    public SteadyStateOptimizer(final IntSet set, final int k, final SubSetFitnessFunction convergenceCriterion,
+                                final int populationSize, final String... params)
+            throws InvalidConfigurationException {
+        assert populationSize > 1 : "population must hold at least two chromosomes";
+        this.optimizer = new OptimizeSubSet(set, k, convergenceCriterion, populationSize, params);
+        this.populationSize = populationSize;
+    }
+
+    public void setRandomSeed(final int randomSeed) {
+        optimizer.setRandomSeed(randomSeed);
+    }
+
+    /**
+     * Evaluate fitness with the given number of threads. The fitness function must be safe to
+     * call concurrently when more than one thread is used.
+     *
+     * @param numberOfThreads Number of threads used to evaluate fitness (1 evaluates on the
+     *                        calling thread).
+     */
+    public void setNumberOfThreads(final int numberOfThreads) {
+        optimizer.setNumberOfThreads(numberOfThreads);
+    }
+
+    /**
+     * Evaluate fitness with an executor provided by the caller, see
+     * {@link OptimizeSubSet#setExecutorService(ExecutorService)}.
+     *
+     * @param executor Executor used to evaluate fitness, or null to use {@link #setNumberOfThreads(int)}.
+     */
+    public void setExecutorService(final ExecutorService executor) {
+        optimizer.setExecutorService(executor);
+    }
+
+    /**
+     * @param evaluationsInFlight Number of evaluations submitted and not yet completed, or zero
+     *                            (the default) for one per thread of the executor: its maximum
+     *                            pool size for a {@link ThreadPoolExecutor} with a bounded pool,
+     *                            the number of processors otherwise.
+     */
+    public void setEvaluationsInFlight(final int evaluationsInFlight) {
+        assert evaluationsInFlight >= 0 : "number of evaluations in flight must not be negative";
+        this.evaluationsInFlight = evaluationsInFlight;
+    }
+
+    /**
+     * @return The optimizer whose population, chromosomes and fitness function are used.
+     */
+    public OptimizeSubSet getOptimizer() {
+        return optimizer;
+    }
+
+    /**
+     * Evolve a random population until numSteps * populationSize offspring have been
+     * evaluated, or until the best fitness improved by less than abs(convergenceDelta) over
+     * the last numSteps/10 steps. Evaluations still in flight at that point are completed and
+     * inserted before returning.
+     *
+     * @param numSteps         Maximum number of steps before stopping.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @return True when the optimization has converged, False otherwise.
+     * @throws InvalidConfigurationException If an error occurs configuring the optimizer.
+     * @throws IllegalStateException         If the wrapped optimizer is configured with a
+     *                                       setting that only applies to generations.
+     */
+    public boolean optimize(final int numSteps, final double convergenceDelta) throws InvalidConfigurationException {
+        final String generationalSetting = optimizer.getGenerationalSetting();
+        if (generationalSetting != null) {
+            throw new IllegalStateException("Steady-state evolution does not support " + generationalSetting + ".");
+        }
+        optimizer.initializePopulation();
+        try {
+            return evolve(numSteps, convergenceDelta);
+        } finally {
+            completionService = null;
+            completed.clear();
+            optimizer.releaseResources();
+        }
+    }
+
+    private boolean evolve(final int numSteps, final double convergenceDelta) {
+        final ExecutorService executor = optimizer.getEvaluationExecutor();
+        completionService = executor == null ? null : new ExecutorCompletionService<IChromosome>(executor);
+        fitnessFunction = optimizer.getFitnessFunction();
+        final RandomGenerator random = optimizer.getGenotype().getConfiguration().getRandomGenerator();
+        final Queue<IChromosome> initial = new ArrayDeque<IChromosome>();
+        for (final Object chromosome : optimizer.getGenotype().getPopulation().getChromosomes()) {
+            initial.add((IChromosome) chromosome);
+        }
+        members = new IChromosome[populationSize];
+        memberSolutions = new int[populationSize][];
+        numberOfMembers = 0;
+        fittest = null;
+
+        final long budget = (long) numSteps * populationSize;
+        final long stableEvaluations = (long) (numSteps / 10) * populationSize;
+        final int maxInFlight = executor == null ? 1
+                : evaluationsInFlight > 0 ? evaluationsInFlight : getDefaultEvaluationsInFlight(executor);
+        long submitted = 0;
+        long evaluations = 0;
+        long improvementEvaluation = 0;
+        double improvementFitness = Double.NEGATIVE_INFINITY;
+        boolean converged = false;
+        boolean stopped = false;
+        int inFlight = 0;
+        while (inFlight < maxInFlight && submitted < budget && !initial.isEmpty()) {
+            submit(initial.poll());
+            submitted++;
+            inFlight++;
+        }
+        while (inFlight > 0) {
+            final IChromosome chromosome = take();
+            inFlight--;
+            evaluations++;
+            insert(chromosome);
+            final double fitness = fittest.getFitnessValueDirectly();
+            if (fitness - improvementFitness >= Math.abs(convergenceDelta)) {
+                improvementFitness = fitness;
+                improvementEvaluation = evaluations;
+            }
+            if (!converged && evaluations - improvementEvaluation >= stableEvaluations) {
+                converged = true;
+                LOG.debug("best fitness " + fitness + " stable since evaluation " + improvementEvaluation);
+            }
+            if (!stopped && optimizer.checkStopRequested()) {
+                stopped = true;
+                LOG.debug("stopped after " + evaluations + " evaluations with fitness " + fitness);
+            }
+            // breed from the evaluated members only, once the initial population is submitted
+            while (!converged && !stopped && inFlight < maxInFlight && submitted < budget) {
+                submit(initial.isEmpty() ? breed(random) : initial.poll());
+                submitted++;
+                inFlight++;
+            }
+        }
+        numberOfIterationsPerformed = (int) (evaluations / populationSize);
+        optimizer.setNumberOfIterationsPerformed(numberOfIterationsPerformed);
+        optimizer.setSolution(fittest, fittest.getFitnessValueDirectly());
+        return converged && !stopped;
+    }
+
+    private static int getDefaultEvaluationsInFlight(final ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            final int poolSize = ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+            if (poolSize < Integer.MAX_VALUE) {
+                return poolSize;
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private void submit(final IChromosome chromosome) {
+        if (completionService == null) {
+            chromosome.setFitnessValueDirectly(fitnessFunction.getFitnessValue(chromosome));
+            completed.add(chromosome);
+            return;
+        }
+        completionService.submit(new Callable<IChromosome>() {
+            public IChromosome call() {
+                chromosome.setFitnessValueDirectly(fitnessFunction.getFitnessValue(chromosome));
+                return chromosome;
+            }
+        });
+    }
+
+    private IChromosome take() {
+        if (completionService == null) {
+            return completed.poll();
+        }
+        try {
+            return completionService.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating chromosome fitness.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("An error occurred evaluating chromosome fitness.", e.getCause());
+        }
+    }
+
+    /**
+     * Add an evaluated chromosome to the population, in place of the least fit member once
+     * the population is full.
+     */
+    private void insert(final IChromosome chromosome) {
+        final double fitness = chromosome.getFitnessValueDirectly();
+        final int[] solution = FitnessFunctionAdapter.encodeSolution(chromosome);
+        if (fittest == null || fitness > fittest.getFitnessValueDirectly()) {
+            fittest = chromosome;
+        }
+        if (numberOfMembers < members.length) {
+            members[numberOfMembers] = chromosome;
+            memberSolutions[numberOfMembers++] = solution;
+            return;
+        }
+        int leastFit = 0;
+        for (int m = 0; m < numberOfMembers; m++) {
+            if (Arrays.equals(memberSolutions[m], solution)) {
+                return;
+            }
+            if (members[m].getFitnessValueDirectly() < members[leastFit].getFitnessValueDirectly()) {
+                leastFit = m;
+            }
+        }
+        if (fitness > members[leastFit].getFitnessValueDirectly()) {
+            members[leastFit] = chromosome;
+            memberSolutions[leastFit] = solution;
+        }
+    }
+
+    /**
+     * Breed an offspring: crossover of two parents chosen by binary tournament, then mutation
+     * of each element of the subset and of each parameter with probability
+     * 1/{@link OptimizeSubSet#DEFAULT_MUTATION_RATE}.
+     */
+    private IChromosome breed(final RandomGenerator random) {
+        final IChromosome parent = tournament(random);
+        final IChromosome otherParent = tournament(random);
+        final IChromosome child = (IChromosome) parent.clone();
+        final SubsetGene subset = (SubsetGene) parent.getGene(0);
+        if (parentAlleles == null) {
+            parentAlleles = new int[subset.size()];
+            otherAlleles = new int[subset.size()];
+            childAlleles = new int[subset.size()];
+            exclusive = new int[2 * subset.size()];
+        }
+        subset.getAlleles(parentAlleles);
+        ((SubsetGene) otherParent.getGene(0)).getAlleles(otherAlleles);
+        SubsetOperators.crossover(parentAlleles, otherAlleles, childAlleles, exclusive, random);
+        for (int position = 0; position < childAlleles.length; position++) {
+            if (random.nextInt(OptimizeSubSet.DEFAULT_MUTATION_RATE) == 0) {
+                SubsetOperators.swap(childAlleles, position, subset.getNumberOfElements(), random);
+            }
+        }
+        ((SubsetGene) child.getGene(0)).setAlleles(childAlleles);
+        boolean sameParameters = true;
+        for (int geneIndex = 1; geneIndex < child.size(); geneIndex++) {
+            final Gene parameterGene = child.getGene(geneIndex);
+            if (random.nextBoolean()) {
+                parameterGene.setAllele(otherParent.getGene(geneIndex).getAllele());
+            }
+            if (random.nextInt(OptimizeSubSet.DEFAULT_MUTATION_RATE) == 0) {
+                if (parameterGene instanceof ContinuousParameterGene) {
+                    ((ContinuousParameterGene) parameterGene).mutate(random);
+                } else {
+                    parameterGene.setToRandomValue(random);
+                }
+            }
+            sameParameters &= parameterGene.getAllele().equals(parent.getGene(geneIndex).getAllele());
+        }
+        if (sameParameters) {
+            SubsetLineage.record(child, parent, parentAlleles, childAlleles);
+        } else {
+            SubsetLineage.clear(child);
+        }
+        child.setFitnessValueDirectly(-1);
+        return child;
+    }
+
+    private IChromosome tournament(final RandomGenerator random) {
+        final IChromosome first = members[random.nextInt(numberOfMembers)];
+        final IChromosome second = members[random.nextInt(numberOfMembers)];
+        return first.getFitnessValueDirectly() >= second.getFitnessValueDirectly() ? first : second;
+    }
+
+    public IntSet getFitestSubset() {
+        return optimizer.getFitestSubset();
+    }
+
+    public double[] getFitestParameterValues() {
+        return optimizer.getFitestParameterValues();
+    }
+
+    public double getFitestFunctionValue() {
+        return optimizer.getFitestFunctionValue();
+    }
+
+    /**
+     * @return Number of steps performed, each the evaluation of as many offspring as there
+     *         are chromosomes in the population.
+     */
+    public int getNumberOfIterationsPerformed() {
+        return numberOfIterationsPerformed;
+    }
+
+    public int getNumberOfParameters() {
+        return optimizer.getNumberOfParameters();
+    }
+
+    public long getNumberOfEvaluations() {
+        return optimizer.getNumberOfEvaluations();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.jgap.InvalidConfigurationException;
+
+/**
+ * Finds the subset of k elements of a set, and the parameter values, that maximize a
+ * {@link SubSetFitnessFunction}. Implementations differ in the search strategy.
+ *
+ * @see OptimizeSubSet
+ * @see AnnealingOptimizer
+ * @see ExhaustiveOptimizer
+ */
+public interface SubSetOptimizer {
+    void setRandomSeed(int randomSeed);
+
+    /**
+     * Find an optimal subset, given the convergenceCriterion. Optimization proceeds for at
+     * most numSteps steps and stops earlier when the best fitness improves by less than
+     * abs(convergenceDelta) for numSteps/10 consecutive steps. What a step is depends on
+     * the implementation.
+     *
+     * @param numSteps         Maximum number of steps before stopping.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @return True when the optimization has converged, False otherwise.
+     * @throws InvalidConfigurationException If an error occurs configuring the optimization solver.
+     */
+    boolean optimize(int numSteps, double convergenceDelta) throws InvalidConfigurationException;
+
+    /**
+     * @return The subset with the elements that maximize the fitness function.
+     */
+    IntSet getFitestSubset();
+
+    /**
+     * @return Parameter values of the fittest solution, in the order of the parameter definitions.
+     */
+    double[] getFitestParameterValues();
+
+    double getFitestFunctionValue();
+
+    int getNumberOfIterationsPerformed();
+
+    int getNumberOfParameters();
+
+    /**
+     * @return Number of solutions evaluated.
+     */
+    long getNumberOfEvaluations();
+}
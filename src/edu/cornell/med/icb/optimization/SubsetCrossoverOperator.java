@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.BaseGeneticOperator;
+import org.jgap.Configuration;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+import org.jgap.RandomGenerator;
+
+import java.util.List;
+
+/**
+ * Crossover for chromosomes made of a {@link SubsetGene} followed by parameter genes.
+ * Pairs of parents are drawn at random, as with JGAP's {@link org.jgap.impl.CrossoverOperator}.
+ * Each pair produces two children whose subsets keep the elements common to both parents
+ * and sample the rest from the elements found in only one parent (see
+ * {@link SubsetOperators#crossover}). Each parameter value is inherited from either parent
+ * with equal probability. Children always encode valid subsets. Children that inherit the
+ * parameter values of the parent they are cloned from record their {@link SubsetLineage}.
+ */
+public class SubsetCrossoverOperator extends BaseGeneticOperator {
+    private final int crossoverRate;
+
+    /**
+     * @param configuration The configuration this operator belongs to.
+     * @param crossoverRate The number of crossovers performed is the population size divided by this rate.
+     * @throws InvalidConfigurationException If the configuration is null.
+     */
+    public SubsetCrossoverOperator(final Configuration configuration, final int crossoverRate)
+            throws InvalidConfigurationException {
+        super(configuration);
+        assert crossoverRate > 0 : "crossover rate must be strictly positive";
+        this.crossoverRate = crossoverRate;
+    }
+
+    public void operate(final Population population, final List candidateChromosomes) {
+        final int size = Math.min(getConfiguration().getPopulationSize(), population.size());
+        final int numCrossovers = size / crossoverRate;
+        final RandomGenerator random = getConfiguration().getRandomGenerator();
+        int[] alleles1 = null;
+        int[] alleles2 = null;
+        int[] childAlleles = null;
+        int[] exclusive = null;
+        for (int i = 0; i < numCrossovers; i++) {
+            final IChromosome parent1 = population.getChromosome(random.nextInt(size));
+            final IChromosome parent2 = population.getChromosome(random.nextInt(size));
+            if (parent1.getAge() < 1 && parent2.getAge() < 1) {
+                // both parents were created in this generation, as in JGAP's CrossoverOperator
+                continue;
+            }
+            final SubsetGene subset1 = (SubsetGene) parent1.getGene(0);
+            final SubsetGene subset2 = (SubsetGene) parent2.getGene(0);
+            if (exclusive == null) {
+                exclusive = new int[2 * subset1.size()];
+            }
+            if (subset1 instanceof BitSetSubsetGene) {
+                candidateChromosomes.add(createChild(parent1, parent2, exclusive, random));
+                candidateChromosomes.add(createChild(parent2, parent1, exclusive, random));
+                continue;
+            }
+            if (alleles1 == null) {
+                alleles1 = new int[subset1.size()];
+                alleles2 = new int[subset1.size()];
+                childAlleles = new int[subset1.size()];
+            }
+            subset1.getAlleles(alleles1);
+            subset2.getAlleles(alleles2);
+            candidateChromosomes.add(createChild(parent1, parent2, alleles1, alleles2, childAlleles, exclusive,
+                    random));
+            candidateChromosomes.add(createChild(parent2, parent1, alleles2, alleles1, childAlleles, exclusive,
+                    random));
+        }
+    }
+
+    private IChromosome createChild(final IChromosome parent, final IChromosome otherParent,
+                                    final int[] parentAlleles, final int[] otherAlleles, final int[] childAlleles,
+                                    final int[] exclusive, final RandomGenerator random) {
+        final IChromosome child = (IChromosome) parent.clone();
+        SubsetOperators.crossover(parentAlleles, otherAlleles, childAlleles, exclusive, random);
+        ((SubsetGene) child.getGene(0)).setAlleles(childAlleles);
+        if (inheritParameters(child, parent, otherParent, random)) {
+            SubsetLineage.record(child, parent, parentAlleles, childAlleles);
+        } else {
+            SubsetLineage.clear(child);
+        }
+        return child;
+    }
+
+    /**
+     * Bitset version of the crossover, for chromosomes made of a {@link BitSetSubsetGene}.
+     */
+    private IChromosome createChild(final IChromosome parent, final IChromosome otherParent,
+                                    final int[] exclusive, final RandomGenerator random) {
+        final IChromosome child = (IChromosome) parent.clone();
+        final BitSetSubsetGene subset = (BitSetSubsetGene) parent.getGene(0);
+        final long[] childWords = ((BitSetSubsetGene) child.getGene(0)).getWords();
+        SubsetOperators.crossover(subset.getWords(), ((BitSetSubsetGene) otherParent.getGene(0)).getWords(),
+                childWords, subset.size(), exclusive, random);
+        if (inheritParameters(child, parent, otherParent, random)) {
+            SubsetLineage.record(child, parent, subset.getWords(), childWords);
+        } else {
+            SubsetLineage.clear(child);
+        }
+        return child;
+    }
+
+    /**
+     * Inherit each parameter value of the child from either parent with equal probability.
+     *
+     * @return True when the child has the parameter values of parent.
+     */
+    private static boolean inheritParameters(final IChromosome child, final IChromosome parent,
+                                             final IChromosome otherParent, final RandomGenerator random) {
+        boolean sameParameters = true;
+        for (int geneIndex = 1; geneIndex < child.size(); geneIndex++) {
+            if (random.nextBoolean()) {
+                final Object allele = otherParent.getGene(geneIndex).getAllele();
+                sameParameters &= allele.equals(parent.getGene(geneIndex).getAllele());
+                child.getGene(geneIndex).setAllele(allele);
+            }
+        }
+        return sameParameters;
+    }
+
+    public int getCrossoverRate() {
+        return crossoverRate;
+    }
+
+    public int compareTo(final Object other) {
+        if (other == null) {
+            return 1;
+        }
+        final SubsetCrossoverOperator operator = (SubsetCrossoverOperator) other;
+        return crossoverRate < operator.crossoverRate ? -1 : (crossoverRate == operator.crossoverRate ? 0 : 1);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+
+/**
+ * The first gene of the chromosomes evolved by {@link OptimizeSubSet}, which holds the subset.
+ * Alleles are indices into the sorted array of all the elements of the set.
+ *
+ * @see SubsetSuperGene
+ * @see BitSetSubsetGene
+ */
+public interface SubsetGene {
+    /**
+     * @return Number of elements in the subset.
+     */
+    int size();
+
+    /**
+     * @return True when the gene holds exactly {@link #size()} distinct alleles.
+     */
+    boolean isValid();
+
+    IntSet getSubSet();
+
+    /**
+     * Copy the elements of the subset into the given array, in increasing order for a valid subset.
+     *
+     * @param elements Array with room for {@link #size()} elements.
+     */
+    void getSubSet(int[] elements);
+
+    /**
+     * Copy the alleles of the subset into the given array, in increasing order for a valid subset.
+     *
+     * @param alleles Array with room for {@link #size()} alleles.
+     */
+    void getAlleles(int[] alleles);
+
+    /**
+     * @param alleles The {@link #size()} alleles of the subset, in increasing order.
+     */
+    void setAlleles(int[] alleles);
+
+    /**
+     * @param allele An allele of the subset.
+     * @return The element the allele stands for.
+     */
+    int getElement(int allele);
+
+    /**
+     * @return The number of elements in the set from which the subset is chosen.
+     */
+    int getNumberOfElements();
+}
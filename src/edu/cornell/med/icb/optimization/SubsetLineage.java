@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.FitnessFunction;
+import org.jgap.IChromosome;
+
+/**
+ * Records how a chromosome was derived from an evaluated parent with the same parameter
+ * values. The subset operators store it as the application data of the chromosomes they
+ * create, and {@link FitnessFunctionAdapter} uses and clears it when the chromosome is
+ * evaluated with a {@link DeltaSubSetFitnessFunction}. The parent has the same size as the
+ * chromosome, except for the chromosomes seeded by {@link SubsetSizeOptimizer} from the
+ * solutions of a smaller subset size, which only have added elements.
+ */
+public final class SubsetLineage {
+    private final double parentFitness;
+    private final int[] removed;
+    private final int[] added;
+
+    private SubsetLineage(final double parentFitness, final int[] removed, final int[] added) {
+        this.parentFitness = parentFitness;
+        this.removed = removed;
+        this.added = added;
+    }
+
+    /**
+     * Set the lineage of a chromosome derived from a parent with the same parameter values.
+     * The lineage is cleared when the fitness of the parent is not known.
+     *
+     * @param child         The chromosome derived from parent.
+     * @param parent        The parent, with the same parameter values as the child.
+     * @param parentAlleles Sorted alleles of the subset of the parent.
+     * @param childAlleles  Sorted alleles of the subset of the child.
+     */
+    static void record(final IChromosome child, final IChromosome parent,
+                       final int[] parentAlleles, final int[] childAlleles) {
+        final double parentFitness = parent.getFitnessValueDirectly();
+        if (parentFitness == FitnessFunction.NO_FITNESS_VALUE || parentFitness < 0) {
+            child.setApplicationData(null);
+            return;
+        }
+        final SubsetGene subsetGene = (SubsetGene) parent.getGene(0);
+        final int k = parentAlleles.length;
+        int numDifferent = 0;
+        int i = 0;
+        int j = 0;
+        while (i < k && j < k) {
+            if (parentAlleles[i] == childAlleles[j]) {
+                i++;
+                j++;
+            } else if (parentAlleles[i] < childAlleles[j]) {
+                i++;
+                numDifferent++;
+            } else {
+                j++;
+            }
+        }
+        numDifferent += k - i;
+        final int[] removed = new int[numDifferent];
+        final int[] added = new int[numDifferent];
+        int numRemoved = 0;
+        int numAdded = 0;
+        i = 0;
+        j = 0;
+        while (i < k || j < k) {
+            if (j == k || (i < k && parentAlleles[i] < childAlleles[j])) {
+                removed[numRemoved++] = subsetGene.getElement(parentAlleles[i++]);
+            } else if (i == k || childAlleles[j] < parentAlleles[i]) {
+                added[numAdded++] = subsetGene.getElement(childAlleles[j++]);
+            } else {
+                i++;
+                j++;
+            }
+        }
+        child.setApplicationData(new SubsetLineage(parentFitness, removed, added));
+    }
+
+    /**
+     * Bitset version of {@link #record(IChromosome, IChromosome, int[], int[])}, for chromosomes
+     * made of a {@link BitSetSubsetGene}.
+     *
+     * @param child       The chromosome derived from parent.
+     * @param parent      The parent, with the same parameter values as the child.
+     * @param parentWords Bitset of the subset of the parent.
+     * @param childWords  Bitset of the subset of the child.
+     */
+    static void record(final IChromosome child, final IChromosome parent,
+                       final long[] parentWords, final long[] childWords) {
+        final double parentFitness = parent.getFitnessValueDirectly();
+        if (parentFitness == FitnessFunction.NO_FITNESS_VALUE || parentFitness < 0) {
+            child.setApplicationData(null);
+            return;
+        }
+        final SubsetGene subsetGene = (SubsetGene) parent.getGene(0);
+        int numDifferent = 0;
+        for (int w = 0; w < parentWords.length; w++) {
+            numDifferent += Long.bitCount(parentWords[w] & ~childWords[w]);
+        }
+        final int[] removed = new int[numDifferent];
+        final int[] added = new int[numDifferent];
+        int numRemoved = 0;
+        int numAdded = 0;
+        for (int w = 0; w < parentWords.length; w++) {
+            long bits = parentWords[w] & ~childWords[w];
+            while (bits != 0) {
+                removed[numRemoved++] = subsetGene.getElement((w << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+            bits = childWords[w] & ~parentWords[w];
+            while (bits != 0) {
+                added[numAdded++] = subsetGene.getElement((w << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        child.setApplicationData(new SubsetLineage(parentFitness, removed, added));
+    }
+
+    /**
+     * Set the lineage of a chromosome whose subset is that of an evaluated parent of a smaller
+     * size, with the same parameter values, plus the given elements.
+     *
+     * @param child         The chromosome derived from the parent.
+     * @param parentFitness Fitness of the parent.
+     * @param added         Elements of the child that are not in the parent, in increasing order.
+     */
+    static void recordAddition(final IChromosome child, final double parentFitness, final int[] added) {
+        if (parentFitness == FitnessFunction.NO_FITNESS_VALUE || parentFitness < 0) {
+            child.setApplicationData(null);
+            return;
+        }
+        child.setApplicationData(new SubsetLineage(parentFitness, new int[0], added));
+    }
+
+    /**
+     * Clear the lineage of a chromosome, for instance when its parameter values differ from
+     * those of its parent.
+     */
+    static void clear(final IChromosome chromosome) {
+        if (chromosome.getApplicationData() instanceof SubsetLineage) {
+            chromosome.setApplicationData(null);
+        }
+    }
+
+    public double getParentFitness() {
+        return parentFitness;
+    }
+
+    /**
+     * @return Elements of the parent that are not in the chromosome, in increasing order.
+     */
+    public int[] getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return Elements of the chromosome that are not in the parent, in increasing order.
+     */
+    public int[] getAdded() {
+        return added;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.BaseGeneticOperator;
+import org.jgap.Configuration;
+import org.jgap.Gene;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+import org.jgap.RandomGenerator;
+
+import java.util.List;
+
+/**
+ * Mutation for chromosomes made of a {@link SubsetGene} followed by parameter genes.
+ * Each element of the subset is swapped out, with probability 1/mutationRate, for an element
+ * that is not in the subset. Each parameter gene is set to a random value with the same
+ * probability, or moved by a Gaussian step for a {@link ContinuousParameterGene}. Mutated
+ * chromosomes always encode valid subsets. Mutants whose parameters are unchanged record
+ * their {@link SubsetLineage}.
+ */
+public class SubsetMutationOperator extends BaseGeneticOperator {
+    private final int mutationRate;
+
+    /**
+     * @param configuration The configuration this operator belongs to.
+     * @param mutationRate  The inverse of the probability that a given gene is mutated.
+     * @throws InvalidConfigurationException If the configuration is null.
+     */
+    public SubsetMutationOperator(final Configuration configuration, final int mutationRate)
+            throws InvalidConfigurationException {
+        super(configuration);
+        assert mutationRate > 0 : "mutation rate must be strictly positive";
+        this.mutationRate = mutationRate;
+    }
+
+    public void operate(final Population population, final List candidateChromosomes) {
+        final RandomGenerator random = getConfiguration().getRandomGenerator();
+        final int size = Math.min(getConfiguration().getPopulationSize(), population.size());
+        int[] alleles = null;
+        int[] parentAlleles = null;
+        long[] words = null;
+        for (int i = 0; i < size; i++) {
+            final IChromosome chromosome = population.getChromosome(i);
+            final SubsetGene subsetGene = (SubsetGene) chromosome.getGene(0);
+            final int numElements = subsetGene.getNumberOfElements();
+            IChromosome mutant = null;
+            if (subsetGene instanceof BitSetSubsetGene) {
+                final long[] parentWords = ((BitSetSubsetGene) subsetGene).getWords();
+                if (words == null) {
+                    words = new long[parentWords.length];
+                }
+                System.arraycopy(parentWords, 0, words, 0, words.length);
+                boolean subsetMutated = false;
+                for (int position = 0; position < subsetGene.size(); position++) {
+                    if (random.nextInt(mutationRate) == 0) {
+                        subsetMutated |= SubsetOperators.swap(words, position, subsetGene.size(), numElements,
+                                random) != -1;
+                    }
+                }
+                if (subsetMutated) {
+                    mutant = (IChromosome) chromosome.clone();
+                    mutant.getGene(0).setAllele(words);
+                    SubsetLineage.record(mutant, chromosome, parentWords, words);
+                }
+            } else {
+                if (alleles == null) {
+                    alleles = new int[subsetGene.size()];
+                    parentAlleles = new int[subsetGene.size()];
+                }
+                subsetGene.getAlleles(alleles);
+                System.arraycopy(alleles, 0, parentAlleles, 0, alleles.length);
+                boolean subsetMutated = false;
+                for (int position = 0; position < alleles.length; position++) {
+                    if (random.nextInt(mutationRate) == 0) {
+                        // swaps keep alleles sorted, so later positions may now hold shifted alleles.
+                        subsetMutated |= SubsetOperators.swap(alleles, position, numElements, random) != -1;
+                    }
+                }
+                if (subsetMutated) {
+                    mutant = (IChromosome) chromosome.clone();
+                    ((SubsetGene) mutant.getGene(0)).setAlleles(alleles);
+                    SubsetLineage.record(mutant, chromosome, parentAlleles, alleles);
+                }
+            }
+            for (int geneIndex = 1; geneIndex < chromosome.size(); geneIndex++) {
+                if (random.nextInt(mutationRate) == 0) {
+                    if (mutant == null) {
+                        mutant = (IChromosome) chromosome.clone();
+                    }
+                    final Gene parameterGene = mutant.getGene(geneIndex);
+                    if (parameterGene instanceof ContinuousParameterGene) {
+                        ((ContinuousParameterGene) parameterGene).mutate(random);
+                    } else {
+                        parameterGene.setToRandomValue(random);
+                    }
+                    SubsetLineage.clear(mutant);
+                }
+            }
+            if (mutant != null) {
+                candidateChromosomes.add(mutant);
+            }
+        }
+    }
+
+    public int getMutationRate() {
+        return mutationRate;
+    }
+
+    public int compareTo(final Object other) {
+        if (other == null) {
+            return 1;
+        }
+        final SubsetMutationOperator operator = (SubsetMutationOperator) other;
+        return mutationRate < operator.mutationRate ? -1 : (mutationRate == operator.mutationRate ? 0 : 1);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.RandomGenerator;
+
+import java.util.Arrays;
+
+/**
+ * Variation operators on subsets encoded as sorted arrays of distinct alleles in
+ * [0, numElements), or as bitsets where bit i of word i / 64 is set when allele i is in the
+ * subset. Each operator maps valid subsets to valid subsets. Given the same random
+ * numbers, the bitset operators produce the same subsets as the array operators.
+ */
+public final class SubsetOperators {
+    private SubsetOperators() {
+        super();
+    }
+
+    /**
+     * Replace the allele at the given position with an allele that is not in the subset,
+     * chosen uniformly, and restore increasing order. Has no effect when the subset already
+     * contains every element.
+     *
+     * @param alleles     Sorted alleles of the subset, modified in place.
+     * @param position    Position of the allele to swap out.
+     * @param numElements Number of elements in the set.
+     * @param random      Source of randomness.
+     * @return The allele that was swapped in, or -1 if the subset was not modified.
+     */
+    public static int swap(final int[] alleles, final int position, final int numElements,
+                           final RandomGenerator random) {
+        final int k = alleles.length;
+        if (k >= numElements) {
+            return -1;
+        }
+        // draw the rank of the new allele among the numElements - k alleles absent from the subset
+        int candidate = random.nextInt(numElements - k);
+        for (final int allele : alleles) {
+            if (allele <= candidate) {
+                candidate++;
+            } else {
+                break;
+            }
+        }
+        int index = position;
+        // shift neighbours over the removed allele until the new allele is in sorted position
+        while (index > 0 && alleles[index - 1] > candidate) {
+            alleles[index] = alleles[index - 1];
+            index--;
+        }
+        while (index < k - 1 && alleles[index + 1] < candidate) {
+            alleles[index] = alleles[index + 1];
+            index++;
+        }
+        alleles[index] = candidate;
+        return candidate;
+    }
+
+    /**
+     * Create a child subset from two parents. Alleles present in both parents are inherited;
+     * the remaining positions are filled with alleles sampled uniformly, without replacement,
+     * from those present in only one parent.
+     *
+     * @param parent1   Sorted alleles of the first parent.
+     * @param parent2   Sorted alleles of the second parent, of the same size.
+     * @param child     Receives the sorted alleles of the child.
+     * @param exclusive Scratch array with room for 2k alleles.
+     * @param random    Source of randomness.
+     */
+    public static void crossover(final int[] parent1, final int[] parent2, final int[] child,
+                                 final int[] exclusive, final RandomGenerator random) {
+        final int k = child.length;
+        int numShared = 0;
+        int numExclusive = 0;
+        int i = 0;
+        int j = 0;
+        while (i < k || j < k) {
+            if (j == k || (i < k && parent1[i] < parent2[j])) {
+                exclusive[numExclusive++] = parent1[i++];
+            } else if (i == k || parent2[j] < parent1[i]) {
+                exclusive[numExclusive++] = parent2[j++];
+            } else {
+                child[numShared++] = parent1[i];
+                i++;
+                j++;
+            }
+        }
+        // partial Fisher-Yates shuffle draws the alleles missing from the shared part
+        for (int position = numShared; position < k; position++) {
+            final int pick = position - numShared + random.nextInt(numExclusive - (position - numShared));
+            final int allele = exclusive[pick];
+            exclusive[pick] = exclusive[position - numShared];
+            child[position] = allele;
+        }
+        Arrays.sort(child);
+    }
+
+    /**
+     * Bitset version of {@link #swap(int[], int, int, RandomGenerator)}: replace the allele of
+     * the given rank in the subset with an allele that is not in the subset, chosen uniformly.
+     *
+     * @param words       Bitset of the subset, modified in place.
+     * @param position    Rank of the allele to swap out among the alleles of the subset.
+     * @param k           Number of alleles in the subset.
+     * @param numElements Number of elements in the set.
+     * @param random      Source of randomness.
+     * @return The allele that was swapped in, or -1 if the subset was not modified.
+     */
+    public static int swap(final long[] words, final int position, final int k, final int numElements,
+                           final RandomGenerator random) {
+        if (k >= numElements) {
+            return -1;
+        }
+        final int candidate = selectClear(words, random.nextInt(numElements - k));
+        final int removed = selectSet(words, position);
+        words[removed >>> 6] &= ~(1L << removed);
+        words[candidate >>> 6] |= 1L << candidate;
+        return candidate;
+    }
+
+    /**
+     * Bitset version of {@link #crossover(int[], int[], int[], int[], RandomGenerator)}. Alleles
+     * present in both parents are found with a bitwise and, those present in one parent only with an
+     * exclusive or.
+     *
+     * @param parent1   Bitset of the first parent.
+     * @param parent2   Bitset of the second parent, with the same number of alleles.
+     * @param child     Receives the bitset of the child.
+     * @param k         Number of alleles in each parent.
+     * @param exclusive Scratch array with room for 2k alleles.
+     * @param random    Source of randomness.
+     */
+    public static void crossover(final long[] parent1, final long[] parent2, final long[] child, final int k,
+                                 final int[] exclusive, final RandomGenerator random) {
+        int numShared = 0;
+        int numExclusive = 0;
+        for (int w = 0; w < child.length; w++) {
+            child[w] = parent1[w] & parent2[w];
+            numShared += Long.bitCount(child[w]);
+            long bits = parent1[w] ^ parent2[w];
+            while (bits != 0) {
+                exclusive[numExclusive++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        for (int drawn = 0; drawn < k - numShared; drawn++) {
+            final int pick = drawn + random.nextInt(numExclusive - drawn);
+            final int allele = exclusive[pick];
+            exclusive[pick] = exclusive[drawn];
+            child[allele >>> 6] |= 1L << allele;
+        }
+    }
+
+    /**
+     * @return The allele of the given rank among the alleles of the bitset.
+     */
+    static int selectSet(final long[] words, final int rank) {
+        int remaining = rank;
+        int w = 0;
+        int count = Long.bitCount(words[0]);
+        while (remaining >= count) {
+            remaining -= count;
+            count = Long.bitCount(words[++w]);
+        }
+        long bits = words[w];
+        for (int i = 0; i < remaining; i++) {
+            bits &= bits - 1;
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * @return The allele of the given rank among the alleles absent from the bitset. The rank
+     *         must be lower than the number of elements minus the number of alleles present.
+     */
+    private static int selectClear(final long[] words, final int rank) {
+        int remaining = rank;
+        int w = 0;
+        int count = Long.bitCount(~words[0]);
+        while (remaining >= count) {
+            remaining -= count;
+            count = Long.bitCount(~words[++w]);
+        }
+        long bits = ~words[w];
+        for (int i = 0; i < remaining; i++) {
+            bits &= bits - 1;
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(bits);
+    }
+}
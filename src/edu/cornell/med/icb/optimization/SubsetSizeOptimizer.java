@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.apache.log4j.Logger;
+import org.jgap.FitnessFunction;
+import org.jgap.Genotype;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the best subset for each size in a range, in a single pass. The sizes are optimized
+ * in increasing order, each with its own {@link OptimizeSubSet}. The initial population of
+ * each size is seeded with the fittest distinct solutions found for the previous size,
+ * extended with randomly chosen elements; the other chromosomes are random. The seeded
+ * chromosomes record their parent as a {@link SubsetLineage}, so that a
+ * {@link DeltaSubSetFitnessFunction} scores them from the fitness of the smaller subset
+ * instead of evaluating them from scratch. The result is the fittest solution of every size,
+ * from which a size/fitness curve can be drawn.
+ */
+public class SubsetSizeOptimizer {
+    private static final Logger LOG = Logger.getLogger(SubsetSizeOptimizer.class);
+    private static final int DEFAULT_POPULATION_SIZE = 1000;
+
+    private final int[] sizes;
+    private final OptimizeSubSet[] optimizers;
+    private final List<OptimizationResult> results = new ArrayList<OptimizationResult>();
+    private int numberOfSeeds;
+    private TwisterGenerator randomGenerator = new TwisterGenerator();
+
+    public SubsetSizeOptimizer(final IntSet set, final int minK, final int maxK,
+                               final SubSetFitnessFunction convergenceCriterion, final String... params)
+            throws InvalidConfigurationException {
+        this(set, minK, maxK, 1, convergenceCriterion, DEFAULT_POPULATION_SIZE, params);
+    }
+
+    /**
+     * Create an optimizer for the subset sizes minK, minK + stepK, ... up to maxK.
+     *
+     * @param set                  The set of elements from which subsets are chosen.
+     * @param minK                 Smallest subset size.
+     * @param maxK                 Largest subset size.
+     * @param stepK                Difference between two consecutive sizes.
+     * @param convergenceCriterion The fitness function, shared by all sizes.
+     * @param populationSize       Number of individuals in the population of each size.
+     * @param params               Parameter definitions, see {@link OptimizeSubSet}.
+     * @throws InvalidConfigurationException If an error occurs configuring an optimizer.
+     */
+    public SubsetSizeOptimizer(final IntSet set, final int minK, final int maxK, final int stepK,
+                               final SubSetFitnessFunction convergenceCriterion, final int populationSize,
+                               final String... params) throws InvalidConfigurationException {
+        assert minK > 0 && minK <= maxK && maxK <= set.size() : "invalid range of subset sizes";
+        assert stepK > 0 : "size step must be strictly positive";
+        sizes = new int[(maxK - minK) / stepK + 1];
+        optimizers = new OptimizeSubSet[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = minK + i * stepK;
+            optimizers[i] = new OptimizeSubSet(set, sizes[i], convergenceCriterion, populationSize, params);
+        }
+        numberOfSeeds = Math.max(1, populationSize / 10);
+        setRandomSeed(1);
+    }
+
+    /**
+     * Seed the random generators of the optimizers, and the generator that chooses the
+     * elements added to seeded solutions, with distinct values derived from the given seed.
+     *
+     * @param randomSeed The master seed.
+     */
+    public void setRandomSeed(final int randomSeed) {
+        final TwisterGenerator seeds = new TwisterGenerator(randomSeed);
+        for (final OptimizeSubSet optimizer : optimizers) {
+            optimizer.setRandomSeed(seeds.nextInt());
+        }
+        randomGenerator = new TwisterGenerator(seeds.nextInt());
+    }
+
+    /**
+     * @param numberOfSeeds Number of solutions of the previous size used to seed the population
+     *                      of the next size. Defaults to a tenth of the population.
+     */
+    public void setNumberOfSeeds(final int numberOfSeeds) {
+        assert numberOfSeeds >= 0 : "number of seeds must not be negative";
+        this.numberOfSeeds = numberOfSeeds;
+    }
+
+    /**
+     * @return The subset sizes optimized, in increasing order.
+     */
+    public int[] getSizes() {
+        return sizes.clone();
+    }
+
+    /**
+     * Access the optimizer of a subset size, for instance to configure its number of threads
+     * or fitness cache before optimization.
+     *
+     * @param k A subset size returned by {@link #getSizes()}.
+     * @return The optimizer of this size.
+     */
+    public OptimizeSubSet getOptimizer(final int k) {
+        return optimizers[indexOf(k)];
+    }
+
+    /**
+     * Optimize every subset size, smallest first. Each size stops as described by
+     * {@link OptimizeSubSet#optimize(int, double)}.
+     *
+     * @param numSteps         Maximum number of steps for each size.
+     * @param convergenceDelta convergence cost function convergenceCriterion
+     * @return True when the optimization of every size has converged, False otherwise.
+     * @throws InvalidConfigurationException If an error occurs configuring an optimizer.
+     */
+    public boolean optimize(final int numSteps, final double convergenceDelta) throws InvalidConfigurationException {
+        results.clear();
+        boolean converged = true;
+        List<IChromosome> seeds = null;
+        for (int i = 0; i < optimizers.length; i++) {
+            final OptimizeSubSet optimizer = optimizers[i];
+            final long start = System.currentTimeMillis();
+            optimizer.initializePopulation();
+            if (seeds != null) {
+                seed(optimizer.getGenotype(), seeds, optimizer.getAllElements(), sizes[i]);
+            }
+            final boolean sizeConverged = optimizer.evolvePopulation(numSteps, convergenceDelta);
+            converged &= sizeConverged;
+            results.add(new OptimizationResult("k=" + sizes[i], optimizer, sizeConverged,
+                    System.currentTimeMillis() - start));
+            LOG.info("k=" + sizes[i] + " fitness " + optimizer.getFitestFunctionValue()
+                    + " delta evaluations " + optimizer.getNumberOfDeltaEvaluations());
+            seeds = selectSeeds(optimizer.getGenotype());
+        }
+        return converged;
+    }
+
+    /**
+     * @return The fittest distinct chromosomes of a population, fittest first.
+     */
+    private List<IChromosome> selectSeeds(final Genotype genotype) {
+        final List fittest = genotype.getFittestChromosomes(genotype.getPopulation().size());
+        final List<IChromosome> selected = new ArrayList<IChromosome>(numberOfSeeds);
+        final List<int[]> solutions = new ArrayList<int[]>(numberOfSeeds);
+        for (int c = 0; c < fittest.size() && selected.size() < numberOfSeeds; c++) {
+            final IChromosome chromosome = (IChromosome) fittest.get(c);
+            final SubsetGene subsetGene = (SubsetGene) chromosome.getGene(0);
+            if (!subsetGene.isValid()) {
+                continue;
+            }
+            final int[] solution = new int[subsetGene.size() + chromosome.size() - 1];
+            FitnessFunctionAdapter.encodeSolution(chromosome, solution);
+            boolean duplicate = false;
+            for (final int[] other : solutions) {
+                duplicate |= Arrays.equals(other, solution);
+            }
+            if (!duplicate) {
+                selected.add(chromosome);
+                solutions.add(solution);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Overwrite the first chromosomes of a random population with the seeds, extended to k
+     * elements. The random population has not been evaluated, so the chromosomes overwritten
+     * carry no information.
+     */
+    private void seed(final Genotype genotype, final List<IChromosome> seeds, final int[] allElements,
+                      final int k) {
+        final Population population = genotype.getPopulation();
+        final boolean[] inSubset = new boolean[allElements.length];
+        final int count = Math.min(seeds.size(), population.size());
+        for (int s = 0; s < count; s++) {
+            final IChromosome parent = seeds.get(s);
+            final SubsetGene parentGene = (SubsetGene) parent.getGene(0);
+            final int parentSize = parentGene.size();
+            final int[] solution = new int[k + parent.size() - 1];
+            final int[] parentSolution = new int[parentSize + parent.size() - 1];
+            FitnessFunctionAdapter.encodeSolution(parent, parentSolution);
+            Arrays.fill(inSubset, false);
+            for (int i = 0; i < parentSize; i++) {
+                inSubset[parentSolution[i]] = true;
+            }
+            // draw the missing elements among those not already in the subset:
+            final IntList addedAlleles = new IntArrayList();
+            while (addedAlleles.size() < k - parentSize) {
+                final int allele = randomGenerator.nextInt(allElements.length);
+                if (!inSubset[allele]) {
+                    inSubset[allele] = true;
+                    addedAlleles.add(allele);
+                }
+            }
+            int index = 0;
+            for (int allele = 0; allele < allElements.length; allele++) {
+                if (inSubset[allele]) {
+                    solution[index++] = allele;
+                }
+            }
+            System.arraycopy(parentSolution, parentSize, solution, k, parent.size() - 1);
+            final int[] added = new int[addedAlleles.size()];
+            for (int a = 0; a < added.length; a++) {
+                added[a] = allElements[addedAlleles.getInt(a)];
+            }
+            Arrays.sort(added);
+
+            final IChromosome chromosome = population.getChromosome(s);
+            FitnessFunctionAdapter.decodeSolution(chromosome, solution);
+            chromosome.setFitnessValueDirectly(FitnessFunction.NO_FITNESS_VALUE);
+            SubsetLineage.recordAddition(chromosome, parent.getFitnessValueDirectly(), added);
+        }
+    }
+
+    /**
+     * @return The result of each subset size of the last optimization, smallest size first.
+     */
+    public List<OptimizationResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @param k A subset size returned by {@link #getSizes()}.
+     * @return The result of this size in the last optimization.
+     */
+    public OptimizationResult getResult(final int k) {
+        return results.get(indexOf(k));
+    }
+
+    /**
+     * @return Total number of solutions evaluated over all sizes.
+     */
+    public long getNumberOfEvaluations() {
+        long evaluations = 0;
+        for (final OptimizeSubSet optimizer : optimizers) {
+            evaluations += optimizer.getNumberOfEvaluations();
+        }
+        return evaluations;
+    }
+
+    /**
+     * @return Number of seeded solutions scored from the fitness of a smaller subset, or of
+     *         children scored from their parent, over all sizes.
+     */
+    public long getNumberOfDeltaEvaluations() {
+        long evaluations = 0;
+        for (final OptimizeSubSet optimizer : optimizers) {
+            evaluations += optimizer.getNumberOfDeltaEvaluations();
+        }
+        return evaluations;
+    }
+
+    private int indexOf(final int k) {
+        final int index = Arrays.binarySearch(sizes, k);
+        assert index >= 0 : "subset size " + k + " is not optimized by this optimizer";
+        return index;
+    }
+}
@@ -18,65 +18,61 @@
 
 package edu.cornell.med.icb.optimization;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntArraySet;
-import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.lang.MutableString;
 import org.jgap.Configuration;
 import org.jgap.Gene;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.RandomGenerator;
+import org.jgap.impl.IntegerGene;
 import org.jgap.supergenes.AbstractSupergene;
 import org.jgap.supergenes.Supergene;
 
-import java.util.Collections;
+import java.util.Arrays;
 /**
  * @author Fabien Campagne
  *         Date: Oct 10, 2007
  *         Time: 4:34:43 PM
  */
-public class SubsetSuperGene extends AbstractSupergene {
-    IntSet subset;
+public class SubsetSuperGene extends AbstractSupergene implements SubsetGene {
     private int[] allElements;
 
     public SubsetSuperGene() throws InvalidConfigurationException {
-        this.subset = new IntArraySet();
+        super();
     }
 
     public SubsetSuperGene(final Configuration configuration) throws InvalidConfigurationException {
         super(configuration);
-        this.subset = new IntArraySet();
     }
 
     public SubsetSuperGene(final Configuration configuration, final Gene[] subsetGenes) throws InvalidConfigurationException {
         super(configuration, subsetGenes);
-        this.subset = new IntArraySet();
     }
 
     public SubsetSuperGene(final Configuration configuration, final Gene[] subsetGenes, final int[] allElements) throws InvalidConfigurationException {
         super(configuration, subsetGenes);
-        this.subset = new IntArraySet();
         this.allElements = allElements;
     }
 
 
+    /**
+     * A subset is valid when its alleles are in strictly increasing order. This avoids considering
+     * order permutations of the same subset, and also guarantees that no element is duplicated.
+     * This method keeps no state and can be called concurrently.
+     */
     @Override
-    public synchronized boolean isValid(final Gene[] genes, final Supergene supergene) {
-        subset.clear();
+    public boolean isValid(final Gene[] genes, final Supergene supergene) {
         int previous = -1;
         for (final Gene gene : genes) {
-            final int element = (Integer) gene.getAllele();
-
+            final int element = ((IntegerGene) gene).intValue();
             if (element <= previous) {
-                // force increasing order of element to avoid considering order permutations
                 return false;
             }
-            subset.add(element);
             previous = element;
         }
-        // valid solutions have no duplicate elements.
-        return subset.size() == genes.length;
+        return true;
     }
 
     @Override
@@ -96,6 +92,59 @@ public class SubsetSuperGene extends AbstractSupergene {
         return result;
     }
 
+    /**
+     * Copy the elements of the subset into the given array, without allocating. Elements
+     * are in increasing order when the gene is valid and the set of all elements is sorted.
+     *
+     * @param elements Array with room for {@link #size()} elements.
+     */
+    public void getSubSet(final int[] elements) {
+        final Gene[] genes = getGenes();
+        for (int i = 0; i < genes.length; i++) {
+            elements[i] = allElements[((IntegerGene) genes[i]).intValue()];
+        }
+    }
+
+    /**
+     * Copy the alleles of the subset genes into the given array. Alleles are indices into the
+     * set of all elements.
+     *
+     * @param alleles Array with room for {@link #size()} alleles.
+     */
+    public void getAlleles(final int[] alleles) {
+        final Gene[] genes = getGenes();
+        for (int i = 0; i < genes.length; i++) {
+            alleles[i] = ((IntegerGene) genes[i]).intValue();
+        }
+    }
+
+    /**
+     * Set the alleles of the subset genes.
+     *
+     * @param alleles One allele per subset gene, in increasing order for a valid subset.
+     */
+    public void setAlleles(final int[] alleles) {
+        final Gene[] genes = getGenes();
+        for (int i = 0; i < genes.length; i++) {
+            genes[i].setAllele(alleles[i]);
+        }
+    }
+
+    /**
+     * @param allele An allele of the subset genes.
+     * @return The element the allele stands for.
+     */
+    public int getElement(final int allele) {
+        return allElements[allele];
+    }
+
+    /**
+     * @return The number of elements in the set from which the subset is chosen.
+     */
+    public int getNumberOfElements() {
+        return allElements.length;
+    }
+
     @Override
     public String toString() {
         final MutableString result = new MutableString();
@@ -108,27 +157,33 @@ public class SubsetSuperGene extends AbstractSupergene {
         return result.toString();
     }
 
+    /**
+     * Draw k distinct alleles within the bounds of the subset genes with Floyd's algorithm,
+     * which needs exactly k random numbers, and store them in increasing order. The subsets
+     * are uniform when the bounded integers of the generator are, as those of a
+     * {@link SplittableGenerator}; a {@link TwisterGenerator} favours some subsets.
+     */
     @Override
     public void setToRandomValue(final RandomGenerator a_numberGenerator) {
-
-        final IntList sortedSubSet = new IntArrayList();
         final Gene[] m_genes = getGenes();
-        for (int i = 0; i < m_genes.length; i++) {
-            int value = -1;
-            do {
-                m_genes[i].setToRandomValue(a_numberGenerator);
-                value = (Integer) m_genes[i].getAllele();
-            } while (sortedSubSet.contains(value));
-            sortedSubSet.add(value);
-        }
-        Collections.sort(sortedSubSet);
-        // set all to random value first
-
-        for (int i = 0; i < m_genes.length; i++) {
-            m_genes[i].setAllele(sortedSubSet.get(i));
+        final int k = m_genes.length;
+        if (k == 0) {
+            return;
         }
-        if (!isValid()) {
-            throw new InternalError("Supergene content must be compatible with valid method");
+        final int lowerBound = ((IntegerGene) m_genes[0]).getLowerBounds();
+        final int numAlleles = ((IntegerGene) m_genes[0]).getUpperBounds() - lowerBound + 1;
+        final IntOpenHashSet drawn = new IntOpenHashSet(k);
+        final int[] alleles = new int[k];
+        int index = 0;
+        for (int j = numAlleles - k; j < numAlleles; j++) {
+            final int t = a_numberGenerator.nextInt(j + 1);
+            // j was never drawn before, t may have been:
+            final int allele = drawn.add(t) ? t : j;
+            drawn.add(allele);
+            alleles[index++] = lowerBound + allele;
         }
+        Arrays.sort(alleles);
+        setAlleles(alleles);
+        assert isValid() : "Supergene content must be compatible with valid method";
     }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.cornell.med.icb.optimization;
+
+import org.jgap.IChromosome;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A cheap linear model of fitness, used to skip the evaluation of offspring that are unlikely
+ * to compete with the rest of the population. The model predicts the fitness of a solution as
+ * a bias plus one weight for each element in the subset and one weight for the index of the
+ * value of each parameter. It learns from the solutions evaluated so far, and is refitted
+ * every few generations by normalized least mean squares over the most recent samples.
+ * Once fitted, it ranks the unevaluated offspring of each generation, and only the predicted
+ * best fraction is evaluated. The other offspring keep the fitness
+ * {@link org.jgap.FitnessFunction#NO_FITNESS_VALUE}, as chromosomes left unevaluated at a
+ * deadline: they rank below the evaluated chromosomes, are never used as parents of a delta
+ * evaluation, and are screened again if they survive to the next generation. The state of
+ * the model is saved in checkpoints, see {@link #writeState(ByteBuffer)}.
+ *
+ * @see OptimizeSubSet#setSurrogateScreening(double, int)
+ */
+public class SurrogateModel {
+    /**
+     * Maximum number of evaluated solutions kept to fit the model.
+     */
+    private static final int MAX_SAMPLES = 8192;
+    private static final int EPOCHS = 5;
+    private static final double LEARNING_RATE = 0.5;
+
+    private final double evaluatedFraction;
+    private final int refreshInterval;
+    private final int[] parameterOffsets;
+    private final double[] weights;
+    private double bias;
+    private boolean fitted;
+
+    private final int[][] samples = new int[MAX_SAMPLES][];
+    private final double[] targets = new double[MAX_SAMPLES];
+    private int numberOfSamples;
+    private int nextSample;
+    private int generationsSinceRefresh;
+
+    private long numberOfScreened;
+    private long numberOfSkipped;
+
+    /**
+     * @param numberOfElements          Number of elements in the set the subsets are chosen from.
+     * @param numberOfParameterValues   Number of values of each parameter.
+     * @param evaluatedFraction         Fraction of the unevaluated offspring of a generation
+     *                                  that is evaluated, the best predicted first.
+     * @param refreshInterval           Number of generations between two fits of the model.
+     */
+    public SurrogateModel(final int numberOfElements, final int[] numberOfParameterValues,
+                          final double evaluatedFraction, final int refreshInterval) {
+        assert evaluatedFraction > 0 && evaluatedFraction <= 1 : "evaluated fraction must be in (0, 1]";
+        assert refreshInterval > 0 : "refresh interval must be strictly positive";
+        this.evaluatedFraction = evaluatedFraction;
+        this.refreshInterval = refreshInterval;
+        parameterOffsets = new int[numberOfParameterValues.length];
+        int numberOfFeatures = numberOfElements;
+        for (int paramIndex = 0; paramIndex < numberOfParameterValues.length; paramIndex++) {
+            parameterOffsets[paramIndex] = numberOfFeatures;
+            numberOfFeatures += numberOfParameterValues[paramIndex];
+        }
+        weights = new double[numberOfFeatures];
+    }
+
+    /**
+     * Select the chromosomes worth evaluating. Until the model is first fitted, all of them are.
+     * The chromosomes that are not selected are left unevaluated, and forget the parent they
+     * were bred from, see {@link SubsetLineage#clear(IChromosome)}.
+     *
+     * @param unevaluated Chromosomes whose fitness is not known.
+     * @return The chromosomes to evaluate.
+     */
+    public synchronized List<IChromosome> screen(final List<IChromosome> unevaluated) {
+        if (!fitted || unevaluated.isEmpty()) {
+            return unevaluated;
+        }
+        final int size = unevaluated.size();
+        final int numberToEvaluate = Math.max(1, (int) Math.ceil(evaluatedFraction * size));
+        numberOfScreened += size;
+        if (numberToEvaluate >= size) {
+            return unevaluated;
+        }
+        final double[] predictions = new double[size];
+        final Integer[] order = new Integer[size];
+        int[] solution = null;
+        for (int c = 0; c < size; c++) {
+            final IChromosome chromosome = unevaluated.get(c);
+            if (solution == null) {
+                solution = new int[chromosome.getGene(0).size() + chromosome.size() - 1];
+            }
+            FitnessFunctionAdapter.encodeSolution(chromosome, solution);
+            predictions[c] = predict(solution);
+            order[c] = c;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(final Integer first, final Integer second) {
+                return Double.compare(predictions[second], predictions[first]);
+            }
+        });
+        final List<IChromosome> selected = new ArrayList<IChromosome>(numberToEvaluate);
+        for (int rank = 0; rank < size; rank++) {
+            final IChromosome chromosome = unevaluated.get(order[rank]);
+            if (rank < numberToEvaluate) {
+                selected.add(chromosome);
+            } else {
+                SubsetLineage.clear(chromosome);
+            }
+        }
+        numberOfSkipped += size - numberToEvaluate;
+        return selected;
+    }
+
+    /**
+     * Record the fitness of evaluated chromosomes, and refit the model when a refresh is due.
+     * Called once per generation. Chromosomes that were left unevaluated, at a deadline, are
+     * ignored.
+     *
+     * @param evaluated Chromosomes whose fitness was just evaluated.
+     */
+    public synchronized void learn(final List<IChromosome> evaluated) {
+        for (final IChromosome chromosome : evaluated) {
+            if (chromosome.getFitnessValueDirectly() < 0) {
+                continue;
+            }
+            final int[] solution = FitnessFunctionAdapter.encodeSolution(chromosome);
+            samples[nextSample] = solution;
+            targets[nextSample] = chromosome.getFitnessValueDirectly();
+            nextSample = (nextSample + 1) % MAX_SAMPLES;
+            numberOfSamples = Math.min(numberOfSamples + 1, MAX_SAMPLES);
+        }
+        if (++generationsSinceRefresh >= refreshInterval && numberOfSamples > 0) {
+            fit();
+            generationsSinceRefresh = 0;
+        }
+    }
+
+    private void fit() {
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            for (int s = 0; s < numberOfSamples; s++) {
+                final int[] solution = samples[s];
+                final int subsetSize = solution.length - parameterOffsets.length;
+                // every solution has the same number of features, plus the bias:
+                final double step = LEARNING_RATE * (targets[s] - predict(solution)) / (solution.length + 1);
+                bias += step;
+                for (int i = 0; i < subsetSize; i++) {
+                    weights[solution[i]] += step;
+                }
+                for (int paramIndex = 0; paramIndex < parameterOffsets.length; paramIndex++) {
+                    weights[parameterOffsets[paramIndex] + solution[subsetSize + paramIndex]] += step;
+                }
+            }
+        }
+        fitted = true;
+    }
+
+    /**
+     * @param solution Solution encoded by {@link FitnessFunctionAdapter#encodeSolution(IChromosome)}.
+     * @return The predicted fitness of the solution.
+     */
+    synchronized double predict(final int[] solution) {
+        final int subsetSize = solution.length - parameterOffsets.length;
+        double prediction = bias;
+        for (int i = 0; i < subsetSize; i++) {
+            prediction += weights[solution[i]];
+        }
+        for (int paramIndex = 0; paramIndex < parameterOffsets.length; paramIndex++) {
+            prediction += weights[parameterOffsets[paramIndex] + solution[subsetSize + paramIndex]];
+        }
+        return prediction;
+    }
+
+    /**
+     * @return Number of bytes written by {@link #writeState(ByteBuffer)}.
+     */
+    synchronized int getStateSize() {
+        final int rowLength = numberOfSamples == 0 ? 0 : samples[0].length;
+        return 8 + 4 + 4 + 8 * weights.length + 3 * 4 + 2 * 8 + 4 + numberOfSamples * (4 * rowLength + 8);
+    }
+
+    /**
+     * Write the learned state of the model: bias, weights, counters and the samples kept to fit
+     * it. The fraction evaluated and the refresh interval are settings of the optimizer, and
+     * are not written.
+     *
+     * @param buffer Buffer with at least {@link #getStateSize()} bytes remaining.
+     */
+    synchronized void writeState(final ByteBuffer buffer) {
+        buffer.putDouble(bias).putInt(fitted ? 1 : 0);
+        buffer.putInt(weights.length);
+        for (final double weight : weights) {
+            buffer.putDouble(weight);
+        }
+        buffer.putInt(numberOfSamples).putInt(nextSample).putInt(generationsSinceRefresh);
+        buffer.putLong(numberOfScreened).putLong(numberOfSkipped);
+        final int rowLength = numberOfSamples == 0 ? 0 : samples[0].length;
+        buffer.putInt(rowLength);
+        for (int s = 0; s < numberOfSamples; s++) {
+            for (final int value : samples[s]) {
+                buffer.putInt(value);
+            }
+            buffer.putDouble(targets[s]);
+        }
+    }
+
+    /**
+     * Restore a state written by {@link #writeState(ByteBuffer)}.
+     *
+     * @param buffer Buffer positioned at the start of the state.
+     * @throws IOException If the state was written by a model with a different number of
+     *                     features.
+     */
+    synchronized void readState(final ByteBuffer buffer) throws IOException {
+        final double savedBias = buffer.getDouble();
+        final boolean savedFitted = buffer.getInt() != 0;
+        if (buffer.getInt() != weights.length) {
+            throw new IOException("The surrogate model was saved for a different set or parameter definitions.");
+        }
+        bias = savedBias;
+        fitted = savedFitted;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = buffer.getDouble();
+        }
+        numberOfSamples = buffer.getInt();
+        nextSample = buffer.getInt();
+        generationsSinceRefresh = buffer.getInt();
+        numberOfScreened = buffer.getLong();
+        numberOfSkipped = buffer.getLong();
+        final int rowLength = buffer.getInt();
+        Arrays.fill(samples, null);
+        for (int s = 0; s < numberOfSamples; s++) {
+            final int[] solution = new int[rowLength];
+            for (int i = 0; i < rowLength; i++) {
+                solution[i] = buffer.getInt();
+            }
+            samples[s] = solution;
+            targets[s] = buffer.getDouble();
+        }
+    }
+
+    /**
+     * @return Number of unevaluated chromosomes ranked by the fitted model.
+     */
+    public synchronized long getNumberOfScreened() {
+        return numberOfScreened;
+    }
+
+    /**
+     * @return Number of chromosomes whose evaluation was skipped.
+     */
+    public synchronized long getNumberOfSkipped() {
+        return numberOfSkipped;
+    }
+
+    /**
+     * @return Fraction of the screened chromosomes whose evaluation was skipped.
+     */
+    public synchronized double getSkipRate() {
+        return numberOfScreened == 0 ? 0 : (double) numberOfSkipped / numberOfScreened;
+    }
+}
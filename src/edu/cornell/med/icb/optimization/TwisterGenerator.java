@@ -42,6 +42,11 @@ public class TwisterGenerator extends MersenneTwister implements RandomGenerator
         super(seed);
     }
 
+    /**
+     * Note that 0 and ceiling - 1 are drawn half as often as the other values. The
+     * distribution is kept so that runs remain reproducible; use {@link SplittableGenerator}
+     * for unbiased bounded integers.
+     */
     public int nextInt(final int ceiling) {
         return (int) Math.round(nextDouble() * (ceiling - 1));
     }
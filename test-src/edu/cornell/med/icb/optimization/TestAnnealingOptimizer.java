@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import junit.framework.TestCase;
+import org.jgap.InvalidConfigurationException;
+
+public class TestAnnealingOptimizer extends TestCase {
+    private static IntSet range(final int n) {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= n; ++i) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    private final SubSetFitnessFunction largestCriterion = new AbstractSubSetFitnessFunction() {
+        @Override
+        public double evaluate(final IntSet subset) {
+            int sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum;
+        }
+    };
+
+    public void testSubSetLargest100() {
+        final AnnealingOptimizer optimizer = new AnnealingOptimizer(range(100), 3, largestCriterion);
+        optimizer.setRandomSeed(1);
+        optimizer.optimize(200000, 0.001);
+        assertEquals(100d + 99 + 98, optimizer.getFitestFunctionValue());
+        assertTrue(optimizer.getFitestSubset().contains(100));
+        assertEquals(0, optimizer.getFitestParameterValues().length);
+        assertTrue(optimizer.getNumberOfEvaluations() <= 200000 + 100);
+    }
+
+    public void testLocalSearchLargest2000() {
+        final AnnealingOptimizer optimizer = new AnnealingOptimizer(range(2000), 3, largestCriterion);
+        optimizer.setTemperature(0, 1);
+        optimizer.setRandomSeed(1);
+        optimizer.optimize(500000, 0.001);
+        assertEquals(2000d + 1999 + 1998, optimizer.getFitestFunctionValue());
+    }
+
+    public void testParametersWithGaps() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet(new int[]{1, 74, 87, 900, 2, 61});
+        final SubSetFitnessFunction criterion = new AbstractSubSetFitnessFunction() {
+            @Override
+            public double evaluate(final IntSet subset, final double... paramValues) {
+                assertEquals(2, paramValues.length);
+                double sum = 100;
+                for (final int element : subset) {
+                    sum += element * paramValues[0] - paramValues[1];
+                }
+                return sum;
+            }
+        };
+        final SubSetOptimizer optimizer = new AnnealingOptimizer(set, 3, criterion,
+                "alpha=1,2,3,4,0.5,0.1", "beta=1,2,0,3,4,0.5");
+        optimizer.setRandomSeed(1);
+        optimizer.optimize(10000, 0.001);
+        assertEquals(new IntArraySet(new int[]{74, 87, 900}), optimizer.getFitestSubset());
+        assertEquals(4d, optimizer.getFitestParameterValues()[0]);
+        assertEquals(0d, optimizer.getFitestParameterValues()[1]);
+        assertEquals(100d + 4 * (74 + 87 + 900), optimizer.getFitestFunctionValue());
+    }
+
+    public void testContinuousParameter() {
+        final SubSetFitnessFunction criterion = new AbstractSubSetFitnessFunction() {
+            @Override
+            public double evaluate(final IntSet subset, final double... paramValues) {
+                final double distance = Math.log(paramValues[0] / 0.37);
+                int sum = 0;
+                for (final int element : subset) {
+                    sum += element;
+                }
+                return sum * Math.exp(-distance * distance);
+            }
+        };
+        final AnnealingOptimizer optimizer = new AnnealingOptimizer(range(20), 3, criterion, "alpha=0.01:10:log");
+        optimizer.setRandomSeed(1);
+        optimizer.optimize(20000, 0.00001);
+        assertEquals(new IntArraySet(new int[]{18, 19, 20}), optimizer.getFitestSubset());
+        assertEquals(0.37, optimizer.getFitestParameterValues()[0], 0.37 * 0.02);
+        assertEquals(57, optimizer.getFitestFunctionValue(), 57 * 0.001);
+    }
+
+    public void testLocalSearchWithDeltaEvaluation() {
+        final int[] numberOfDeltaEvaluations = new int[1];
+        final DeltaSubSetFitnessFunction criterion = new DeltaCriterion(numberOfDeltaEvaluations);
+        final AnnealingOptimizer optimizer = new AnnealingOptimizer(range(100), 5, criterion);
+        optimizer.setTemperature(0, 1);
+        optimizer.setRandomSeed(2);
+        assertTrue(optimizer.optimize(20000, 0.001));
+        assertEquals(100d + 99 + 98 + 97 + 96, optimizer.getFitestFunctionValue());
+        assertEquals(optimizer.getNumberOfEvaluations() - 1, numberOfDeltaEvaluations[0]);
+    }
+
+    public void testReproducible() {
+        final double[] fitness = new double[2];
+        final IntSet[] subsets = new IntSet[2];
+        for (int run = 0; run < 2; run++) {
+            final AnnealingOptimizer optimizer = new AnnealingOptimizer(range(500), 10, largestCriterion);
+            optimizer.setRandomSeed(7);
+            optimizer.optimize(2000, 0.001);
+            fitness[run] = optimizer.getFitestFunctionValue();
+            subsets[run] = optimizer.getFitestSubset();
+        }
+        assertEquals(fitness[0], fitness[1]);
+        assertEquals(subsets[0], subsets[1]);
+    }
+
+    private static final class DeltaCriterion extends AbstractArraySubSetFitnessFunction
+            implements DeltaSubSetFitnessFunction {
+        private final int[] numberOfDeltaEvaluations;
+
+        private DeltaCriterion(final int[] numberOfDeltaEvaluations) {
+            this.numberOfDeltaEvaluations = numberOfDeltaEvaluations;
+        }
+
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum;
+        }
+
+        public double evaluate(final int[] subset, final double[] paramValues, final double parentFitness,
+                               final int[] removed, final int[] added) {
+            numberOfDeltaEvaluations[0]++;
+            final double fitness = parentFitness + added[0] - removed[0];
+            assertEquals(evaluate(subset, paramValues), fitness);
+            return fitness;
+        }
+    }
+}
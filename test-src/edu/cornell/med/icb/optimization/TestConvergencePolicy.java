@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import junit.framework.TestCase;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+
+public class TestConvergencePolicy extends TestCase {
+    private static class SumCriterion extends AbstractArraySubSetFitnessFunction {
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum;
+        }
+    }
+
+    private static IntSet range(final int n) {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= n; ++i) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    public void testPatience() {
+        final ConvergencePolicy policy = new PatienceConvergencePolicy(3, 1);
+        assertFalse(policy.isStagnant(0, 10, null));
+        assertFalse(policy.isStagnant(1, 10.5, null));
+        assertFalse(policy.isStagnant(2, 10.9, null));
+        // 11 - 10 counts as an improvement, although no single step was larger than 1
+        assertFalse(policy.isStagnant(3, 11, null));
+        assertFalse(policy.isStagnant(5, 11, null));
+        assertTrue(policy.isStagnant(6, 11, null));
+        policy.reset();
+        assertFalse(policy.isStagnant(7, 11, null));
+    }
+
+    public void testImprovementRate() {
+        final ConvergencePolicy policy = new ImprovementRateConvergencePolicy(2, 0.01);
+        assertFalse(policy.isStagnant(0, 100, null));
+        assertFalse(policy.isStagnant(1, 110, null));
+        // 10% over two generations
+        assertFalse(policy.isStagnant(2, 110, null));
+        // 1% over two generations is 0.5% per generation
+        assertTrue(policy.isStagnant(3, 111, null));
+        policy.reset();
+        assertFalse(policy.isStagnant(4, 111, null));
+    }
+
+    public void testAnyPolicySeesEveryGeneration() {
+        final ConvergencePolicy patience = new PatienceConvergencePolicy(2, 0);
+        final ConvergencePolicy policy = new AnyConvergencePolicy(new PatienceConvergencePolicy(1, 0), patience);
+        assertFalse(policy.isStagnant(0, 1, null));
+        assertTrue(policy.isStagnant(1, 1, null));
+        assertTrue(policy.isStagnant(2, 1, null));
+        assertTrue(patience.isStagnant(3, 1, null));
+    }
+
+    public void testDiversity() throws InvalidConfigurationException {
+        final OptimizeSubSet optimizer = new OptimizeSubSet(range(100), 3, new SumCriterion(), 200);
+        optimizer.setRandomSeed(1);
+        optimizer.initializePopulation();
+        final Population population = optimizer.getGenotype().getPopulation();
+        assertTrue(DiversityConvergencePolicy.getDiversity(population) > 0.95);
+
+        final IChromosome first = population.getChromosome(0);
+        for (int i = 0; i < population.size() / 2; i++) {
+            population.setChromosome(i, (IChromosome) first.clone());
+        }
+        final DiversityConvergencePolicy policy = new DiversityConvergencePolicy(0.6);
+        assertTrue(policy.isStagnant(0, 0, population));
+        assertEquals(0.5, policy.getDiversity(), 0.01);
+    }
+
+    public void testRestart() throws InvalidConfigurationException {
+        final OptimizeSubSet optimizer = new OptimizeSubSet(range(100), 3, new SumCriterion(), 200);
+        optimizer.setRandomSeed(1);
+        optimizer.setConvergencePolicy(new PatienceConvergencePolicy(50, 0.001));
+        optimizer.setRestartOnStagnation(2, 0.1);
+        assertTrue(optimizer.optimize(100000, 0.001));
+        assertEquals(2, optimizer.getNumberOfRestarts());
+        assertEquals(100.0 + 99 + 98, optimizer.getFitestFunctionValue());
+        assertTrue(optimizer.getNumberOfIterationsPerformed() < 10000);
+    }
+}
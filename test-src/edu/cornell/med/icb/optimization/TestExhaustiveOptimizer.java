@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import junit.framework.TestCase;
+import org.jgap.InvalidConfigurationException;
+
+import java.util.Arrays;
+
+public class TestExhaustiveOptimizer extends TestCase {
+    private static IntSet range(final int n) {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= n; ++i) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    /**
+     * Sum of the elements, with the bound of a sum completed by the largest candidates.
+     */
+    private static final class SumCriterion extends AbstractArraySubSetFitnessFunction
+            implements BoundedSubSetFitnessFunction {
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum;
+        }
+
+        public double getUpperBound(final int[] partial, final int partialSize, final int k, final int[] candidates,
+                                    final int firstCandidate, final double[] paramValues) {
+            double sum = 0;
+            for (int i = 0; i < partialSize; i++) {
+                sum += partial[i];
+            }
+            for (int i = candidates.length - (k - partialSize); i < candidates.length; i++) {
+                sum += candidates[i];
+            }
+            return sum;
+        }
+    }
+
+    public void testCombinations() {
+        assertEquals(161700, Combinations.binomial(100, 3));
+        assertEquals(1, Combinations.binomial(5, 0));
+        assertEquals(0, Combinations.binomial(3, 5));
+        assertEquals(Long.MAX_VALUE, Combinations.binomial(2000, 1000));
+        final int[] combination = {0, 1, 2};
+        final int[] unranked = new int[3];
+        long rank = 0;
+        do {
+            assertEquals(rank, Combinations.rank(combination));
+            Combinations.unrank(rank, 7, unranked);
+            assertTrue(Arrays.equals(combination, unranked));
+            rank++;
+        } while (Combinations.next(combination, 7));
+        assertEquals(Combinations.binomial(7, 3), rank);
+        assertTrue(Arrays.equals(new int[]{4, 5, 6}, combination));
+    }
+
+    public void testSubSetLargest100() {
+        final SubSetFitnessFunction criterion = new AbstractSubSetFitnessFunction() {
+            @Override
+            public double evaluate(final IntSet subset) {
+                int sum = 0;
+                for (final int element : subset) {
+                    sum += element;
+                }
+                return sum;
+            }
+        };
+        final ExhaustiveOptimizer optimizer = new ExhaustiveOptimizer(range(100), 3, criterion);
+        optimizer.setNumberOfThreads(3);
+        assertTrue(optimizer.optimize(0, 0));
+        assertEquals(100d + 99 + 98, optimizer.getFitestFunctionValue());
+        assertEquals(new IntArraySet(new int[]{98, 99, 100}), optimizer.getFitestSubset());
+        assertEquals(161700, optimizer.getNumberOfEvaluations());
+    }
+
+    public void testParametersWithGaps() {
+        final IntSet set = new IntArraySet(new int[]{1, 74, 87, 900, 2, 61});
+        final SubSetFitnessFunction criterion = new AbstractArraySubSetFitnessFunction() {
+            public double evaluate(final int[] subset, final double[] paramValues) {
+                double sum = 100;
+                for (final int element : subset) {
+                    sum += element * paramValues[0] - paramValues[1];
+                }
+                return sum;
+            }
+        };
+        final ExhaustiveOptimizer optimizer = new ExhaustiveOptimizer(set, 3, criterion,
+                "alpha=1,2,3,4,0.5,0.1", "beta=1,2,0,3,4,0.5");
+        optimizer.setNumberOfThreads(1);
+        optimizer.optimize(0, 0);
+        assertEquals(20 * 36, optimizer.getSearchSpaceSize());
+        assertEquals(20 * 36, optimizer.getNumberOfEvaluations());
+        assertEquals(new IntArraySet(new int[]{74, 87, 900}), optimizer.getFitestSubset());
+        assertEquals(4d, optimizer.getFitestParameterValues()[0]);
+        assertEquals(0d, optimizer.getFitestParameterValues()[1]);
+    }
+
+    public void testTiesDoNotDependOnThreads() {
+        // every subset has the same fitness, the subset of rank zero must be returned
+        final SubSetFitnessFunction criterion = new AbstractArraySubSetFitnessFunction() {
+            public double evaluate(final int[] subset, final double[] paramValues) {
+                return 1;
+            }
+        };
+        for (int threads = 1; threads <= 4; threads++) {
+            final ExhaustiveOptimizer optimizer = new ExhaustiveOptimizer(range(30), 4, criterion, "alpha=1,2,3");
+            optimizer.setNumberOfThreads(threads);
+            optimizer.optimize(0, 0);
+            assertEquals(new IntArraySet(new int[]{1, 2, 3, 4}), optimizer.getFitestSubset());
+            assertEquals(1d, optimizer.getFitestParameterValues()[0]);
+        }
+    }
+
+    public void testBranchAndBound() {
+        final ExhaustiveOptimizer pruned = new ExhaustiveOptimizer(range(200), 4, new SumCriterion());
+        pruned.setNumberOfThreads(4);
+        pruned.optimize(0, 0);
+        final ExhaustiveOptimizer full = new ExhaustiveOptimizer(range(200), 4, new SumCriterion());
+        full.setNumberOfThreads(4);
+        full.setUseUpperBounds(false);
+        full.optimize(0, 0);
+        assertEquals(200d + 199 + 198 + 197, pruned.getFitestFunctionValue());
+        assertEquals(full.getFitestFunctionValue(), pruned.getFitestFunctionValue());
+        assertEquals(full.getFitestSubset(), pruned.getFitestSubset());
+        assertEquals(Combinations.binomial(200, 4), full.getNumberOfEvaluations());
+        assertTrue("bounds must prune most subsets: " + pruned.getNumberOfEvaluations(),
+                pruned.getNumberOfEvaluations() < full.getNumberOfEvaluations() / 100);
+    }
+
+    public void testOptimizeSubSetSelectsExhaustiveSearch() throws InvalidConfigurationException {
+        final OptimizeSubSet optimizer = new OptimizeSubSet(range(100), 3, new SumCriterion());
+        assertEquals(161700, optimizer.getSearchSpaceSize());
+        optimizer.setExhaustiveSearchThreshold(1000000);
+        assertTrue(optimizer.optimize(10000, 0.001));
+        assertEquals(0, optimizer.getNumberOfIterationsPerformed());
+        assertEquals(100d + 99 + 98, optimizer.getFitestFunctionValue());
+        assertEquals(new IntArraySet(new int[]{98, 99, 100}), optimizer.getFitestSubset());
+        assertTrue(optimizer.getNumberOfEvaluations() > 0);
+    }
+}
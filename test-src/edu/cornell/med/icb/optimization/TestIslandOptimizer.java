@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import junit.framework.TestCase;
+import org.jgap.Genotype;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+
+import java.util.Arrays;
+
+public class TestIslandOptimizer extends TestCase {
+    private final SubSetFitnessFunction largestCriterion = new AbstractArraySubSetFitnessFunction() {
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element * paramValues[0];
+            }
+            return sum;
+        }
+    };
+
+    private static IntSet range(final int n) {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= n; ++i) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    public void testIslands() throws InvalidConfigurationException {
+        final IslandOptimizer optimizer = new IslandOptimizer(range(100), 5, largestCriterion, 4, 200, "alpha=1,3,2");
+        optimizer.setRandomSeed(17);
+        optimizer.setMigrationInterval(20);
+        optimizer.setTopology(MigrationTopology.COMPLETE);
+        assertTrue(optimizer.optimize(2000, 0.001));
+        assertEquals(3 * (100 + 99 + 98 + 97 + 96), optimizer.getFitestFunctionValue(), 0.0001);
+        final IntSet optimalSubSet = optimizer.getFitestSubset();
+        for (int element = 96; element <= 100; element++) {
+            assertTrue(optimalSubSet.contains(element));
+        }
+        assertEquals(3d, optimizer.getFitestParameterValues()[0]);
+    }
+
+    public void testReproducible() throws InvalidConfigurationException {
+        final IslandOptimizer concurrent = new IslandOptimizer(range(500), 10, largestCriterion, 3, 100, "alpha=1,3,2");
+        concurrent.setRandomSeed(5);
+        concurrent.optimize(300, 0.001);
+
+        final IslandOptimizer serial = new IslandOptimizer(range(500), 10, largestCriterion, 3, 100, "alpha=1,3,2");
+        serial.setRandomSeed(5);
+        serial.setNumberOfThreads(1);
+        serial.optimize(300, 0.001);
+
+        assertEquals(serial.getNumberOfIterationsPerformed(), concurrent.getNumberOfIterationsPerformed());
+        assertEquals(serial.getFitestFunctionValue(), concurrent.getFitestFunctionValue());
+        assertEquals(serial.getFittestIsland(), concurrent.getFittestIsland());
+        assertEquals(serial.getFitestSubset(), concurrent.getFitestSubset());
+    }
+
+    public void testNotConvergedWithoutEvolution() throws InvalidConfigurationException {
+        final IslandOptimizer optimizer = new IslandOptimizer(range(100), 5, largestCriterion, 2, 50, "alpha=1,3,2");
+        assertFalse(optimizer.optimize(1, 0.001));
+        assertEquals(0, optimizer.getNumberOfIterationsPerformed());
+    }
+
+    public void testReceive() throws InvalidConfigurationException {
+        final OptimizeSubSet island = new OptimizeSubSet(range(100), 5, largestCriterion, 20, "alpha=1,3,2");
+        island.setRandomSeed(3);
+        island.initializePopulation();
+        final Genotype genotype = island.getGenotype();
+        genotype.evolve();
+        final Population population = genotype.getPopulation();
+        final IChromosome fittest = genotype.getFittestChromosome();
+        final int[] fittestSolution = FitnessFunctionAdapter.encodeSolution(fittest);
+        // the same least fit chromosome held twice by the population
+        final int first = population.getChromosome(0) == fittest ? 1 : 0;
+        final int second = population.getChromosome(2) == fittest ? 3 : 2;
+        final IChromosome shared = population.getChromosome(first);
+        shared.setFitnessValueDirectly(0);
+        population.setChromosome(second, shared);
+        final int[] sharedSolution = FitnessFunctionAdapter.encodeSolution(shared);
+
+        final int[][] migrants = {{95, 96, 97, 98, 99, 1}, {94, 95, 96, 97, 98, 1}};
+        final double[] fitness = {3 * (96 + 97 + 98 + 99 + 100), 3 * (95 + 96 + 97 + 98 + 99)};
+        IslandOptimizer.receive(genotype, migrants, fitness);
+
+        assertNotSame(population.getChromosome(first), population.getChromosome(second));
+        final int[] firstSolution = FitnessFunctionAdapter.encodeSolution(population.getChromosome(first));
+        final int[] secondSolution = FitnessFunctionAdapter.encodeSolution(population.getChromosome(second));
+        assertTrue(Arrays.equals(migrants[0], firstSolution) && Arrays.equals(migrants[1], secondSolution)
+                || Arrays.equals(migrants[1], firstSolution) && Arrays.equals(migrants[0], secondSolution));
+        // chromosomes are replaced, not overwritten:
+        assertTrue(Arrays.equals(sharedSolution, FitnessFunctionAdapter.encodeSolution(shared)));
+        assertTrue(Arrays.equals(fittestSolution, FitnessFunctionAdapter.encodeSolution(fittest)));
+        final IChromosome newFittest = genotype.getFittestChromosome();
+        assertEquals(fitness[0], newFittest.getFitnessValue());
+        assertTrue(Arrays.equals(migrants[0], FitnessFunctionAdapter.encodeSolution(newFittest)));
+    }
+}
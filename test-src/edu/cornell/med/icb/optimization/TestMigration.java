@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import junit.framework.TestCase;
+import org.jgap.InvalidConfigurationException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestMigration extends TestCase {
+    private static final int OPTIMUM = 100 + 99 + 98 + 97 + 96;
+
+    /**
+     * Sum of the elements of the subset. Public so that worker processes can create it.
+     */
+    public static class SumCriterion extends AbstractArraySubSetFitnessFunction {
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum;
+        }
+    }
+
+    private static IntSet range(final int n) {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= n; ++i) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    public void testWorkerThreads() throws Exception {
+        final MigrationCoordinator coordinator = new MigrationCoordinator(0);
+        coordinator.setConvergence(0.001, 400);
+        coordinator.start();
+        final AtomicInteger failures = new AtomicInteger();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int w = 0; w < 4; w++) {
+            final int seed = w + 1;
+            final boolean dies = w == 0;
+            final SubSetFitnessFunction criterion = dies ? new SumCriterion() {
+                private int evaluations;
+
+                @Override
+                public double evaluate(final int[] subset, final double[] paramValues) {
+                    if (++evaluations > 2000) {
+                        throw new IllegalStateException("worker failure");
+                    }
+                    return super.evaluate(subset, paramValues);
+                }
+            } : new SumCriterion();
+            final OptimizeSubSet optimizer = new OptimizeSubSet(range(100), 5, criterion, 200);
+            optimizer.setRandomSeed(seed);
+            final MigrationWorker worker = new MigrationWorker(optimizer, "localhost", coordinator.getPort());
+            worker.setMigrationInterval(10);
+            final Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        worker.optimize(5000, 0.001);
+                    } catch (InvalidConfigurationException e) {
+                        failures.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join(60000);
+        }
+        assertTrue(coordinator.awaitCompletion(60, TimeUnit.SECONDS));
+        coordinator.close();
+        assertEquals("only the failing worker must stop early", 1, failures.get());
+        assertEquals(4, coordinator.getNumberOfWorkersConnected());
+        assertEquals((double) OPTIMUM, coordinator.getFitestFunctionValue());
+        assertTrue(coordinator.getFitestSubset().contains(96));
+    }
+
+    public void testWorkerProcesses() throws IOException, InterruptedException {
+        final MigrationCoordinator coordinator = new MigrationCoordinator(0);
+        coordinator.setConvergence(0.001, 400);
+        coordinator.start();
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final List<Process> processes = new ArrayList<Process>();
+        for (int w = 0; w < 2; w++) {
+            final ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    MigrationWorker.class.getName(), "localhost", Integer.toString(coordinator.getPort()),
+                    SumCriterion.class.getName(), "30", "5", "5000", Integer.toString(w + 1));
+            builder.redirectErrorStream(true);
+            final Process process = builder.start();
+            // drain the output of the worker so that it never blocks on a full pipe
+            final Thread drain = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        while (process.getInputStream().read() != -1) {
+                            // discard
+                        }
+                    } catch (IOException e) {
+                        // the process ended
+                    }
+                }
+            });
+            drain.setDaemon(true);
+            drain.start();
+            processes.add(process);
+        }
+        try {
+            assertTrue(coordinator.awaitCompletion(120, TimeUnit.SECONDS));
+            for (final Process process : processes) {
+                assertEquals(0, process.waitFor());
+            }
+        } finally {
+            coordinator.close();
+            for (final Process process : processes) {
+                process.destroy();
+            }
+        }
+        assertEquals(2, coordinator.getNumberOfWorkersConnected());
+        assertEquals(30.0 + 29 + 28 + 27 + 26, coordinator.getFitestFunctionValue());
+    }
+
+    private static DataInputStream message(final int count, final int subsetSize, final int[] numberOfValues,
+                                           final double fitness, final int... solution) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(7);
+        output.writeInt(count);
+        output.writeInt(subsetSize);
+        output.writeInt(numberOfValues.length);
+        for (final int values : numberOfValues) {
+            output.writeInt(values);
+        }
+        output.writeDouble(fitness);
+        for (final int value : solution) {
+            output.writeInt(value);
+        }
+        output.flush();
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static void assertRejected(final DataInputStream input, final MigrationProtocol.Layout expected) {
+        try {
+            MigrationProtocol.readMigrants(input, expected);
+            fail("message must be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testReadMigrants() throws IOException {
+        final MigrationProtocol.Layout layout = new MigrationProtocol.Layout(3, new int[] {4});
+        final MigrationProtocol.Message message =
+                MigrationProtocol.readMigrants(message(1, 3, new int[] {4}, 12, 2, 5, 9, 3), layout);
+        assertEquals(7, message.generation);
+        assertEquals(layout, message.layout);
+        assertEquals(1, message.migrants.size());
+        assertEquals(12d, message.migrants.get(0).fitness);
+
+        // announces more migrants than any message holds
+        assertRejected(message(Integer.MAX_VALUE, 3, new int[] {4}, 12, 2, 5, 9, 3), layout);
+        assertRejected(message(-1, 3, new int[] {4}, 12, 2, 5, 9, 3), layout);
+        // announces more migrants than it holds
+        assertRejected(message(2, 3, new int[] {4}, 12, 2, 5, 9, 3), layout);
+        // solutions too large to allocate, or not of the expected layout
+        assertRejected(message(1, Integer.MAX_VALUE, new int[] {4}, 12, 2, 5, 9, 3), null);
+        assertRejected(message(1, 4, new int[] {4}, 12, 2, 5, 9, 3), layout);
+        assertRejected(message(1, 3, new int[] {5}, 12, 2, 5, 9, 3), layout);
+        assertRejected(message(1, 3, new int[0], 12, 2, 5, 9), layout);
+        // parameter value index out of range
+        assertRejected(message(1, 3, new int[] {4}, 12, 2, 5, 9, 4), layout);
+        assertRejected(message(1, 3, new int[] {4}, 12, 2, 5, 9, -1), null);
+        // elements repeated or out of order
+        assertRejected(message(1, 3, new int[] {4}, 12, 2, 2, 9, 3), layout);
+        assertRejected(message(1, 3, new int[] {4}, 12, 9, 5, 2, 3), layout);
+        // fitness that JGAP cannot use
+        assertRejected(message(1, 3, new int[] {4}, -1, 2, 5, 9, 3), layout);
+        assertRejected(message(1, 3, new int[] {4}, Double.NaN, 2, 5, 9, 3), layout);
+    }
+
+    public void testRejectsWorkerWithOtherLayout() throws IOException {
+        final MigrationCoordinator coordinator = new MigrationCoordinator(0);
+        coordinator.start();
+        final Socket first = new Socket("localhost", coordinator.getPort());
+        final Socket second = new Socket("localhost", coordinator.getPort());
+        try {
+            final List<MigrationProtocol.Migrant> migrants = Collections.singletonList(
+                    new MigrationProtocol.Migrant(new int[] {1, 2, 3, 0}, 6));
+            final DataOutputStream firstOutput = new DataOutputStream(first.getOutputStream());
+            final DataInputStream firstInput = new DataInputStream(new BufferedInputStream(first.getInputStream()));
+            MigrationProtocol.writeMigrants(firstOutput, 10,
+                    new MigrationProtocol.Layout(3, new int[] {2}), migrants);
+            assertEquals(MigrationProtocol.MIGRANTS, firstInput.readByte());
+            MigrationProtocol.readMigrants(firstInput, new MigrationProtocol.Layout(3, new int[] {2}));
+
+            // same solution length, other parameter layout
+            final DataOutputStream secondOutput = new DataOutputStream(second.getOutputStream());
+            MigrationProtocol.writeMigrants(secondOutput, 10,
+                    new MigrationProtocol.Layout(3, new int[] {3}), migrants);
+            try {
+                assertEquals("the coordinator must close the connection", -1, second.getInputStream().read());
+            } catch (SocketException e) {
+                // connection reset by the coordinator
+            }
+            assertEquals(6d, coordinator.getFitestFunctionValue());
+        } finally {
+            first.close();
+            second.close();
+            coordinator.close();
+        }
+    }
+}
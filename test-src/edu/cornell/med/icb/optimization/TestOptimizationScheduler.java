@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import junit.framework.TestCase;
+import org.jgap.InvalidConfigurationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TestOptimizationScheduler extends TestCase {
+    private static final int NUMBER_OF_JOBS = 12;
+
+    /**
+     * Sum of the elements weighted by parameter alpha.
+     */
+    private static final class WeightedSumCriterion extends AbstractArraySubSetFitnessFunction {
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element * paramValues[0];
+            }
+            return sum;
+        }
+    }
+
+    private static OptimizeSubSet createJob(final int job, final SubSetFitnessFunction criterion)
+            throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 40 + 10 * job; ++i) {
+            set.add(i);
+        }
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 3 + job % 4, criterion, 100, "alpha=1,2,3");
+        optimizer.setRandomSeed(job + 1);
+        return optimizer;
+    }
+
+    public void testConcurrentJobsMatchSerialRuns() throws Exception {
+        final List<OptimizationResult> serial = new ArrayList<OptimizationResult>();
+        for (int job = 0; job < NUMBER_OF_JOBS; job++) {
+            final OptimizeSubSet optimizer = createJob(job, new WeightedSumCriterion());
+            final boolean converged = optimizer.optimize(300, 0.001);
+            serial.add(new OptimizationResult("job " + job, optimizer, converged, 0));
+        }
+
+        final OptimizationScheduler scheduler = new OptimizationScheduler(4);
+        final List<Future<OptimizationResult>> futures = new ArrayList<Future<OptimizationResult>>();
+        for (int job = 0; job < NUMBER_OF_JOBS; job++) {
+            futures.add(scheduler.submit("job " + job, createJob(job, new WeightedSumCriterion()), 300, 0.001));
+        }
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(120, TimeUnit.SECONDS));
+        for (int job = 0; job < NUMBER_OF_JOBS; job++) {
+            final OptimizationResult expected = serial.get(job);
+            final OptimizationResult result = futures.get(job).get();
+            assertEquals("job " + job, result.getName());
+            assertEquals(expected.getFitness(), result.getFitness());
+            assertEquals(expected.getSubset(), result.getSubset());
+            assertTrue(Arrays.equals(expected.getParameterValues(), result.getParameterValues()));
+            assertEquals(expected.isConverged(), result.isConverged());
+            assertEquals(expected.getNumberOfIterationsPerformed(), result.getNumberOfIterationsPerformed());
+            assertEquals(expected.getNumberOfEvaluations(), result.getNumberOfEvaluations());
+        }
+    }
+
+    public void testFailedJobDoesNotAffectOthers() throws Exception {
+        final OptimizationScheduler scheduler = new OptimizationScheduler(2);
+        final Future<OptimizationResult> failing = scheduler.submit("failing", createJob(0,
+                new AbstractArraySubSetFitnessFunction() {
+                    public double evaluate(final int[] subset, final double[] paramValues) {
+                        throw new IllegalArgumentException("criterion failure");
+                    }
+                }), 300, 0.001);
+        final Future<OptimizationResult> succeeding =
+                scheduler.submit("succeeding", createJob(1, new WeightedSumCriterion()), 300, 0.001);
+        scheduler.shutdown();
+        try {
+            failing.get();
+            fail("the failure of the criterion must be reported by the future");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertTrue(succeeding.get().getFitness() > 0);
+    }
+
+    public void testConfigurationsAreIsolated() throws InterruptedException {
+        // JGAP keys configuration properties by thread name: threads with the same name must
+        // still be able to configure optimizers at the same time.
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int run = 0; run < 50; run++) {
+                            createJob(run % 3, new WeightedSumCriterion()).optimize(5, 0.001);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            }, "same name");
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(failures.toString(), 0, failures.size());
+    }
+}
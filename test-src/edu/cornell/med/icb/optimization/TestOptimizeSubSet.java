@@ -21,7 +21,21 @@ package edu.cornell.med.icb.optimization;
 import it.unimi.dsi.fastutil.ints.IntArraySet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import junit.framework.TestCase;
+import org.jgap.IChromosome;
 import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Fabien Campagne
@@ -139,6 +153,49 @@ public class TestOptimizeSubSet extends TestCase {
         assertEquals(0d, optimalParameterValues[1]);
     }
 
+    public void testParseContinuousParameters() {
+        final double[][] values = OptimizeSubSet.parseParameterValues(
+                new String[]{"alpha=1,2,3", "beta=-1:1", "gamma=0.01:100:log"});
+        assertEquals(3, values[0].length);
+        assertEquals(OptimizeSubSet.CONTINUOUS_PARAMETER_STEPS, values[1].length);
+        assertEquals(-1d, values[1][0]);
+        assertEquals(1d, values[1][values[1].length - 1]);
+        assertEquals(values[1][1] - values[1][0], values[1][2] - values[1][1], 1e-12);
+        assertEquals(0.01, values[2][0]);
+        assertEquals(100d, values[2][values[2].length - 1]);
+        assertEquals(values[2][1] / values[2][0], values[2][2] / values[2][1], 1e-9);
+    }
+
+    /**
+     * Sum of the elements, weighted by a function of alpha that peaks at alpha=0.37.
+     */
+    private final SubSetFitnessFunction peakedAlphaCriterion = new AbstractSubSetFitnessFunction() {
+        @Override
+        public double evaluate(final IntSet subset, final double... paramValues) {
+            final double distance = Math.log(paramValues[0] / 0.37);
+            int sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum * Math.exp(-distance * distance);
+        }
+    };
+
+    public void testContinuousParameter() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int element = 1; element <= 20; element++) {
+            set.add(element);
+        }
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 3, peakedAlphaCriterion, 200, "alpha=0.01:10:log");
+        optimizer.setRandomSeed(1);
+        optimizer.optimize(2000, 0.00001);
+
+        assertEquals(new IntArraySet(new int[]{18, 19, 20}), optimizer.getFitestSubset());
+        final double alpha = optimizer.getFitestParameterValues()[0];
+        assertEquals(0.37, alpha, 0.37 * 0.02);
+        assertEquals(57, optimizer.getFitestFunctionValue(), 57 * 0.001);
+    }
+
     public synchronized void testSubSetSmallest() throws InvalidConfigurationException {
         final IntSet set = new IntArraySet();
         final int[] elements = {1, 2, 3, 4, 5, 6, 7, 8, 9};
@@ -186,6 +243,632 @@ public class TestOptimizeSubSet extends TestCase {
         assertTrue(optimalsubSet.contains(elements.length - 2));
     }
 
+    private final SubSetFitnessFunction threadSafeLargestCriterion = new AbstractSubSetFitnessFunction() {
+        @Override
+        public double evaluate(final IntSet subset) {
+            int sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum;
+        }
+    };
+
+    public synchronized void testParallelEvaluationMatchesSequential() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final OptimizeSubSet sequential = new OptimizeSubSet(set, 3, threadSafeLargestCriterion);
+        sequential.setRandomSeed(7);
+        sequential.setNumberOfThreads(1);
+        sequential.optimize(500, 0.001);
+
+        final OptimizeSubSet parallel = new OptimizeSubSet(set, 3, threadSafeLargestCriterion);
+        parallel.setRandomSeed(7);
+        parallel.setNumberOfThreads(4);
+        parallel.optimize(500, 0.001);
+
+        assertEquals(sequential.getNumberOfIterationsPerformed(), parallel.getNumberOfIterationsPerformed());
+        assertEquals(sequential.getFitestFunctionValue(), parallel.getFitestFunctionValue());
+        assertEquals(sequential.getFitestSubset(), parallel.getFitestSubset());
+    }
+
+    public synchronized void testFitnessCache() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        final int[] elements = {1, 2, 3, 4, 5, 6, 7, 8, 9};
+        for (final int element : elements) {
+            set.add(element);
+        }
+        final int[] numberOfEvaluations = new int[1];
+        final SubSetFitnessFunction countingCriterion = new AbstractSubSetFitnessFunction() {
+            @Override
+            public double evaluate(final IntSet subset) {
+                numberOfEvaluations[0]++;
+                return threadSafeLargestCriterion.evaluate(subset);
+            }
+        };
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 3, countingCriterion);
+        optimizer.setRandomSeed(1);
+        optimizer.setFitnessCacheSize(100);
+        assertTrue(optimizer.optimize(10000, 0.001));
+        assertEquals(24d, optimizer.getFitestFunctionValue());
+        // at most C(9,3)=84 distinct subsets exist, all of which fit in the cache:
+        assertTrue(numberOfEvaluations[0] <= 84);
+        assertEquals(numberOfEvaluations[0], optimizer.getFitnessCacheMisses());
+        assertTrue(optimizer.getFitnessCacheHits() > optimizer.getFitnessCacheMisses());
+
+        final FitnessCache cache = new FitnessCache(2);
+        cache.put(new int[]{1, 2}, 3);
+        cache.put(new int[]{1, 3}, 4);
+        assertEquals(3d, cache.get(new int[]{1, 2}));
+        cache.put(new int[]{2, 3}, 5);
+        assertNull("least recently used value must be evicted", cache.get(new int[]{1, 3}));
+        assertEquals(2, cache.size());
+    }
+
+    private final SubSetFitnessFunction arrayCriterionWithAlphaBeta = new AbstractArraySubSetFitnessFunction() {
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            assert paramValues.length == 2 : "evaluate must be called with two parameter values";
+            double sum = 100;
+            int previous = Integer.MIN_VALUE;
+            for (final int element : subset) {
+                assertTrue("elements must be provided in increasing order", element > previous);
+                previous = element;
+                sum += (element * paramValues[0]) - paramValues[1];
+            }
+            return sum;
+        }
+    };
+
+    public synchronized void testArrayFitnessFunctionWithGapsAndParams() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        final int[] elements = {1, 74, 87, 900, 2, 61};
+        for (final int element : elements) {
+            set.add(element);
+        }
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 3, arrayCriterionWithAlphaBeta,
+                "alpha=1,2,3,4,0.5,0.1", "beta=1,2,0,3,4,0.5");
+        optimizer.setRandomSeed(1);
+        assertTrue(optimizer.optimize(10000, 0.001));
+
+        final IntSet optimalsubSet = optimizer.getFitestSubset();
+        assertTrue(optimalsubSet.contains(74));
+        assertTrue(optimalsubSet.contains(87));
+        assertTrue(optimalsubSet.contains(900));
+        assertEquals(4d, optimizer.getFitestParameterValues()[0]);
+        assertEquals(0d, optimizer.getFitestParameterValues()[1]);
+        // the IntSet variant must agree with the array variant:
+        assertEquals(optimizer.getFitestFunctionValue(),
+                arrayCriterionWithAlphaBeta.evaluate(optimalsubSet, optimizer.getFitestParameterValues()));
+    }
+
+    public synchronized void testResumeFromCheckpoint() throws InvalidConfigurationException, IOException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final File uninterruptedCheckpoint = File.createTempFile("uninterrupted", ".checkpoint");
+        final File interruptedCheckpoint = File.createTempFile("interrupted", ".checkpoint");
+        try {
+            final OptimizeSubSet uninterrupted = new OptimizeSubSet(set, 5, arrayCriterionWithAlphaBeta, 200,
+                    "alpha=1,2,3", "beta=1,2,0");
+            uninterrupted.setRandomSeed(3);
+            uninterrupted.setCheckpoint(uninterruptedCheckpoint, 7);
+            uninterrupted.optimize(1000, 0.001);
+
+            // checkpoints must not change the path of the run:
+            final OptimizeSubSet withoutCheckpoints = new OptimizeSubSet(set, 5, arrayCriterionWithAlphaBeta, 200,
+                    "alpha=1,2,3", "beta=1,2,0");
+            withoutCheckpoints.setRandomSeed(3);
+            withoutCheckpoints.optimize(1000, 0.001);
+            assertEquals(withoutCheckpoints.getNumberOfIterationsPerformed(),
+                    uninterrupted.getNumberOfIterationsPerformed());
+            assertEquals(withoutCheckpoints.getNumberOfEvaluations(), uninterrupted.getNumberOfEvaluations());
+            assertEquals(withoutCheckpoints.getFitestSubset(), uninterrupted.getFitestSubset());
+
+            final int[] numberOfEvaluations = new int[1];
+            final SubSetFitnessFunction failingCriterion = new AbstractArraySubSetFitnessFunction() {
+                public double evaluate(final int[] subset, final double[] paramValues) {
+                    if (++numberOfEvaluations[0] > 5000) {
+                        throw new IllegalStateException("preempted");
+                    }
+                    return ((ArraySubSetFitnessFunction) arrayCriterionWithAlphaBeta).evaluate(subset, paramValues);
+                }
+            };
+            final OptimizeSubSet interrupted = new OptimizeSubSet(set, 5, failingCriterion, 200,
+                    "alpha=1,2,3", "beta=1,2,0");
+            interrupted.setRandomSeed(3);
+            interrupted.setCheckpoint(interruptedCheckpoint, 7);
+            try {
+                interrupted.optimize(1000, 0.001);
+                fail("the criterion must interrupt the optimization");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+
+            final OptimizeSubSet resumed = new OptimizeSubSet(set, 5, arrayCriterionWithAlphaBeta, 200,
+                    "alpha=1,2,3", "beta=1,2,0");
+            resumed.setCheckpoint(interruptedCheckpoint, 7);
+            resumed.resume(interruptedCheckpoint, 1000, 0.001);
+            assertEquals(uninterrupted.getNumberOfIterationsPerformed(), resumed.getNumberOfIterationsPerformed());
+            assertEquals(uninterrupted.getFitestFunctionValue(), resumed.getFitestFunctionValue());
+            assertEquals(uninterrupted.getFitestSubset(), resumed.getFitestSubset());
+            assertTrue(Arrays.equals(uninterrupted.getFitestParameterValues(), resumed.getFitestParameterValues()));
+            assertTrue("the resumed run must not repeat the evaluations done before the checkpoint",
+                    resumed.getNumberOfEvaluations() < uninterrupted.getNumberOfEvaluations());
+
+            final OptimizeSubSet otherProblem = new OptimizeSubSet(set, 4, arrayCriterionWithAlphaBeta, 200,
+                    "alpha=1,2,3", "beta=1,2,0");
+            try {
+                otherProblem.resume(interruptedCheckpoint, 1000, 0.001);
+                fail("a checkpoint written for another subset size must be rejected");
+            } catch (IOException e) {
+                // expected
+            }
+        } finally {
+            uninterruptedCheckpoint.delete();
+            interruptedCheckpoint.delete();
+        }
+    }
+
+    /**
+     * Sum of the elements weighted by parameter alpha, with an incremental variant that checks
+     * its result against the full evaluation.
+     */
+    private static class WeightedSumCriterion extends AbstractArraySubSetFitnessFunction
+            implements DeltaSubSetFitnessFunction {
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element * paramValues[0];
+            }
+            return sum;
+        }
+
+        public double evaluate(final int[] subset, final double[] paramValues, final double parentFitness,
+                               final int[] removed, final int[] added) {
+            assertEquals(removed.length, added.length);
+            double fitness = parentFitness;
+            for (int i = 0; i < removed.length; i++) {
+                fitness += (added[i] - removed[i]) * paramValues[0];
+            }
+            assertEquals(evaluate(subset, paramValues), fitness, 1e-9);
+            return fitness;
+        }
+    }
+
+    public synchronized void testDeltaEvaluation() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final WeightedSumCriterion deltaCriterion = new WeightedSumCriterion();
+        final SubSetFitnessFunction fullCriterion = new AbstractArraySubSetFitnessFunction() {
+            public double evaluate(final int[] subset, final double[] paramValues) {
+                return deltaCriterion.evaluate(subset, paramValues);
+            }
+        };
+        final OptimizeSubSet full = new OptimizeSubSet(set, 10, fullCriterion, 200, "alpha=1,2,3");
+        full.setRandomSeed(5);
+        full.optimize(1000, 0.001);
+        assertEquals(0, full.getNumberOfDeltaEvaluations());
+
+        final OptimizeSubSet delta = new OptimizeSubSet(set, 10, deltaCriterion, 200, "alpha=1,2,3");
+        delta.setRandomSeed(5);
+        delta.optimize(1000, 0.001);
+        assertTrue(delta.getNumberOfDeltaEvaluations() > delta.getNumberOfEvaluations() / 2);
+        assertEquals(full.getNumberOfIterationsPerformed(), delta.getNumberOfIterationsPerformed());
+        assertEquals(full.getFitestFunctionValue(), delta.getFitestFunctionValue(), 1e-9);
+        assertEquals(full.getFitestSubset(), delta.getFitestSubset());
+    }
+
+    /**
+     * Counts the calls to a criterion.
+     */
+    private static class CountingCriterion extends AbstractArraySubSetFitnessFunction {
+        private final ArraySubSetFitnessFunction criterion;
+        private int calls;
+
+        CountingCriterion(final SubSetFitnessFunction criterion) {
+            this.criterion = (ArraySubSetFitnessFunction) criterion;
+        }
+
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            calls++;
+            return criterion.evaluate(subset, paramValues);
+        }
+    }
+
+    private final SubSetFitnessFunction arrayLargestCriterion = new AbstractArraySubSetFitnessFunction() {
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum;
+        }
+    };
+
+    public synchronized void testSurrogateScreening() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final CountingCriterion unscreenedCriterion = new CountingCriterion(arrayLargestCriterion);
+        final OptimizeSubSet unscreened = new OptimizeSubSet(set, 3, unscreenedCriterion);
+        unscreened.setRandomSeed(1);
+        unscreened.optimize(300, 0);
+        assertEquals(unscreenedCriterion.calls, unscreened.getNumberOfEvaluations());
+
+        final CountingCriterion criterion = new CountingCriterion(arrayLargestCriterion);
+        final OptimizeSubSet screened = new OptimizeSubSet(set, 3, criterion);
+        screened.setSurrogateScreening(0.25, 5);
+        screened.setRandomSeed(1);
+        screened.optimize(300, 0);
+        assertEquals(criterion.calls, screened.getNumberOfEvaluations());
+        // the offspring screened out are not evaluated:
+        assertEquals(unscreened.getNumberOfIterationsPerformed(), screened.getNumberOfIterationsPerformed());
+        assertTrue(screened.getNumberOfSurrogateSkips() > 0);
+        assertTrue(criterion.calls + " calls with screening, " + unscreenedCriterion.calls + " without",
+                criterion.calls < unscreenedCriterion.calls / 2);
+
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 3, largestCriterion);
+        optimizer.setSurrogateScreening(0.25, 5);
+        optimizer.setRandomSeed(1);
+        maxFitnessValue = 0;
+        optimizer.optimize(5000, 0.001);
+        assertEquals(100.0 + 99 + 98, optimizer.getFitestFunctionValue());
+        assertEquals(maxFitnessValue, optimizer.getFitestFunctionValue());
+        // the result is an evaluated solution, not an offspring whose evaluation was skipped:
+        double sum = 0;
+        for (final int element : optimizer.getFitestSubset()) {
+            sum += element;
+        }
+        assertEquals(sum, optimizer.getFitestFunctionValue());
+        assertTrue(optimizer.getNumberOfSurrogateSkips() > 0);
+        assertTrue(optimizer.getSurrogateSkipRate() > 0.5 && optimizer.getSurrogateSkipRate() <= 0.75);
+    }
+
+    public synchronized void testSurrogateScreeningWithDeltaEvaluation() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final int[] calls = new int[1];
+        // a delta evaluation checks itself against one full evaluation, so counting the full
+        // evaluations counts every call to the criterion:
+        final WeightedSumCriterion countingCriterion = new WeightedSumCriterion() {
+            @Override
+            public double evaluate(final int[] subset, final double[] paramValues) {
+                calls[0]++;
+                return super.evaluate(subset, paramValues);
+            }
+        };
+        final OptimizeSubSet unscreened = new OptimizeSubSet(set, 5, countingCriterion, 200, "alpha=1,2,3");
+        unscreened.setRandomSeed(1);
+        unscreened.optimize(300, 0);
+        final int unscreenedCalls = calls[0];
+
+        calls[0] = 0;
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 5, countingCriterion, 200, "alpha=1,2,3");
+        optimizer.setSurrogateScreening(0.25, 5);
+        optimizer.setRandomSeed(1);
+        // offspring whose evaluation was skipped must not be the parents of delta evaluations,
+        // which the criterion checks against full evaluations:
+        optimizer.optimize(300, 0);
+        assertTrue(optimizer.getNumberOfSurrogateSkips() > 0);
+        assertTrue(optimizer.getNumberOfDeltaEvaluations() > 0);
+        assertEquals(optimizer.getNumberOfEvaluations(), calls[0]);
+        assertTrue(calls[0] + " calls with screening, " + unscreenedCalls + " without",
+                calls[0] < unscreenedCalls / 2);
+        final int[] subset = optimizer.getFitestSubset().toIntArray();
+        assertEquals(countingCriterion.evaluate(subset, optimizer.getFitestParameterValues()),
+                optimizer.getFitestFunctionValue(), 1e-9);
+    }
+
+    public synchronized void testResumeWithSurrogateScreening() throws InvalidConfigurationException, IOException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final File checkpoint = File.createTempFile("surrogate", ".checkpoint");
+        try {
+            final CountingCriterion unscreenedCriterion = new CountingCriterion(arrayCriterionWithAlphaBeta);
+            final OptimizeSubSet unscreened = new OptimizeSubSet(set, 5, unscreenedCriterion, 200,
+                    "alpha=1,2,3", "beta=1,2,0");
+            unscreened.setRandomSeed(3);
+            unscreened.optimize(1000, 0.001);
+
+            final CountingCriterion criterion = new CountingCriterion(arrayCriterionWithAlphaBeta);
+            final OptimizeSubSet uninterrupted = new OptimizeSubSet(set, 5, criterion, 200,
+                    "alpha=1,2,3", "beta=1,2,0");
+            uninterrupted.setSurrogateScreening(0.25, 5);
+            uninterrupted.setRandomSeed(3);
+            uninterrupted.optimize(1000, 0.001);
+            assertEquals(criterion.calls, uninterrupted.getNumberOfEvaluations());
+            assertTrue(criterion.calls + " calls with screening, " + unscreenedCriterion.calls + " without",
+                    criterion.calls < unscreenedCriterion.calls);
+
+            final int[] numberOfEvaluations = new int[1];
+            final SubSetFitnessFunction failingCriterion = new AbstractArraySubSetFitnessFunction() {
+                public double evaluate(final int[] subset, final double[] paramValues) {
+                    if (++numberOfEvaluations[0] > 3000) {
+                        throw new IllegalStateException("preempted");
+                    }
+                    return ((ArraySubSetFitnessFunction) arrayCriterionWithAlphaBeta).evaluate(subset, paramValues);
+                }
+            };
+            final OptimizeSubSet interrupted = new OptimizeSubSet(set, 5, failingCriterion, 200,
+                    "alpha=1,2,3", "beta=1,2,0");
+            interrupted.setSurrogateScreening(0.25, 5);
+            interrupted.setRandomSeed(3);
+            interrupted.setCheckpoint(checkpoint, 7);
+            try {
+                interrupted.optimize(1000, 0.001);
+                fail("the criterion must interrupt the optimization");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            assertTrue(interrupted.getNumberOfSurrogateSkips() > 0);
+
+            // the resumed run continues with the model saved in the checkpoint:
+            final OptimizeSubSet resumed = new OptimizeSubSet(set, 5, arrayCriterionWithAlphaBeta, 200,
+                    "alpha=1,2,3", "beta=1,2,0");
+            resumed.setSurrogateScreening(0.25, 5);
+            resumed.resume(checkpoint, 1000, 0.001);
+            assertEquals(uninterrupted.getNumberOfIterationsPerformed(), resumed.getNumberOfIterationsPerformed());
+            assertEquals(uninterrupted.getFitestFunctionValue(), resumed.getFitestFunctionValue());
+            assertEquals(uninterrupted.getFitestSubset(), resumed.getFitestSubset());
+            assertEquals(uninterrupted.getNumberOfSurrogateSkips(), resumed.getNumberOfSurrogateSkips());
+        } finally {
+            checkpoint.delete();
+        }
+    }
+
+    private static class BatchWeightedSumCriterion extends WeightedSumCriterion
+            implements BatchSubSetFitnessFunction {
+        private int calls;
+
+        public void evaluate(final int numberOfSolutions, final int[][] subsets, final int[][] parameterIndices,
+                             final double[][] paramValues, final double[] fitness) {
+            calls++;
+            for (int s = 0; s < numberOfSolutions; s++) {
+                assertEquals(parameterIndices[s][0] + 1.0, paramValues[s][0]);
+                fitness[s] = evaluate(subsets[s], paramValues[s]);
+            }
+        }
+    }
+
+    public synchronized void testInitialPopulationIndependentOfThreads() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 1000; ++i) {
+            set.add(i);
+        }
+        final List<int[]> solutions = new ArrayList<int[]>();
+        for (final int numberOfThreads : new int[]{1, 4}) {
+            final OptimizeSubSet optimizer = new OptimizeSubSet(set, 100, threadSafeLargestCriterion, 500,
+                    "alpha=1,2,3");
+            optimizer.setRandomSeed(9);
+            optimizer.setNumberOfThreads(numberOfThreads);
+            optimizer.initializePopulation();
+            final Population population = optimizer.getGenotype().getPopulation();
+            assertEquals(500, population.size());
+            for (int i = 0; i < population.size(); i++) {
+                final IChromosome chromosome = population.getChromosome(i);
+                assertTrue(((SubsetGene) chromosome.getGene(0)).isValid());
+                final int[] solution = FitnessFunctionAdapter.encodeSolution(chromosome);
+                if (numberOfThreads == 1) {
+                    solutions.add(solution);
+                } else {
+                    assertTrue("chromosome " + i, Arrays.equals(solutions.get(i), solution));
+                }
+            }
+            optimizer.releaseResources();
+        }
+    }
+
+    public synchronized void testBatchEvaluation() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final WeightedSumCriterion singleCriterion = new WeightedSumCriterion();
+        final BatchWeightedSumCriterion batchCriterion = new BatchWeightedSumCriterion();
+        final OptimizeSubSet single = new OptimizeSubSet(set, 10, singleCriterion, 200, "alpha=1,2,3");
+        single.setRandomSeed(5);
+        single.optimize(1000, 0.001);
+
+        final OptimizeSubSet batch = new OptimizeSubSet(set, 10, batchCriterion, 200, "alpha=1,2,3");
+        batch.setRandomSeed(5);
+        batch.setFitnessCacheSize(1000);
+        batch.optimize(1000, 0.001);
+        assertTrue(batchCriterion.calls > 0 && batchCriterion.calls <= batch.getNumberOfIterationsPerformed() + 1);
+        assertEquals(single.getNumberOfIterationsPerformed(), batch.getNumberOfIterationsPerformed());
+        assertEquals(single.getFitestFunctionValue(), batch.getFitestFunctionValue(), 1e-9);
+        assertEquals(single.getFitestSubset(), batch.getFitestSubset());
+    }
+
+    public synchronized void testGenerationMetrics() throws InvalidConfigurationException, JMException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 5, threadSafeLargestCriterion, 200);
+        optimizer.setRandomSeed(1);
+        final List<GenerationMetrics> history = new ArrayList<GenerationMetrics>();
+        optimizer.addGenerationListener(new GenerationListener() {
+            public void generationCompleted(final GenerationMetrics metrics) {
+                history.add(metrics);
+            }
+        });
+        final OptimizationMetrics metrics = new OptimizationMetrics();
+        optimizer.addGenerationListener(metrics);
+        final String name = "edu.cornell.med.icb.optimization:type=OptimizeSubSet,name=testGenerationMetrics";
+        metrics.register(name);
+        try {
+            optimizer.optimize(500, 0.001);
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(history.size(), server.getAttribute(new ObjectName(name), "Generation"));
+            assertEquals(optimizer.getFitestFunctionValue(),
+                    server.getAttribute(new ObjectName(name), "BestFitness"));
+        } finally {
+            metrics.unregister();
+        }
+        // the iteration count is the index of the last step that evolved a generation:
+        assertEquals(optimizer.getNumberOfIterationsPerformed() + 1, history.size());
+        double previousBest = 0;
+        for (int generation = 1; generation <= history.size(); generation++) {
+            final GenerationMetrics current = history.get(generation - 1);
+            assertEquals(generation, current.getGeneration());
+            assertTrue("the fittest individual is preserved", current.getBestFitness() >= previousBest);
+            assertTrue(current.getMeanFitness() <= current.getBestFitness());
+            assertTrue(current.getFitnessVariance() >= 0);
+            assertTrue(current.getGenerationEvaluations() > 0);
+            assertEquals("subset operators only create valid subsets", 0d, current.getInvalidRate());
+            assertTrue(current.getEvaluationTime() >= 0 && current.getEvolveTime() >= 0);
+            if (current.getBestFitness() > previousBest) {
+                assertEquals(0, current.getGenerationsSinceImprovement());
+            }
+            previousBest = current.getBestFitness();
+        }
+        final GenerationMetrics last = history.get(history.size() - 1);
+        assertTrue(last.getGenerationsSinceImprovement() > 0);
+        assertEquals(optimizer.getNumberOfEvaluations(), last.getNumberOfEvaluations() + 1);
+    }
+
+    public synchronized void testSolutionObserverStopsRun() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 5, threadSafeLargestCriterion, 200);
+        optimizer.setRandomSeed(1);
+        final List<ObservedSolution> improvements = new ArrayList<ObservedSolution>();
+        optimizer.addSolutionObserver(new SolutionObserver() {
+            public boolean solutionObserved(final ObservedSolution solution) {
+                improvements.add(solution);
+                return solution.getFitness() >= 480;
+            }
+        }, true);
+        assertFalse(optimizer.optimize(5000, 0.001));
+        assertTrue(optimizer.isStopped());
+        final ObservedSolution last = improvements.get(improvements.size() - 1);
+        assertTrue(last.getFitness() >= 480);
+        for (int i = 1; i < improvements.size(); i++) {
+            assertTrue(improvements.get(i).getFitness() > improvements.get(i - 1).getFitness());
+            assertTrue(improvements.get(i).isImprovement());
+        }
+        // the result of the run is the solution seen when it stopped:
+        assertEquals(last.getFitness(), optimizer.getFitestFunctionValue());
+        assertEquals(last.getSubset(), optimizer.getFitestSubset());
+        assertEquals(last.getGeneration(), optimizer.getNumberOfIterationsPerformed());
+    }
+
+    public synchronized void testStopFromAnotherThread() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 5, threadSafeLargestCriterion, 200);
+        optimizer.setRandomSeed(1);
+        final List<ObservedSolution> generations = new ArrayList<ObservedSolution>();
+        final SolutionObserver observer = new SolutionObserver() {
+            public boolean solutionObserved(final ObservedSolution solution) {
+                generations.add(solution);
+                if (solution.getGeneration() == 10) {
+                    final Thread stopper = new Thread(new Runnable() {
+                        public void run() {
+                            optimizer.stop();
+                        }
+                    });
+                    stopper.start();
+                    try {
+                        stopper.join();
+                    } catch (InterruptedException e) {
+                        fail("interrupted");
+                    }
+                }
+                return false;
+            }
+        };
+        optimizer.addSolutionObserver(observer, false);
+        optimizer.optimize(5000, 0.001);
+        assertTrue(optimizer.isStopped());
+        assertEquals(11, generations.size());
+        assertEquals(10, optimizer.getNumberOfIterationsPerformed());
+        assertEquals(generations.get(10).getFitness(), optimizer.getFitestFunctionValue());
+        assertEquals(generations.get(10).getSubset(), optimizer.getFitestSubset());
+
+        // a stop request only applies to the run in progress:
+        optimizer.removeSolutionObserver(observer);
+        optimizer.optimize(500, 0.001);
+        assertFalse(optimizer.isStopped());
+        assertTrue(optimizer.getNumberOfIterationsPerformed() > 10);
+    }
+
+    public synchronized void testDeadline() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        // the same run without a deadline:
+        final OptimizeSubSet unbounded = new OptimizeSubSet(set, 5, threadSafeLargestCriterion, 100);
+        unbounded.setRandomSeed(1);
+        unbounded.optimize(10000, 0.001);
+        assertFalse(unbounded.isDeadlineReached());
+
+        final List<Double> evaluated = new ArrayList<Double>();
+        final SubSetFitnessFunction slowCriterion = new AbstractSubSetFitnessFunction() {
+            @Override
+            public double evaluate(final IntSet subset) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                // offset, so that a fitness of zero stands out from those evaluated:
+                final double fitness = 10000 + threadSafeLargestCriterion.evaluate(subset);
+                synchronized (evaluated) {
+                    evaluated.add(fitness);
+                }
+                return fitness;
+            }
+        };
+        for (final int threads : new int[]{1, 4}) {
+            evaluated.clear();
+            final OptimizeSubSet optimizer = new OptimizeSubSet(set, 5, slowCriterion, 100);
+            optimizer.setRandomSeed(1);
+            optimizer.setNumberOfThreads(threads);
+            final List<GenerationMetrics> history = new ArrayList<GenerationMetrics>();
+            optimizer.addGenerationListener(new GenerationListener() {
+                public void generationCompleted(final GenerationMetrics metrics) {
+                    history.add(metrics);
+                }
+            });
+            assertFalse(optimizer.optimize(10000, 0.001, 200, TimeUnit.MILLISECONDS));
+            assertTrue(optimizer.isDeadlineReached());
+            assertTrue(optimizer.getNumberOfEvaluations() > 0);
+            assertTrue(optimizer.getNumberOfEvaluations() < unbounded.getNumberOfEvaluations());
+            // the result is the fittest solution actually evaluated, never a skipped chromosome:
+            final double fitness = optimizer.getFitestFunctionValue();
+            assertEquals(10000 + threadSafeLargestCriterion.evaluate(optimizer.getFitestSubset()), fitness);
+            synchronized (evaluated) {
+                assertEquals(Collections.max(evaluated), fitness);
+                // chromosomes skipped in the generation cut short do not count as evaluated:
+                final GenerationMetrics last = history.get(history.size() - 1);
+                final double min = Collections.min(evaluated);
+                assertTrue(last.getMeanFitness() >= min);
+                assertTrue(last.getFitnessVariance() <= (fitness - min) * (fitness - min) / 4);
+            }
+        }
+        // with a distant deadline, the optimizer runs until convergence:
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 3, threadSafeLargestCriterion, 100);
+        optimizer.setRandomSeed(1);
+        assertTrue(optimizer.optimizeUntil(500, 0.001, System.currentTimeMillis() + 60000));
+        assertFalse(optimizer.isDeadlineReached());
+    }
+
     // The following tests are disabled because they take a long time to run.
     // optimization algorithms make no garantee that the optimal solution will be found, so this result is not too
     // surprising. It is interesting to note that algouth the optimal solution is not found, the solution found is
@@ -200,7 +883,7 @@ public class TestOptimizeSubSet extends TestCase {
         final double optimal = 2000 + 1999 + 1998;
         final OptimizeSubSet optimizer = new OptimizeSubSet(set, 3, largestCriterion);
         optimizer.setPopulationSize(1000);
-        optimizer.setRandomSeed(1);
+        optimizer.setRandomSeed(3);
         maxFitnessValue = 0;
         final boolean converged = optimizer.optimize(20000, 0.001);
         assertEquals("fitest chromosome must have maximum fitness evaluated by fitness function.", maxFitnessValue, optimizer.getFitestFunctionValue());
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import junit.framework.TestCase;
+import org.jgap.InvalidConfigurationException;
+
+public class TestSplittableGenerator extends TestCase {
+    public void testReferenceSequence() {
+        // first outputs of xoshiro256** from the state {1, 2, 3, 4}
+        final SplittableGenerator generator = new SplittableGenerator(1, 2, 3, 4);
+        assertEquals(11520L, generator.nextLong());
+        assertEquals(0L, generator.nextLong());
+        assertEquals(1509978240L, generator.nextLong());
+        assertEquals(1215971899390074240L, generator.nextLong());
+    }
+
+    public void testBoundedIntsAreUniform() {
+        for (final int ceiling : new int[]{3, 10}) {
+            final SplittableGenerator generator = new SplittableGenerator(42);
+            final int[] counts = new int[ceiling];
+            final int draws = 1000000;
+            for (int i = 0; i < draws; i++) {
+                counts[generator.nextInt(ceiling)]++;
+            }
+            final double expected = (double) draws / ceiling;
+            for (int value = 0; value < ceiling; value++) {
+                // five standard deviations
+                assertEquals("value " + value + " of " + ceiling, expected, counts[value], 5 * Math.sqrt(expected));
+            }
+        }
+    }
+
+    public void testStreams() {
+        final SplittableGenerator first = new SplittableGenerator(7);
+        final SplittableGenerator second = new SplittableGenerator(7);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first.nextLong(), second.nextLong());
+        }
+        final SplittableGenerator parent = new SplittableGenerator(7);
+        final SplittableGenerator stream0 = parent.split();
+        final SplittableGenerator stream1 = parent.split();
+        final SplittableGenerator expected0 = new SplittableGenerator(7);
+        final SplittableGenerator expected1 = SplittableGenerator.stream(7, 0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(expected0.nextLong(), stream0.nextLong());
+            assertEquals(expected1.nextLong(), stream1.nextLong());
+        }
+        assertFalse(SplittableGenerator.stream(7, 0).nextLong() == SplittableGenerator.stream(7, 1).nextLong());
+        assertFalse(new SplittableGenerator(7).nextLong() == new SplittableGenerator(8).nextLong());
+    }
+
+    public void testOptimizeWithSplittableRandom() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final SubSetFitnessFunction criterion = new AbstractArraySubSetFitnessFunction() {
+            public double evaluate(final int[] subset, final double[] paramValues) {
+                double sum = 0;
+                for (final int element : subset) {
+                    sum += element;
+                }
+                return sum;
+            }
+        };
+        final double[] fitness = new double[2];
+        final int[] iterations = new int[2];
+        for (int run = 0; run < 2; run++) {
+            final OptimizeSubSet optimizer = new OptimizeSubSet(set, 3, criterion, 200);
+            optimizer.setUseSplittableRandom(true);
+            optimizer.setRandomSeed(5);
+            optimizer.optimize(2000, 0.001);
+            fitness[run] = optimizer.getFitestFunctionValue();
+            iterations[run] = optimizer.getNumberOfIterationsPerformed();
+            assertEquals(SplittableGenerator.stream(5, 2).nextLong(), optimizer.createRandomStream(2).nextLong());
+        }
+        assertEquals(100d + 99 + 98, fitness[0]);
+        assertEquals(fitness[0], fitness[1]);
+        assertEquals(iterations[0], iterations[1]);
+    }
+
+    public void testRandomStreamsOfUnseededOptimizers() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 10; ++i) {
+            set.add(i);
+        }
+        final SubSetFitnessFunction criterion = new AbstractArraySubSetFitnessFunction() {
+            public double evaluate(final int[] subset, final double[] paramValues) {
+                return 0;
+            }
+        };
+        final OptimizeSubSet first = new OptimizeSubSet(set, 3, criterion, 10);
+        final OptimizeSubSet second = new OptimizeSubSet(set, 3, criterion, 10);
+        // the streams of optimizers without a seed are not derived from the same default seed:
+        assertFalse(first.createRandomStream(0).nextLong() == second.createRandomStream(0).nextLong());
+        assertFalse(first.createRandomStream(0).nextLong() == SplittableGenerator.stream(0, 0).nextLong());
+        // but the streams of one optimizer are reproducible:
+        assertEquals(first.createRandomStream(1).nextLong(), first.createRandomStream(1).nextLong());
+    }
+}
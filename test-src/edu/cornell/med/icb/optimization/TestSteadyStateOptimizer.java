@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import junit.framework.TestCase;
+import org.jgap.InvalidConfigurationException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestSteadyStateOptimizer extends TestCase {
+    private static class LargestCriterion extends AbstractArraySubSetFitnessFunction {
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element * paramValues[0];
+            }
+            return sum;
+        }
+    }
+
+    private final SubSetFitnessFunction largestCriterion = new LargestCriterion();
+
+    private static IntSet range(final int n) {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= n; ++i) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    public void testSteadyState() throws InvalidConfigurationException {
+        final SteadyStateOptimizer optimizer =
+                new SteadyStateOptimizer(range(100), 5, largestCriterion, 200, "alpha=1,3,2");
+        optimizer.setRandomSeed(1);
+        optimizer.setNumberOfThreads(4);
+        optimizer.setEvaluationsInFlight(8);
+        assertTrue(optimizer.optimize(2000, 0.001));
+        assertEquals(3 * (100 + 99 + 98 + 97 + 96), optimizer.getFitestFunctionValue(), 0.0001);
+        final IntSet optimalSubSet = optimizer.getFitestSubset();
+        for (int element = 96; element <= 100; element++) {
+            assertTrue(optimalSubSet.contains(element));
+        }
+        assertEquals(3d, optimizer.getFitestParameterValues()[0]);
+        assertTrue(optimizer.getNumberOfIterationsPerformed() < 2000);
+    }
+
+    public void testReproducibleOnOneThread() throws InvalidConfigurationException {
+        final SteadyStateOptimizer first = new SteadyStateOptimizer(range(500), 10, largestCriterion, 100, "alpha=1,3,2");
+        first.setRandomSeed(5);
+        first.optimize(100, 0.001);
+        final SteadyStateOptimizer second = new SteadyStateOptimizer(range(500), 10, largestCriterion, 100, "alpha=1,3,2");
+        second.setRandomSeed(5);
+        second.optimize(100, 0.001);
+
+        assertEquals(first.getNumberOfEvaluations(), second.getNumberOfEvaluations());
+        assertEquals(first.getFitestFunctionValue(), second.getFitestFunctionValue());
+        assertEquals(first.getFitestSubset(), second.getFitestSubset());
+    }
+
+    public void testSlowEvaluationDoesNotBlock() throws InvalidConfigurationException {
+        final CountDownLatch others = new CountDownLatch(100);
+        final AtomicBoolean slowStarted = new AtomicBoolean();
+        final AtomicBoolean othersCompleted = new AtomicBoolean();
+        final SubSetFitnessFunction criterion = new LargestCriterion() {
+            @Override
+            public double evaluate(final int[] subset, final double[] paramValues) {
+                if (slowStarted.compareAndSet(false, true)) {
+                    // one evaluation waits until many others have completed
+                    try {
+                        othersCompleted.set(others.await(30, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    others.countDown();
+                }
+                return super.evaluate(subset, paramValues);
+            }
+        };
+        final SteadyStateOptimizer optimizer = new SteadyStateOptimizer(range(100), 5, criterion, 20, "alpha=1,2,3");
+        optimizer.setRandomSeed(1);
+        optimizer.setNumberOfThreads(2);
+        optimizer.optimize(50, 0.001);
+        assertTrue("evaluations must continue while one evaluation is slow", othersCompleted.get());
+    }
+
+    public void testCallerExecutorKeepsEvaluationsInFlight() throws InvalidConfigurationException {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final SubSetFitnessFunction criterion = new LargestCriterion() {
+            @Override
+            public double evaluate(final int[] subset, final double[] paramValues) {
+                final int now = running.incrementAndGet();
+                while (true) {
+                    final int max = maxRunning.get();
+                    if (now <= max || maxRunning.compareAndSet(max, now)) {
+                        break;
+                    }
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return super.evaluate(subset, paramValues);
+            }
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final SteadyStateOptimizer optimizer = new SteadyStateOptimizer(range(100), 5, criterion, 20, "alpha=1,2,3");
+            optimizer.setRandomSeed(1);
+            optimizer.setExecutorService(executor);
+            optimizer.optimize(20, 0.001);
+            // one evaluation in flight per thread of the executor, without setEvaluationsInFlight:
+            assertTrue("at most " + maxRunning.get() + " evaluations ran at once", maxRunning.get() > 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testRejectsGenerationalSettings() throws InvalidConfigurationException {
+        final SteadyStateOptimizer screened = new SteadyStateOptimizer(range(100), 5, largestCriterion, 20, "alpha=1,2,3");
+        screened.getOptimizer().setSurrogateScreening(0.25, 5);
+        try {
+            screened.optimize(10, 0.001);
+            fail("surrogate screening does not apply to steady-state evolution");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        final SteadyStateOptimizer observed = new SteadyStateOptimizer(range(100), 5, largestCriterion, 20, "alpha=1,2,3");
+        observed.getOptimizer().addGenerationListener(new OptimizationMetrics());
+        try {
+            observed.optimize(10, 0.001);
+            fail("generation listeners do not apply to steady-state evolution");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testStop() throws InvalidConfigurationException {
+        final SteadyStateOptimizer[] optimizer = new SteadyStateOptimizer[1];
+        final AtomicInteger evaluations = new AtomicInteger();
+        final SubSetFitnessFunction criterion = new LargestCriterion() {
+            @Override
+            public double evaluate(final int[] subset, final double[] paramValues) {
+                if (evaluations.incrementAndGet() == 100) {
+                    optimizer[0].getOptimizer().stop();
+                }
+                return super.evaluate(subset, paramValues);
+            }
+        };
+        optimizer[0] = new SteadyStateOptimizer(range(100), 5, criterion, 20, "alpha=1,2,3");
+        optimizer[0].setRandomSeed(1);
+        assertFalse(optimizer[0].optimize(1000, 0.001));
+        assertTrue(optimizer[0].getOptimizer().isStopped());
+        assertEquals(100, evaluations.get());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import junit.framework.TestCase;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.RandomGenerator;
+
+import java.util.Arrays;
+
+public class TestSubsetOperators extends TestCase {
+    private final RandomGenerator random = new TwisterGenerator(3);
+
+    private static void assertValid(final int[] alleles, final int numElements) {
+        int previous = -1;
+        for (final int allele : alleles) {
+            assertTrue("alleles must be strictly increasing", allele > previous);
+            assertTrue("alleles must be in range", allele < numElements);
+            previous = allele;
+        }
+    }
+
+    public void testSwap() {
+        final int numElements = 12;
+        final int[] alleles = {0, 3, 4, 11};
+        final int[] counts = new int[numElements];
+        for (int i = 0; i < 20000; i++) {
+            final int[] mutant = alleles.clone();
+            final int added = SubsetOperators.swap(mutant, i % alleles.length, numElements, random);
+            assertValid(mutant, numElements);
+            for (final int allele : alleles) {
+                assertTrue("the swapped in element must not already be in the subset", added != allele);
+            }
+            counts[added]++;
+        }
+        for (int allele = 0; allele < numElements; allele++) {
+            if (allele == 0 || allele == 3 || allele == 4 || allele == 11) {
+                assertEquals(0, counts[allele]);
+            } else {
+                assertTrue("every absent element must be drawn", counts[allele] > 0);
+            }
+        }
+        final int[] full = {0, 1, 2};
+        assertEquals(-1, SubsetOperators.swap(full, 1, 3, random));
+    }
+
+    public void testCrossover() {
+        final int[] parent1 = {1, 4, 6, 9, 12};
+        final int[] parent2 = {2, 4, 7, 9, 15};
+        final int[] child = new int[5];
+        final int[] exclusive = new int[10];
+        for (int i = 0; i < 1000; i++) {
+            SubsetOperators.crossover(parent1, parent2, child, exclusive, random);
+            assertValid(child, 16);
+            final IntSet elements = new IntArraySet(child);
+            assertTrue("shared elements must be inherited", elements.contains(4) && elements.contains(9));
+            for (final int allele : child) {
+                assertTrue(allele == 1 || allele == 2 || allele == 4 || allele == 6 || allele == 7
+                        || allele == 9 || allele == 12 || allele == 15);
+            }
+        }
+    }
+
+    public void testNoInvalidOffspring() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 200; ++i) {
+            set.add(i);
+        }
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 20, new AbstractArraySubSetFitnessFunction() {
+            public double evaluate(final int[] subset, final double[] paramValues) {
+                double sum = 0;
+                for (final int element : subset) {
+                    sum += element * paramValues[0];
+                }
+                return sum;
+            }
+        }, "alpha=1,2,3");
+        optimizer.setRandomSeed(1);
+        optimizer.optimize(200, 0.001);
+        assertTrue(optimizer.getNumberOfEvaluations() > 0);
+        assertEquals(0, optimizer.getNumberOfInvalidSolutions());
+        assertEquals(3d, optimizer.getFitestParameterValues()[0]);
+    }
+
+    private static long[] toWords(final int[] alleles, final int numElements) {
+        final long[] words = new long[(numElements + 63) / 64];
+        for (final int allele : alleles) {
+            words[allele / 64] |= 1L << allele;
+        }
+        return words;
+    }
+
+    public void testBitSetOperatorsMatchArrayOperators() {
+        final int numElements = 300;
+        final RandomGenerator arrayRandom = new TwisterGenerator(11);
+        final RandomGenerator bitsRandom = new TwisterGenerator(11);
+        final int[] alleles = {0, 63, 64, 65, 127, 128, 200, 299};
+        final long[] words = toWords(alleles, numElements);
+        final int[] other = {1, 63, 70, 128, 150, 201, 250, 298};
+        final long[] otherWords = toWords(other, numElements);
+        final int[] child = new int[alleles.length];
+        final long[] childWords = new long[words.length];
+        final int[] exclusive = new int[2 * alleles.length];
+        for (int i = 0; i < 1000; i++) {
+            final int position = i % alleles.length;
+            assertEquals(SubsetOperators.swap(alleles, position, numElements, arrayRandom),
+                    SubsetOperators.swap(words, position, alleles.length, numElements, bitsRandom));
+            assertTrue(Arrays.equals(toWords(alleles, numElements), words));
+            SubsetOperators.crossover(alleles, other, child, exclusive, arrayRandom);
+            SubsetOperators.crossover(words, otherWords, childWords, alleles.length, exclusive, bitsRandom);
+            assertTrue(Arrays.equals(toWords(child, numElements), childWords));
+        }
+    }
+
+    public void testBitSetChromosome() throws InvalidConfigurationException {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= 100; ++i) {
+            set.add(i);
+        }
+        final OptimizeSubSet optimizer = new OptimizeSubSet(set, 5, new TestMigration.SumCriterion(), 200);
+        optimizer.setUseBitSetChromosome(true);
+        optimizer.setRandomSeed(1);
+        optimizer.optimize(5000, 0.001);
+        assertEquals(0, optimizer.getNumberOfInvalidSolutions());
+        assertEquals(5 * 100 - 10d, optimizer.getFitestFunctionValue());
+        assertEquals(5, optimizer.getFitestSubset().size());
+        assertTrue(optimizer.getGenotype().getFittestChromosome().getGene(0) instanceof BitSetSubsetGene);
+    }
+}
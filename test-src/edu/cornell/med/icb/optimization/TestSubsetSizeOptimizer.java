@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntArraySet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import junit.framework.TestCase;
+import org.jgap.InvalidConfigurationException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestSubsetSizeOptimizer extends TestCase {
+    /**
+     * Sum of the elements, scored incrementally from the parent.
+     */
+    private static class DeltaSumCriterion extends AbstractArraySubSetFitnessFunction
+            implements DeltaSubSetFitnessFunction {
+        private final AtomicInteger grownSubsets = new AtomicInteger();
+
+        public double evaluate(final int[] subset, final double[] paramValues) {
+            double sum = 0;
+            for (final int element : subset) {
+                sum += element;
+            }
+            return sum;
+        }
+
+        public double evaluate(final int[] subset, final double[] paramValues, final double parentFitness,
+                               final int[] removed, final int[] added) {
+            if (added.length > removed.length) {
+                grownSubsets.incrementAndGet();
+            }
+            double fitness = parentFitness;
+            for (final int element : removed) {
+                fitness -= element;
+            }
+            for (final int element : added) {
+                fitness += element;
+            }
+            assertEquals(evaluate(subset, paramValues), fitness, 1e-9);
+            return fitness;
+        }
+    }
+
+    private static IntSet range(final int n) {
+        final IntSet set = new IntArraySet();
+        for (int i = 1; i <= n; ++i) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    public void testBestSubsetPerSize() throws InvalidConfigurationException {
+        final DeltaSumCriterion criterion = new DeltaSumCriterion();
+        final SubsetSizeOptimizer optimizer = new SubsetSizeOptimizer(range(40), 3, 7, 2, criterion, 200);
+        optimizer.setRandomSeed(7);
+        optimizer.optimize(2000, 0.001);
+        assertEquals(3, optimizer.getResults().size());
+        for (final int k : optimizer.getSizes()) {
+            final OptimizationResult result = optimizer.getResult(k);
+            assertEquals(k, result.getSubset().size());
+            double optimum = 0;
+            for (int i = 0; i < k; i++) {
+                optimum += 40 - i;
+            }
+            assertEquals("k=" + k, optimum, result.getFitness());
+        }
+        assertEquals(2 * 20, criterion.grownSubsets.get());
+        assertTrue(optimizer.getNumberOfDeltaEvaluations() >= criterion.grownSubsets.get());
+    }
+
+    public void testSeedsWithParameters() throws InvalidConfigurationException {
+        final SubsetSizeOptimizer optimizer = new SubsetSizeOptimizer(range(30), 2, 4,
+                new TestMigration.SumCriterion(), "alpha=1,2,3");
+        optimizer.setRandomSeed(3);
+        optimizer.setNumberOfSeeds(50);
+        optimizer.optimize(500, 0.001);
+        assertEquals(30.0 + 29 + 28 + 27, optimizer.getResult(4).getFitness());
+        assertEquals(1, optimizer.getResult(4).getParameterValues().length);
+        assertEquals(optimizer.getResult(2).getSubset().size() + 1, optimizer.getResult(3).getSubset().size());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2010      Institute for Computational Biomedicine,
+ *                         Weill Medical College of Cornell University
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.cornell.med.icb.optimization;
+
+import junit.framework.TestCase;
+import org.jgap.Configuration;
+import org.jgap.Gene;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.impl.DefaultConfiguration;
+import org.jgap.impl.IntegerGene;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestSubsetSuperGene extends TestCase {
+    private Configuration configuration;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Configuration.reset();
+        configuration = new DefaultConfiguration();
+    }
+
+    private Gene[] genes(final int... alleles) throws InvalidConfigurationException {
+        final Gene[] genes = new Gene[alleles.length];
+        for (int i = 0; i < alleles.length; i++) {
+            genes[i] = new IntegerGene(configuration, 0, 99);
+            genes[i].setAllele(alleles[i]);
+        }
+        return genes;
+    }
+
+    public void testIsValid() throws InvalidConfigurationException {
+        final SubsetSuperGene gene = new SubsetSuperGene(configuration, genes(1, 5, 9), new int[100]);
+        assertTrue(gene.isValid());
+        assertTrue(gene.isValid(genes(0, 1, 2, 99), gene));
+        assertTrue(gene.isValid(genes(), gene));
+        assertFalse("duplicates are invalid", gene.isValid(genes(1, 1, 2), gene));
+        assertFalse("decreasing alleles are invalid", gene.isValid(genes(3, 2, 7), gene));
+        assertFalse("duplicates are invalid", gene.isValid(genes(1, 2, 2), gene));
+    }
+
+    public void testIsValidConcurrently() throws InvalidConfigurationException, InterruptedException {
+        final SubsetSuperGene gene = new SubsetSuperGene(configuration, genes(1, 5, 9), new int[100]);
+        final int numberOfThreads = 16;
+        final int iterations = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(numberOfThreads);
+        final AtomicInteger errors = new AtomicInteger();
+        for (int t = 0; t < numberOfThreads; t++) {
+            final Gene[] valid = genes(t, t + 10, t + 20, t + 30, t + 40);
+            final Gene[] duplicated = genes(t, t + 10, t + 10, t + 30, t + 40);
+            final Gene[] unordered = genes(t + 40, t + 10, t + 20, t + 30, t);
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < iterations; i++) {
+                            if (!gene.isValid(valid, gene) || gene.isValid(duplicated, gene)
+                                    || gene.isValid(unordered, gene) || !gene.isValid()) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        assertEquals("isValid must give consistent answers when called concurrently", 0, errors.get());
+    }
+
+    public void testSetToRandomValue() throws InvalidConfigurationException {
+        final SubsetSuperGene gene = new SubsetSuperGene(configuration, genes(1, 5, 9, 12), new int[100]);
+        final int[] alleles = new int[4];
+        final int[] counts = new int[100];
+        final SplittableGenerator random = new SplittableGenerator(1);
+        for (int i = 0; i < 50000; i++) {
+            gene.setToRandomValue(random);
+            assertTrue(gene.isValid());
+            gene.getAlleles(alleles);
+            for (final int allele : alleles) {
+                counts[allele]++;
+            }
+        }
+        // each allele is expected 2000 times
+        for (int allele = 0; allele < 100; allele++) {
+            assertTrue("allele " + allele + " drawn " + counts[allele] + " times",
+                    counts[allele] > 1800 && counts[allele] < 2200);
+        }
+    }
+}